@@ -1,11 +1,35 @@
+import main.java.toDoList.console.TaskConsolePresenter;
+import main.java.toDoList.http.TaskHttpServer;
+import main.java.toDoList.service.BinaryTaskRepository;
+import main.java.toDoList.service.ShardedTaskRepository;
+import main.java.toDoList.service.TaskArchive;
+import main.java.toDoList.service.TaskJournal;
+import main.java.toDoList.service.TaskMetrics;
+import main.java.toDoList.service.TaskReminders;
+import main.java.toDoList.service.TaskRepository;
+import main.java.toDoList.service.TaskScore;
 import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.TaskStorageMigrator;
 import main.java.toDoList.service.XMLTaskRepository;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class ToDoListApplication {
 
+    private static final String XML_FILE = "src/main/resources/toDoList.xml";
+    private static final String BINARY_FILE = "src/main/resources/toDoList.bin";
+    private static final String SHARD_DIRECTORY = "src/main/resources/toDoList.shards";
+    private static final String ARCHIVE_FILE = "src/main/resources/toDoList.archive";
+
     private TaskService taskService;
 
     public ToDoListApplication(TaskService taskService) {
@@ -13,63 +37,257 @@ public class ToDoListApplication {
     }
 
     public static void main(String[] args) {
-        ToDoListApplication app = new ToDoListApplication(
-                new TaskService(new XMLTaskRepository(new File("src/main/resources/toDoList.xml"))));
-        app.run();
+        // Метрики: --metrics <файл> включает их и раз в --metrics-interval секунд дописывает отчет в файл,
+        // --metrics - только включает команду stats
+        String metricsFile = option(args, "--metrics", null);
+        TaskMetrics.Dump metricsDump = null;
+        if (metricsFile != null && metricsFile.equals("-")) {
+            TaskMetrics.enable();
+        } else if (metricsFile != null) {
+            metricsDump = TaskMetrics.dumpPeriodically(Path.of(metricsFile),
+                    Long.parseLong(option(args, "--metrics-interval", "60")));
+        }
+
+        String storage = option(args, "--storage", "xml");
+        String journal = option(args, "--journal", null);
+
+        TaskRepository repository = switch (storage) {
+            case "xml" -> new XMLTaskRepository(new File(XML_FILE),
+                    journal == null ? null : TaskJournal.FsyncPolicy.valueOf(journal.toUpperCase()));
+            case "binary" -> new BinaryTaskRepository(new File(BINARY_FILE));
+            // Сегменты по диапазонам id: --shard-size <задач в сегменте>
+            case "sharded" -> new ShardedTaskRepository(new File(SHARD_DIRECTORY), Integer.parseInt(
+                    option(args, "--shard-size", String.valueOf(ShardedTaskRepository.DEFAULT_SHARD_SIZE))),
+                    journal == null ? null : TaskJournal.FsyncPolicy.valueOf(journal.toUpperCase()));
+            default -> throw new IllegalArgumentException("Неизвестный тип хранилища: " + storage);
+        };
+
+        // Миграция: --import-xml заполняет текущее хранилище из XML, --export-xml выгружает текущее в XML
+        String importFile = option(args, "--import-xml", null);
+        if (importFile != null) {
+            int count = TaskStorageMigrator.importXml(new File(importFile), repository);
+            System.out.println("Импортировано задач: " + count);
+        }
+        String exportFile = option(args, "--export-xml", null);
+        if (exportFile != null) {
+            int count = TaskStorageMigrator.exportXml(repository, new File(exportFile));
+            System.out.println("Экспортировано задач: " + count);
+        }
+
+        // Архив выполненных задач: --archive <файл>. Файлы архива открываются и создаются только при первой
+        // команде archive, --auto-archive или list --include-archive
+        File archiveFile = new File(option(args, "--archive", ARCHIVE_FILE));
+        AtomicReference<TaskArchive> archive = new AtomicReference<>();
+
+        // Формула срочности для команды next: --next-weights <вес приоритета>,<вес дня до срока>
+        TaskService taskService = new TaskService(repository,
+                TaskScore.parse(option(args, "--next-weights", "1,1")), () -> {
+                    TaskArchive opened = new TaskArchive(archiveFile);
+                    archive.set(opened);
+                    return opened;
+                });
+
+        // Автоматическая архивация: --auto-archive <дней> при запуске и затем раз в сутки
+        String autoArchive = option(args, "--auto-archive", null);
+        ScheduledExecutorService archiver = null;
+        if (autoArchive != null) {
+            String command = "archive --older-than " + autoArchive;
+            TaskConsolePresenter presenter = new TaskConsolePresenter(System.out, null);
+            presenter.showResult(taskService.archiveTasks(command));
+            presenter.flush();
+            archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "task-archiver");
+                thread.setDaemon(true);
+                return thread;
+            });
+            archiver.scheduleAtFixedRate(() -> {
+                presenter.showResult(taskService.archiveTasks(command));
+                presenter.flush();
+            }, 1, 1, TimeUnit.DAYS);
+        }
+
+        // Напоминания о сроках: --reminders <дней до срока>, вывод в консоль или в файл --reminders-log <файл>
+        String reminderDays = option(args, "--reminders", null);
+        String reminderLog = option(args, "--reminders-log", null);
+        Clock clock = Clock.systemDefaultZone();
+        TaskReminders reminders = reminderDays == null ? null : new TaskReminders(repository,
+                Integer.parseInt(reminderDays), clock, reminderLog == null
+                        ? new TaskConsolePresenter(System.out, null)
+                        : TaskReminders.logTo(Path.of(reminderLog), clock));
+
+        // Пакетный режим: --batch <файл> или --batch - для чтения команд из stdin
+        String batchFile = option(args, "--batch", null);
+        // HTTP API: --http <порт>, сервер работает до ввода exit
+        String httpPort = option(args, "--http", null);
+        if (httpPort != null) {
+            // Без TCP_NODELAY небольшие JSON ответы задерживаются алгоритмом Нейгла на ~40 мс.
+            // Свойство читается при первом создании HttpServer, поэтому задаем его до этого
+            if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+            }
+            try (TaskHttpServer server = new TaskHttpServer(taskService, Integer.parseInt(httpPort))) {
+                server.start();
+                System.out.println("HTTP API запущен на порту " + server.getPort() + ". Введите 'exit' для остановки, "
+                        + "'watch' для вывода изменений задач.");
+                Scanner scanner = new Scanner(System.in);
+                TaskConsolePresenter presenter = new TaskConsolePresenter(System.out, scanner);
+                while (scanner.hasNextLine()) {
+                    String command = scanner.nextLine().trim();
+                    if (command.equalsIgnoreCase("exit")) {
+                        break;
+                    }
+                    if (command.startsWith("watch")) {
+                        presenter.showResult(taskService.watchTasks(command, presenter));
+                        presenter.flush();
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Ошибка: не удалось запустить HTTP сервер на порту " + httpPort + ": " + e.getMessage());
+            }
+        } else if (batchFile != null) {
+            try (Scanner scanner = batchFile.equals("-")
+                    ? new Scanner(System.in)
+                    : new Scanner(new File(batchFile), StandardCharsets.UTF_8)) {
+                TaskConsolePresenter presenter = new TaskConsolePresenter(System.out, scanner);
+                taskService.executeBatch(scanner, presenter);
+                presenter.flush();
+            } catch (IOException e) {
+                System.out.println("Ошибка: не удалось прочитать файл команд " + batchFile + ": " + e.getMessage());
+            }
+        } else {
+            new ToDoListApplication(taskService).run();
+        }
+        if (reminders != null) {
+            reminders.close();
+        }
+        if (archiver != null) {
+            archiver.shutdownNow();
+        }
+        TaskArchive openedArchive = archive.get();
+        if (openedArchive != null) {
+            openedArchive.close();
+        }
+        repository.close();
+        if (metricsDump != null) {
+            metricsDump.close();
+        }
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
     }
 
     public void run(){
         Scanner scanner = new Scanner(System.in);
+        TaskConsolePresenter presenter = new TaskConsolePresenter(System.out, scanner);
         boolean running = true;
         while (running) {
-            System.out.print("Введите команду (введите 'help' для получения списка команд): ");
+            presenter.print("Введите команду (введите 'help' для получения списка команд): ");
+            presenter.flush();
             String command = scanner.nextLine().trim();
 
             // Проверка на выход из цикла
             if (command.equalsIgnoreCase("exit")) {
-                System.out.println("Выход из программы...");
+                presenter.println("Выход из программы...");
                 running = false;
             }
 
             if (command.startsWith("help")) {
-                System.out.printf("%-15s %s%n", "new", "Добавить новую задачу");
-                System.out.printf("  Аргументы: %s%n", "заголовок, описание, важность и срок задачи через запятую\n");
+                presenter.printf("%-15s %s%n", "new", "Добавить новую задачу");
+                presenter.printf("  Аргументы: %s%n", "заголовок, описание, важность и срок задачи через запятую\n");
+
+                presenter.printf("%-15s %s%n", "complete", "Пометить задачу как выполненную");
+                presenter.printf("  Аргументы: %s%n", "id\n");
+
+                presenter.printf("%-15s %s%n", "edit", "Измененить задачу");
+                presenter.printf("  Аргументы: %s%n", "id\n");
+
+                presenter.printf("%-15s %s%n", "list", "Вывести задачи");
+                presenter.printf("  Аргументы: %s%n", "\n -s new,\n -s done,\n -s in_progress,"
+                        + "\n -p приоритет,\n --due-before YYYY-MM-DD,\n --overdue,"
+                        + "\n --limit N,\n --offset M,\n --after-id ID,\n --include-archive\n");
+
+                presenter.printf("%-15s %s%n", "remove", "Удалить задачу");
+                presenter.printf("  Аргументы: %s%n", "id\n");
 
-                System.out.printf("%-15s %s%n", "complete", "Пометить задачу как выполненную");
-                System.out.printf("  Аргументы: %s%n", "id\n");
+                presenter.printf("%-15s %s%n", "next", "Вывести самые срочные невыполненные задачи");
+                presenter.printf("  Аргументы: %s%n", "количество задач, по умолчанию 5\n");
 
-                System.out.printf("%-15s %s%n", "edit", "Измененить задачу");
-                System.out.printf("  Аргументы: %s%n", "id\n");
+                presenter.printf("%-15s %s%n", "search", "Найти задачи по словам в заголовке и описании");
+                presenter.printf("  Аргументы: %s%n", "слова или их начала через пробел,\n --limit N\n");
 
-                System.out.printf("%-15s %s%n", "list", "Вывести задачи");
-                System.out.printf("  Аргументы: %s%n", "\n -s new,\n -s done,\n -s in_progress\n");
+                presenter.printf("%-15s %s%n", "import", "Импортировать задачи из файла");
+                presenter.printf("  Аргументы: %s%n", "файл .xml, .csv или .jsonl\n");
 
-                System.out.printf("%-15s %s%n", "remove", "Удалить задачу");
-                System.out.printf("  Аргументы: %s%n", "id\n");
+                presenter.printf("%-15s %s%n", "export", "Экспортировать все задачи в файл");
+                presenter.printf("  Аргументы: %s%n", "файл .xml, .csv или .jsonl\n");
+
+                presenter.printf("%-15s %s%n", "stats", "Вывести метрики операций (при запуске с --metrics)");
+                presenter.printf("  Аргументы: %s%n", "\n --reset\n");
+
+                presenter.printf("%-15s %s%n", "watch", "Выводить изменения задач по мере их появления");
+                presenter.printf("  Аргументы: %s%n", "\n stop - прекратить вывод\n");
+
+                presenter.printf("%-15s %s%n", "archive", "Перенести старые выполненные задачи в архив");
+                presenter.printf("  Аргументы: %s%n", "--older-than N - выполненные раньше чем N дней назад\n");
             } else if (command.startsWith("new")) {
 
-                taskService.addTask(command);
+                presenter.showResult(taskService.addTask(command));
 
             } else if (command.startsWith("edit")) {
 
-                taskService.editTask(command, scanner);
+                presenter.showResult(taskService.editTask(command, presenter));
 
             } else if (command.startsWith("remove")) {
 
-                taskService.removeTask(command);
+                presenter.showResult(taskService.removeTask(command));
 
             } else if (command.startsWith("list")) {
 
-                taskService.listTask(command);
+                presenter.showResult(taskService.listTask(command, presenter::showTask));
+
+            } else if (command.startsWith("next")) {
+
+                presenter.showResult(taskService.nextTask(command, presenter::showTask));
+
+            } else if (command.startsWith("search")) {
+
+                presenter.showResult(taskService.searchTask(command, presenter::showTask));
+
+            } else if (command.startsWith("import")) {
+
+                presenter.showResult(taskService.importTasks(command));
+
+            } else if (command.startsWith("export")) {
+
+                presenter.showResult(taskService.exportTasks(command));
+
+            } else if (command.startsWith("stats")) {
+
+                presenter.showResult(taskService.stats(command));
+
+            } else if (command.startsWith("watch")) {
+
+                presenter.showResult(taskService.watchTasks(command, presenter));
+
+            } else if (command.startsWith("archive")) {
+
+                presenter.showResult(taskService.archiveTasks(command));
 
             } else if (command.startsWith("complete")) {
 
-                taskService.completeTask(command);
+                presenter.showResult(taskService.completeTask(command));
 
-            } else {
-                System.out.println("Неизвестная команда. Пожалуйста, попробуйте снова.");
+            } else if (running) {
+                presenter.println("Неизвестная команда. Пожалуйста, попробуйте снова.");
             }
         }
+        presenter.flush();
         scanner.close();
     }
 
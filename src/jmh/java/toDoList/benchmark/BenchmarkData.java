@@ -0,0 +1,64 @@
+package jmh.java.toDoList.benchmark;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.StaxTaskStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Генерация временных файлов задач для бенчмарков.
+ */
+final class BenchmarkData {
+
+    static final LocalDate BASE_DEADLINE = LocalDate.parse("2024-10-20");
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Создает во временной директории XML файл с задачами <code>1..size</code> в текущем формате.
+     * Каждая пятая задача выполнена, приоритеты и сроки распределены равномерно.
+     */
+    static Path generateXml(int size) throws IOException {
+        Path directory = Files.createTempDirectory("toDoList-jmh-");
+        Path file = directory.resolve("toDoList.xml");
+
+        List<Task> tasks = new ArrayList<>(size);
+        for (int id = 1; id <= size; id++) {
+            tasks.add(task(id));
+        }
+        new StaxTaskStore(file).writeAll(tasks, size + 1);
+        return file;
+    }
+
+    static Task task(int id) {
+        boolean done = id % 5 == 0;
+        Task task = new Task(
+                id,
+                "Задача " + id,
+                "Описание задачи " + id,
+                id % 11,
+                BASE_DEADLINE.plusDays(id % 365),
+                done ? StatusOfTask.DONE : StatusOfTask.NEW);
+        if (done) {
+            task.setCompletionDate(BASE_DEADLINE);
+        }
+        return task;
+    }
+
+    static void deleteRecursively(Path file) throws IOException {
+        Path directory = file.getParent();
+        try (var files = Files.list(directory)) {
+            for (Path path : files.toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+        Files.deleteIfExists(directory);
+    }
+}
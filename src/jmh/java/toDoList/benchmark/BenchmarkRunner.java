@@ -0,0 +1,27 @@
+package jmh.java.toDoList.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Точка входа для запуска JMH бенчмарков с профилировщиком GC (скорость выделения памяти).
+ * <p>Аргументы: регулярное выражение для выбора бенчмарков (по умолчанию все из пакета) и, необязательно,
+ * список размеров данных через запятую, например <code>XMLTaskRepository 100,10000</code>.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackageName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class);
+        if (args.length > 1) {
+            builder.param("size", args[1].split(","));
+        }
+
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
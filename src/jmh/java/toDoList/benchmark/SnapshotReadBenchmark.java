@@ -0,0 +1,106 @@
+package jmh.java.toDoList.benchmark;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskFilter;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность чтения <code>XMLTaskRepository</code> под параллельной записью. В группе
+ * <code>mixed</code> пять потоков читают задачи по <code>id</code>, четыре - страницы списка с фильтром, а один
+ * редактирует задачи, то есть записи составляют 10% потоков. Группа <code>readOnly</code> - те же чтения без писателя.
+ * Чтение идет из опубликованного снимка без блокировок, поэтому пропускная способность читателей в <code>mixed</code>
+ * не должна заметно отставать от <code>readOnly</code>.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotReadBenchmark {
+
+    private static final int PAGE = 20;
+    private static final TaskFilter NEW = TaskFilter.all().withStatus(StatusOfTask.NEW);
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    private Path file;
+    private XMLTaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.generateXml(size);
+        repository = new XMLTaskRepository(file.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkData.deleteRecursively(file);
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(5)
+    public Task readOnlyFind() {
+        return repository.findTaskById(randomId());
+    }
+
+    @Benchmark
+    @Group("readOnly")
+    @GroupThreads(5)
+    public List<Task> readOnlyPage() {
+        return repository.findTasks(NEW, randomId(), PAGE);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(5)
+    public Task mixedFind() {
+        return repository.findTaskById(randomId());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(4)
+    public List<Task> mixedPage() {
+        return repository.findTasks(NEW, randomId(), PAGE);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public boolean mixedWrite() {
+        int id = randomId();
+        StatusOfTask status = (id & 1) == 0 ? StatusOfTask.IN_PROGRESS : StatusOfTask.NEW;
+        return repository.editTask(id, "", "", 1 + id % 10, LocalDate.now(), status);
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+}
@@ -0,0 +1,78 @@
+package jmh.java.toDoList.benchmark;
+
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Полнотекстовый поиск через <code>TaskSearchIndex</code> в сравнении с наивным перебором всех задач с
+ * <code>contains()</code> по заголовку и описанию в нижнем регистре.
+ * <p>Запрос <code>выполн</code> не встречается в данных, <code>42</code> совпадает с одной задачей, а
+ * <code>задач</code> - со всеми, что показывает стоимость ранжирования больших выборок.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskSearchBenchmark {
+
+    private static final int LIMIT = 20;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"выполн", "42", "задач"})
+    public String query;
+
+    private Path file;
+    private XMLTaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.generateXml(size);
+        repository = new XMLTaskRepository(file.toFile());
+        // первый поиск строит индекс и сохраняет его рядом с файлом
+        repository.searchTasks(query, LIMIT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkData.deleteRecursively(file);
+    }
+
+    @Benchmark
+    public List<Task> indexedSearch() {
+        return repository.searchTasks(query, LIMIT);
+    }
+
+    @Benchmark
+    public List<Task> naiveScan() {
+        String needle = query.toLowerCase(Locale.ROOT);
+        return repository.getTasks().stream()
+                .filter(task -> task.getCaption().toLowerCase(Locale.ROOT).contains(needle)
+                        || task.getDescription().toLowerCase(Locale.ROOT).contains(needle))
+                .limit(LIMIT)
+                .toList();
+    }
+}
@@ -0,0 +1,85 @@
+package jmh.java.toDoList.benchmark;
+
+import main.java.toDoList.console.TaskConsolePresenter;
+import main.java.toDoList.service.CommandResult;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки разбора и выполнения консольных команд <code>TaskService</code>.
+ * Результаты отображаются <code>TaskConsolePresenter</code> в пустой поток, так что измеряется разбор команды,
+ * обращение к репозиторию и форматирование вывода, но не скорость терминала.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private Path file;
+    private XMLTaskRepository repository;
+    private TaskService taskService;
+    private TaskConsolePresenter presenter;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.generateXml(size);
+        repository = new XMLTaskRepository(file.toFile());
+        taskService = new TaskService(repository);
+        presenter = new TaskConsolePresenter(OutputStream.nullOutputStream(), new Scanner(""));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkData.deleteRecursively(file);
+    }
+
+    @Benchmark
+    public CommandResult addTask() {
+        return taskService.addTask("new Выкинуть мусор, Выкинуть мусор из дома, 10, 2024-10-20");
+    }
+
+    @Benchmark
+    public CommandResult addTaskInvalid() {
+        return taskService.addTask("new Выкинуть мусор, Выкинуть мусор из дома, 11, 2024-10-20");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listTask() {
+        presenter.showResult(taskService.listTask("list", presenter::showTask));
+        presenter.flush();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void listTaskByStatus() {
+        presenter.showResult(taskService.listTask("list -s done", presenter::showTask));
+        presenter.flush();
+    }
+}
@@ -0,0 +1,101 @@
+package jmh.java.toDoList.benchmark;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Бенчмарки операций <code>XMLTaskRepository</code> на файлах из 100, 10k и 1M задач.
+ * <p>Мутации, меняющие размер набора, компенсируются обратной операцией (<code>deleteTask</code> +
+ * <code>importTask</code>), чтобы размер данных не дрейфовал за время измерения.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XMLTaskRepositoryBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private Path file;
+    private XMLTaskRepository repository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = BenchmarkData.generateXml(size);
+        repository = new XMLTaskRepository(file.toFile());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        repository.close();
+        BenchmarkData.deleteRecursively(file);
+    }
+
+    @Benchmark
+    public Task createTask() {
+        Task task = repository.createTask(new Task("Новая задача", "Описание", 5, BenchmarkData.BASE_DEADLINE));
+        repository.deleteTask(task.getId());
+        return task;
+    }
+
+    @Benchmark
+    public Task findTaskById() {
+        return repository.findTaskById(randomId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Task> getTasks() {
+        return repository.getTasks();
+    }
+
+    @Benchmark
+    public boolean editTask() {
+        int id = randomId();
+        return repository.editTask(id, "Задача " + id, "", 1 + id % 10, LocalDate.now(), StatusOfTask.IN_PROGRESS);
+    }
+
+    @Benchmark
+    public boolean deleteTask() {
+        int id = randomId();
+        boolean deleted = repository.deleteTask(id);
+        repository.importTask(BenchmarkData.task(id));
+        return deleted;
+    }
+
+    @Benchmark
+    public boolean markAsCompleted() {
+        int id = randomId();
+        boolean completed = repository.markAsCompleted(id);
+        repository.importTask(BenchmarkData.task(id));
+        return completed;
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+}
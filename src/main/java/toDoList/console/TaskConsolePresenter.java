@@ -0,0 +1,212 @@
+package main.java.toDoList.console;
+
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.CommandResult;
+import main.java.toDoList.service.TaskArchive;
+import main.java.toDoList.service.TaskEvent;
+import main.java.toDoList.service.TaskReminders;
+import main.java.toDoList.service.TaskTransfer;
+import main.java.toDoList.service.TaskView;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Scanner;
+import java.util.stream.Collectors;
+
+/**
+ * Консольное представление результатов <code>TaskService</code>.
+ * Весь вывод идет через один буферизованный <code>PrintWriter</code>; буфер сбрасывается явно через
+ * <code>flush()</code> перед ожиданием ввода, поэтому вывод длинного списка не превращается в тысячи отдельных
+ * записей в консоль. Задачи выводятся полями напрямую в буфер, без промежуточной строки <code>Task.toString()</code>.
+ * <p>Также выводит напоминания <code>TaskReminders</code>; они приходят из фоновых потоков и сбрасываются сразу.
+ */
+public class TaskConsolePresenter implements TaskView, TaskReminders.Listener {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PrintWriter out;
+    private final Scanner scanner;
+
+    /**
+     * @param out поток вывода, обычно <code>System.out</code>
+     * @param scanner источник ввода для интерактивного <code>edit</code>
+     */
+    public TaskConsolePresenter(OutputStream out, Scanner scanner) {
+        this(new OutputStreamWriter(out, Charset.defaultCharset()), scanner);
+    }
+
+    public TaskConsolePresenter(Writer out, Scanner scanner) {
+        this.out = new PrintWriter(new BufferedWriter(out, BUFFER_SIZE), false);
+        this.scanner = scanner;
+    }
+
+    @Override
+    public void showTask(Task task) {
+        // Тот же формат, что и Task.toString()
+        out.append("\nЗадача ID: ").print(task.getId());
+        out.append(". \nЗаголовок: ").append(task.getCaption())
+                .append(". \nОписание: ").append(task.getDescription())
+                .append(". \nПриоритет: ").print(task.getPriority());
+        out.append(". \nСрок: до ").print(task.getDeadline());
+        out.append(". \nСтатус: ").print(task.getStatusOfTask());
+        if (task.getCompletionDate() != null) {
+            out.append(". \nДата выполнения: ").print(task.getCompletionDate());
+        }
+        out.println();
+    }
+
+    @Override
+    public void showResult(CommandResult result) {
+        if (result instanceof CommandResult.Created created) {
+            out.print("Создана задача. ");
+            showTask(created.task());
+        } else if (result instanceof CommandResult.Found found) {
+            out.print("Найдена задача. ");
+            showTask(found.task());
+        } else if (result instanceof CommandResult.Edited edited) {
+            out.println("Задача " + edited.id() + " успешно отредактирована!");
+        } else if (result instanceof CommandResult.Removed removed) {
+            out.println("Задача " + removed.id() + " успешно удалена!");
+        } else if (result instanceof CommandResult.Completed completed) {
+            out.println("Задача " + completed.id() + " успешно отмечена как выполненная!");
+        } else if (result instanceof CommandResult.NotFound) {
+            out.println("Задача не найдена");
+        } else if (result instanceof CommandResult.NotCompleted) {
+            out.println("Задача не найдена или уже выполнена");
+        } else if (result instanceof CommandResult.Listed listed) {
+            // Сами задачи уже выведены через showTask(), остается подсказка о следующей странице
+            if (listed.nextAfterId() != null) {
+                out.println("Показано задач: " + listed.count() + ". Следующая страница: --after-id "
+                        + listed.nextAfterId());
+            }
+        } else if (result instanceof CommandResult.BatchApplied batch) {
+            showBatch(batch);
+        } else if (result instanceof CommandResult.Stats stats) {
+            out.print(stats.report());
+        } else if (result instanceof CommandResult.Transferred transferred) {
+            showTransfer(transferred);
+        } else if (result instanceof CommandResult.Watching watching) {
+            out.println(watching.active()
+                    ? "Отслеживание изменений включено. Остановить: watch stop"
+                    : "Отслеживание изменений выключено");
+        } else if (result instanceof CommandResult.EventsLost lost) {
+            out.println("Пропущено событий: " + lost.count());
+            out.flush();
+        } else if (result instanceof CommandResult.Archived archived) {
+            showArchive(archived);
+        } else if (result instanceof CommandResult.Invalid invalid) {
+            out.println(invalid.message());
+            if (invalid.command() != null) {
+                out.println("  (команда: " + invalid.command() + ")");
+            }
+        }
+    }
+
+    /**
+     * Событие выводится одной строкой и сразу сбрасывается в консоль, не дожидаясь следующей команды.
+     */
+    @Override
+    public void showEvent(TaskEvent event) {
+        String line;
+        if (event instanceof TaskEvent.Created created) {
+            line = "создана задача " + created.id() + ": " + created.task().getCaption();
+        } else if (event instanceof TaskEvent.Updated updated) {
+            line = "изменена задача " + updated.id() + " (" + updated.changed().stream()
+                    .map(field -> field.name().toLowerCase(Locale.ROOT))
+                    .collect(Collectors.joining(", ")) + ")";
+        } else if (event instanceof TaskEvent.Completed completed) {
+            line = "задача " + completed.id() + " выполнена " + completed.completionDate();
+        } else {
+            line = "удалена задача " + event.id();
+        }
+        out.println("Событие: " + line);
+        out.flush();
+    }
+
+    @Override
+    public void onReminder(TaskReminders.Reminder reminder) {
+        Task task = reminder.task();
+        out.println(reminder.kind() == TaskReminders.Kind.OVERDUE
+                ? "Напоминание: задача " + task.getId() + " \"" + task.getCaption() + "\" просрочена, срок был "
+                        + task.getDeadline()
+                : "Напоминание: срок задачи " + task.getId() + " \"" + task.getCaption() + "\" - "
+                        + task.getDeadline());
+        out.flush();
+    }
+
+    @Override
+    public void onBacklog(int overdue, int dueSoon) {
+        if (overdue > 0 || dueSoon > 0) {
+            out.println("Просрочено задач: " + overdue + ", скоро срок: " + dueSoon
+                    + ". Просроченные задачи: list --overdue");
+            out.flush();
+        }
+    }
+
+    /**
+     * Выводит подсказку и считывает новое значение поля для команды <code>edit</code>.
+     */
+    @Override
+    public String ask(String field) {
+        out.println("Введите новое значение " + field.toLowerCase() + " или нажмите Enter, чтобы оставить без изменений:");
+        out.flush();
+        return scanner.nextLine();
+    }
+
+    public void print(String text) {
+        out.print(text);
+    }
+
+    public void println(String text) {
+        out.println(text);
+    }
+
+    public void printf(String format, Object... args) {
+        out.printf(format, args);
+    }
+
+    /**
+     * Сбрасывает буфер в консоль. Вызывается после каждой команды и перед ожиданием ввода.
+     */
+    public void flush() {
+        out.flush();
+    }
+
+    private void showTransfer(CommandResult.Transferred transferred) {
+        TaskTransfer.Report report = transferred.report();
+        out.printf("%s задач: %d за %.2f с (%.0f задач/с)%n",
+                transferred.kind().equals("import") ? "Импортировано" : "Экспортировано",
+                report.transferred(), report.nanos() / 1e9, report.tasksPerSecond());
+        if (report.rejected() > 0) {
+            out.println("Отклонено записей: " + report.rejected());
+            for (String error : report.errors()) {
+                out.println("  " + error);
+            }
+        }
+        if (report.failure() != null) {
+            out.println(report.failure() + ". Импорт остановлен, задачи до этого места уже добавлены");
+        }
+    }
+
+    private void showArchive(CommandResult.Archived archived) {
+        TaskArchive.Summary archive = archived.archive();
+        out.println("Перенесено в архив задач: " + archived.moved());
+        if (archive.tasks() > 0) {
+            out.println("В архиве задач: " + archive.tasks() + ", выполнены с " + archive.firstCompleted() + " по "
+                    + archive.lastCompleted() + ". Вывести: list -s done --include-archive");
+        }
+    }
+
+    private void showBatch(CommandResult.BatchApplied batch) {
+        switch (batch.kind()) {
+            case "new" -> out.println("Создано задач: " + batch.applied());
+            case "remove" -> out.println("Удалено задач: " + batch.applied() + " из " + batch.requested());
+            case "complete" -> out.println("Отмечено выполненными: " + batch.applied() + " из " + batch.requested());
+            default -> { }
+        }
+    }
+}
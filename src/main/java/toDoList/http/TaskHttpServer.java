@@ -0,0 +1,288 @@
+package main.java.toDoList.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskFilter;
+import main.java.toDoList.service.TaskJson;
+import main.java.toDoList.service.TaskService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Встроенный HTTP сервер, предоставляющий операции <code>TaskService</code> в виде JSON API.
+ * <ul>
+ *     <li><code>GET /tasks?status=&amp;priority=&amp;dueBefore=&amp;overdue=</code> - список задач по фильтру;
+ *     с <code>limit</code> и <code>afterId</code> - страница по курсору, с <code>q</code> - полнотекстовый поиск</li>
+ *     <li><code>GET /tasks/{id}</code> - задача по <code>id</code></li>
+ *     <li><code>GET /tasks/next?k=</code> - самые срочные невыполненные задачи</li>
+ *     <li><code>POST /tasks</code> - создание задачи</li>
+ *     <li><code>PUT /tasks/{id}</code> - изменение задачи, отсутствующие поля не меняются</li>
+ *     <li><code>POST /tasks/{id}/complete</code> - отметка о выполнении</li>
+ *     <li><code>DELETE /tasks/{id}</code> - удаление задачи</li>
+ * </ul>
+ * Каждый запрос обрабатывается в отдельном виртуальном потоке. Потокобезопасность обеспечивает репозиторий.
+ */
+public class TaskHttpServer implements AutoCloseable {
+    private static final String CONTEXT = "/tasks";
+    private static final int STOP_DELAY_SECONDS = 1;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final int SEARCH_LIMIT = 20;
+    private static final int NEXT_LIMIT = 5;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final TaskService taskService;
+
+    public TaskHttpServer(TaskService taskService, int port) throws IOException {
+        this.taskService = taskService;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(CONTEXT, this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            try {
+                route(exchange);
+            } catch (NumberFormatException e) {
+                send(exchange, 400, TaskJson.error("Некорректное число или приоритет вне диапазона 0-10"));
+            } catch (DateTimeParseException e) {
+                send(exchange, 400, TaskJson.error("Некорректная дата, ожидается формат yyyy-MM-dd"));
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, TaskJson.error(e.getMessage() == null ? "Некорректный запрос" : e.getMessage()));
+            } catch (RuntimeException e) {
+                send(exchange, 500, TaskJson.error(e.getMessage() == null ? e.toString() : e.getMessage()));
+            }
+        }
+    }
+
+    private void route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().substring(CONTEXT.length()).split("/");
+        // path[0] всегда пустой: "/tasks/5/complete" -> ["", "5", "complete"]
+
+        if (path.length <= 1) {
+            switch (method) {
+                case "GET" -> listTasks(exchange);
+                case "POST" -> createTask(exchange);
+                default -> sendMethodNotAllowed(exchange);
+            }
+            return;
+        }
+
+        if (path.length == 2 && path[1].equals("next")) {
+            if (!method.equals("GET")) {
+                sendMethodNotAllowed(exchange);
+                return;
+            }
+            String rawQuery = exchange.getRequestURI().getRawQuery();
+            String count = rawQuery == null ? null : parseQuery(rawQuery).get("k");
+            int k = count == null ? NEXT_LIMIT : Integer.parseInt(count);
+            if (k < 1 || k > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("k должен быть от 1 до " + MAX_PAGE_SIZE);
+            }
+            send(exchange, 200, TaskJson.toJson(taskService.nextTasks(k)));
+            return;
+        }
+
+        int id = Integer.parseInt(path[1]);
+        if (path.length == 3 && path[2].equals("complete")) {
+            if (!method.equals("POST")) {
+                sendMethodNotAllowed(exchange);
+                return;
+            }
+            completeTask(exchange, id);
+            return;
+        }
+        if (path.length > 2) {
+            send(exchange, 404, TaskJson.error("Неизвестный путь"));
+            return;
+        }
+
+        switch (method) {
+            case "GET" -> {
+                Task task = taskService.findTask(id);
+                if (task == null) {
+                    sendNotFound(exchange, id);
+                } else {
+                    send(exchange, 200, TaskJson.toJson(task));
+                }
+            }
+            case "PUT" -> updateTask(exchange, id);
+            case "DELETE" -> {
+                if (taskService.deleteTask(id)) {
+                    send(exchange, 204, null);
+                } else {
+                    sendNotFound(exchange, id);
+                }
+            }
+            default -> sendMethodNotAllowed(exchange);
+        }
+    }
+
+    private void listTasks(HttpExchange exchange) throws IOException {
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        Map<String, String> parameters = rawQuery == null ? new HashMap<>() : parseQuery(rawQuery);
+        String limit = parameters.remove("limit");
+        String afterId = parameters.remove("afterId");
+        String query = parameters.remove("q");
+        if (query != null) {
+            int searchLimit = limit == null ? SEARCH_LIMIT : Integer.parseInt(limit);
+            checkPageSize(searchLimit);
+            send(exchange, 200, TaskJson.toJson(taskService.searchTasks(query, searchLimit)));
+            return;
+        }
+        TaskFilter filter = parseFilter(parameters);
+
+        if (limit == null && afterId == null) {
+            send(exchange, 200, TaskJson.toJson(taskService.findTasks(filter)));
+            return;
+        }
+        int pageSize = limit == null ? MAX_PAGE_SIZE : Integer.parseInt(limit);
+        checkPageSize(pageSize);
+        send(exchange, 200, TaskJson.toJson(taskService.findTasks(
+                filter, afterId == null ? 0 : Integer.parseInt(afterId), pageSize)));
+    }
+
+    private static void checkPageSize(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit должен быть от 1 до " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private void createTask(HttpExchange exchange) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String priority = body.get("priority");
+        String deadline = body.get("deadline");
+
+        Task task = taskService.createTask(
+                body.get("caption"),
+                body.get("description"),
+                priority == null ? 0 : Integer.parseInt(priority),
+                deadline == null ? null : LocalDate.parse(deadline));
+        exchange.getResponseHeaders().set("Location", CONTEXT + "/" + task.getId());
+        send(exchange, 201, TaskJson.toJson(task));
+    }
+
+    private void updateTask(HttpExchange exchange, int id) throws IOException {
+        Map<String, String> body = readBody(exchange);
+        String priority = body.get("priority");
+        String deadline = body.get("deadline");
+        String status = body.get("status");
+
+        boolean updated = taskService.updateTask(
+                id,
+                body.get("caption"),
+                body.get("description"),
+                priority == null ? 0 : Integer.parseInt(priority),
+                deadline == null ? null : LocalDate.parse(deadline),
+                status == null ? null : StatusOfTask.valueOf(status.toUpperCase()));
+        if (updated) {
+            send(exchange, 200, TaskJson.toJson(taskService.findTask(id)));
+        } else {
+            sendNotFound(exchange, id);
+        }
+    }
+
+    private void completeTask(HttpExchange exchange, int id) throws IOException {
+        if (taskService.markTaskCompleted(id)) {
+            send(exchange, 200, TaskJson.toJson(taskService.findTask(id)));
+        } else if (taskService.findTask(id) == null) {
+            sendNotFound(exchange, id);
+        } else {
+            send(exchange, 409, TaskJson.error("Задача с id " + id + " уже выполнена"));
+        }
+    }
+
+    private static TaskFilter parseFilter(Map<String, String> parameters) {
+        TaskFilter filter = TaskFilter.all();
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            String value = parameter.getValue();
+            switch (parameter.getKey()) {
+                case "status" -> filter.withStatus(StatusOfTask.valueOf(value.toUpperCase()));
+                case "priority" -> {
+                    int priority = Integer.parseInt(value);
+                    if ((priority > 10) || (priority < 0)) {
+                        throw new NumberFormatException();
+                    }
+                    filter.withPriority(priority);
+                }
+                case "dueBefore" -> filter.dueBefore(LocalDate.parse(value));
+                case "overdue" -> filter.overdueOn(value.isEmpty() ? LocalDate.now() : LocalDate.parse(value));
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + parameter.getKey());
+            }
+        }
+        return filter;
+    }
+
+    private static Map<String, String> parseQuery(String query) {
+        Map<String, String> parameters = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int separator = pair.indexOf('=');
+            String key = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static Map<String, String> readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return TaskJson.parseObject(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void sendNotFound(HttpExchange exchange, int id) throws IOException {
+        send(exchange, 404, TaskJson.error("Задача с id " + id + " не найдена"));
+    }
+
+    private static void sendMethodNotAllowed(HttpExchange exchange) throws IOException {
+        send(exchange, 405, TaskJson.error("Метод " + exchange.getRequestMethod() + " не поддерживается"));
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
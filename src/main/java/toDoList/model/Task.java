@@ -27,6 +27,11 @@ public class Task {
         this.statusOfTask = statusOfTask;
     }
 
+    public Task(Task task) {
+        this(task.id, task.caption, task.description, task.priority, task.deadline, task.statusOfTask);
+        this.completionDate = task.completionDate;
+    }
+
     @Override
     public String toString() {
         if (completionDate != null) {
@@ -0,0 +1,501 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Репозиторий задач в компактном бинарном файле, отображенном в память через <code>FileChannel.map</code>.
+ * <p>Формат файла: заголовок <code>[magic][версия][следующий id][конец данных]</code>, за которым идут записи задач.
+ * Запись начинается с заголовка фиксированной длины <code>[длина записи][флаг][id][приоритет][срок][статус]
+ * [дата выполнения]</code> (даты хранятся как epoch-day), за которым следуют заголовок и описание в UTF-8 с префиксом
+ * длины.
+ * <p>Индекс <code>id -&gt; смещение записи</code> строится при открытии одним проходом по файлу. Выполнение задачи
+ * меняет поля заголовка на месте, удаление ставит флаг, редактирование переписывает запись на месте, если она
+ * помещается, иначе помечает старую удаленной и дописывает новую. Место удаленных записей освобождается
+ * <code>compact()</code>, который вызывается при закрытии, если мусора больше, чем живых данных.
+ * <p>Следующий <code>id</code> хранится в заголовке и при открытии выравнивается до <code>max(id) + 1</code>.
+ * В файлах версии 1 это поле было старшей половиной смещения конца данных и всегда равно 0.
+ * <p>Для выборок по статусу, приоритету и сроку поддерживается <code>TaskIndex</code>.
+ * <p>Каждое изменение публикуется подписчикам <code>events()</code> как <code>TaskEvent</code>.
+ * <p>Все операции сериализуются монитором репозитория, между процессами файл защищен <code>TaskFileLock</code>.
+ */
+public class BinaryTaskRepository implements TaskRepository {
+
+    private static final int MAGIC = 0x54444C31; // "TDL1"
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_SIZE = 16;
+    private static final int NEXT_ID_POSITION = 8;
+    private static final int END_OFFSET_POSITION = 12;
+
+    private static final int RECORD_HEADER_SIZE = 19;
+    private static final int FLAG_OFFSET = 4;
+    private static final int ID_OFFSET = 5;
+    private static final int PRIORITY_OFFSET = 9;
+    private static final int DEADLINE_OFFSET = 10;
+    private static final int STATUS_OFFSET = 14;
+    private static final int COMPLETION_OFFSET = 15;
+
+    private static final byte LIVE = 1;
+    private static final byte DELETED = 0;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final long PROCESS_LOCK_TIMEOUT_MS = 5_000;
+
+    private final File file;
+    private final TaskFileLock processLock;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int endOffset;
+    private int nextId;
+    private long garbageBytes;
+    private final NavigableMap<Integer, Integer> offsets = new TreeMap<>();
+    private TaskIndex index = new TaskIndex();
+    private final TaskEventStream events = new TaskEventStream();
+    // Загружается при первом поиске
+    private TaskSearchIndex searchIndex;
+
+    public BinaryTaskRepository(File file) {
+        this(file, true);
+    }
+
+    private BinaryTaskRepository(File file, boolean lockFile) {
+        this.file = file;
+        this.processLock = lockFile ? TaskFileLock.acquire(file.toPath(), PROCESS_LOCK_TIMEOUT_MS) : null;
+        try {
+            open();
+        } catch (RuntimeException e) {
+            if (processLock != null) {
+                processLock.close();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized Task createTask(Task task) {
+        task.setId(nextId);
+        setNextId(nextId + 1);
+        task.setStatusOfTask(StatusOfTask.NEW);
+        offsets.put(task.getId(), append(task));
+        index.add(task);
+        searchIndexUpdate(null, task);
+        events.publish(null, task);
+        return task;
+    }
+
+    @Override
+    public synchronized void importTask(Task task) {
+        Integer previous = offsets.get(task.getId());
+        Task before = previous == null ? null : read(previous);
+        if (previous != null) {
+            index.remove(before);
+            markDeleted(previous);
+        }
+        offsets.put(task.getId(), append(task));
+        index.add(task);
+        searchIndexUpdate(before, task);
+        events.publish(before, task);
+        setNextId(Math.max(nextId, task.getId() + 1));
+    }
+
+    @Override
+    public synchronized int reserveIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество идентификаторов должно быть положительным");
+        }
+
+        int first = nextId;
+        setNextId(nextId + count);
+        return first;
+    }
+
+    @Override
+    public synchronized boolean editTask(
+            int id,
+            String newCaption,
+            String newDescription,
+            int newPriority,
+            LocalDate newDeadline,
+            StatusOfTask newStatus) {
+        Integer offset = offsets.get(id);
+
+        if (offset == null) {
+            return false;
+        }
+
+        Task task = read(offset);
+        Task before = new Task(task);
+
+        if (!newCaption.isEmpty()) {
+            task.setCaption(newCaption);
+        }
+
+        if (!newDescription.isEmpty()) {
+            task.setDescription(newDescription);
+        }
+
+        if (newPriority != 0) {
+            task.setPriority(newPriority);
+        }
+
+        if (newDeadline != null) {
+            task.setDeadline(newDeadline);
+        }
+
+        if (newStatus != null) {
+            task.setStatusOfTask(newStatus);
+        }
+
+        byte[] caption = task.getCaption().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        if (RECORD_HEADER_SIZE + 8 + caption.length + description.length <= buffer.getInt(offset)) {
+            write(offset, buffer.getInt(offset), task, caption, description);
+        } else {
+            markDeleted(offset);
+            offsets.put(id, append(task));
+        }
+        index.update(before, task);
+        searchIndexUpdate(before, task);
+        events.publish(before, task);
+        return true;
+    }
+
+    @Override
+    public synchronized Task findTaskById(int id) {
+        Integer offset = offsets.get(id);
+        return offset == null ? null : read(offset);
+    }
+
+    @Override
+    public synchronized List<Task> getTasks() {
+        List<Task> result = new ArrayList<>(offsets.size());
+        for (int offset : offsets.values()) {
+            result.add(read(offset));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Task> findTasks(TaskFilter filter) {
+        if (filter.isEmpty()) {
+            return getTasks();
+        }
+
+        BitSet ids = index.select(filter);
+        List<Task> result = new ArrayList<>(ids.cardinality());
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            result.add(read(offsets.get(id)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Task> findTasks(TaskFilter filter, int afterId, int limit) {
+        List<Task> result = new ArrayList<>(Math.min(limit, offsets.size()));
+        if (filter.isEmpty()) {
+            for (int offset : offsets.tailMap(afterId, false).values()) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(read(offset));
+            }
+            return result;
+        }
+
+        BitSet ids = index.select(filter);
+        for (int id = ids.nextSetBit(afterId + 1); id >= 0 && result.size() < limit; id = ids.nextSetBit(id + 1)) {
+            result.add(read(offsets.get(id)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Task> nextTasks(int count, TaskScore score) {
+        int[] ids = index.next(count, score);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(read(offsets.get(id)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized List<Task> searchTasks(String query, int limit) {
+        if (searchIndex == null) {
+            searchIndex = TaskSearchIndex.load(searchIndexFile());
+            searchIndex.reconcile(getTasks());
+            if (searchIndex.isModified()) {
+                searchIndex.save(searchIndexFile());
+            }
+        }
+
+        int[] ids = searchIndex.search(query, limit);
+        List<Task> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(read(offsets.get(id)));
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean deleteTask(int id) {
+        Integer offset = offsets.remove(id);
+
+        if (offset == null) {
+            return false;
+        }
+        Task removed = read(offset);
+        index.remove(removed);
+        searchIndexUpdate(removed, null);
+
+        markDeleted(offset);
+        events.publish(removed, null);
+        return true;
+    }
+
+    @Override
+    public synchronized boolean markAsCompleted(int id) {
+        Integer offset = offsets.get(id);
+
+        if (offset == null || buffer.getInt(offset + COMPLETION_OFFSET) != NO_DATE) {
+            return false;
+        }
+
+        Task before = read(offset);
+        buffer.put(offset + STATUS_OFFSET, (byte) StatusOfTask.DONE.ordinal());
+        buffer.putInt(offset + COMPLETION_OFFSET, (int) LocalDate.now().toEpochDay());
+        Task task = read(offset);
+        index.update(before, task);
+        events.publish(before, task);
+        return true;
+    }
+
+    @Override
+    public TaskEventStream events() {
+        return events;
+    }
+
+    @Override
+    public synchronized void flush() {
+        buffer.force();
+    }
+
+    /**
+     * Переписывает файл, оставляя только живые записи в порядке <code>id</code>.
+     */
+    public synchronized void compact() {
+        File compacted = new File(file.getPath() + ".tmp");
+        if (compacted.exists() && !compacted.delete()) {
+            throw new RuntimeException("Ошибка при сжатии бинарного файла задач: не удалось удалить " + compacted);
+        }
+
+        BinaryTaskRepository target = new BinaryTaskRepository(compacted, false);
+        for (Task task : getTasks()) {
+            target.importTask(task);
+        }
+        target.setNextId(nextId);
+        target.flush();
+        target.closeChannel();
+
+        closeChannel();
+        try {
+            Files.move(compacted.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при сжатии бинарного файла задач: " + e.getMessage(), e);
+        }
+
+        offsets.clear();
+        open();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (channel == null) {
+            return;
+        }
+        if (garbageBytes > endOffset - FILE_HEADER_SIZE - garbageBytes) {
+            compact();
+        }
+        flush();
+        if (searchIndex != null && searchIndex.isModified()) {
+            searchIndex.save(searchIndexFile());
+        }
+        closeChannel();
+        channel = null;
+        events.close();
+        if (processLock != null) {
+            processLock.close();
+        }
+    }
+
+    private void open() {
+        try {
+            boolean isNew = !file.exists() || file.length() == 0;
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            map(Math.max(INITIAL_CAPACITY, channel.size()));
+
+            if (isNew) {
+                buffer.putInt(0, MAGIC);
+                setEndOffset(FILE_HEADER_SIZE);
+            } else if (buffer.getInt(0) != MAGIC) {
+                throw new IllegalStateException("файл " + file + " не является бинарным хранилищем задач");
+            } else {
+                endOffset = buffer.getInt(END_OFFSET_POSITION);
+            }
+            buffer.putInt(4, VERSION);
+        } catch (IOException | IllegalStateException e) {
+            throw new RuntimeException("Ошибка при открытии бинарного файла задач: " + e.getMessage(), e);
+        }
+
+        garbageBytes = 0;
+        index = new TaskIndex();
+        for (int offset = FILE_HEADER_SIZE; offset < endOffset; offset += buffer.getInt(offset)) {
+            if (buffer.get(offset + FLAG_OFFSET) == LIVE) {
+                offsets.put(buffer.getInt(offset + ID_OFFSET), offset);
+                index.add(read(offset));
+            } else {
+                garbageBytes += buffer.getInt(offset);
+            }
+        }
+
+        int maxId = offsets.isEmpty() ? 0 : offsets.lastKey();
+        setNextId(Math.max(buffer.getInt(NEXT_ID_POSITION), maxId + 1));
+    }
+
+    private void searchIndexUpdate(Task before, Task after) {
+        if (searchIndex == null) {
+            return;
+        }
+        if (before == null) {
+            searchIndex.add(after);
+        } else if (after == null) {
+            searchIndex.remove(before);
+        } else {
+            searchIndex.update(before, after);
+        }
+    }
+
+    private Path searchIndexFile() {
+        return Path.of(file.getPath() + ".search");
+    }
+
+    private void map(long capacity) throws IOException {
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private int append(Task task) {
+        byte[] caption = task.getCaption().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_HEADER_SIZE + 8 + caption.length + description.length;
+
+        ensureCapacity(endOffset + length);
+        int offset = endOffset;
+        write(offset, length, task, caption, description);
+        setEndOffset(offset + length);
+        return offset;
+    }
+
+    private void write(int offset, int length, Task task, byte[] caption, byte[] description) {
+        buffer.putInt(offset, length);
+        buffer.put(offset + FLAG_OFFSET, LIVE);
+        buffer.putInt(offset + ID_OFFSET, task.getId());
+        buffer.put(offset + PRIORITY_OFFSET, (byte) task.getPriority());
+        buffer.putInt(offset + DEADLINE_OFFSET, toEpochDay(task.getDeadline()));
+        buffer.put(offset + STATUS_OFFSET, (byte) task.getStatusOfTask().ordinal());
+        buffer.putInt(offset + COMPLETION_OFFSET, toEpochDay(task.getCompletionDate()));
+
+        int position = offset + RECORD_HEADER_SIZE;
+        buffer.putInt(position, caption.length);
+        buffer.put(position + 4, caption);
+        position += 4 + caption.length;
+        buffer.putInt(position, description.length);
+        buffer.put(position + 4, description);
+    }
+
+    private Task read(int offset) {
+        int position = offset + RECORD_HEADER_SIZE;
+        byte[] caption = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, caption);
+        position += 4 + caption.length;
+        byte[] description = new byte[buffer.getInt(position)];
+        buffer.get(position + 4, description);
+
+        Task task = new Task(
+                buffer.getInt(offset + ID_OFFSET),
+                new String(caption, StandardCharsets.UTF_8),
+                new String(description, StandardCharsets.UTF_8),
+                buffer.get(offset + PRIORITY_OFFSET),
+                fromEpochDay(buffer.getInt(offset + DEADLINE_OFFSET)),
+                StatusOfTask.values()[buffer.get(offset + STATUS_OFFSET)]);
+        task.setCompletionDate(fromEpochDay(buffer.getInt(offset + COMPLETION_OFFSET)));
+        return task;
+    }
+
+    private void markDeleted(int offset) {
+        buffer.put(offset + FLAG_OFFSET, DELETED);
+        garbageBytes += buffer.getInt(offset);
+    }
+
+    private void setEndOffset(int offset) {
+        endOffset = offset;
+        buffer.putInt(END_OFFSET_POSITION, offset);
+    }
+
+    private void setNextId(int id) {
+        nextId = id;
+        buffer.putInt(NEXT_ID_POSITION, id);
+    }
+
+    private void ensureCapacity(long required) {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        long capacity = buffer.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new RuntimeException("Ошибка при записи бинарного файла задач: превышен размер 2 ГБ");
+        }
+        try {
+            map(capacity);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при записи бинарного файла задач: " + e.getMessage(), e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            buffer.force();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при закрытии бинарного файла задач: " + e.getMessage(), e);
+        }
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate fromEpochDay(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+}
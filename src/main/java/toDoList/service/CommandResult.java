@@ -0,0 +1,105 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+/**
+ * Результат выполнения консольной команды <code>TaskService</code>.
+ * Сервис только возвращает результат, отображением занимается <code>TaskView</code>.
+ */
+public sealed interface CommandResult {
+
+    /**
+     * Задача создана командой <code>new</code>.
+     */
+    record Created(Task task) implements CommandResult {
+    }
+
+    /**
+     * Задача найдена командой <code>edit</code> и ожидает ввода новых значений.
+     */
+    record Found(Task task) implements CommandResult {
+    }
+
+    record Edited(int id) implements CommandResult {
+    }
+
+    record Removed(int id) implements CommandResult {
+    }
+
+    record Completed(int id) implements CommandResult {
+    }
+
+    /**
+     * Задача для <code>edit</code> или <code>remove</code> не найдена.
+     */
+    record NotFound(int id) implements CommandResult {
+    }
+
+    /**
+     * Задача для <code>complete</code> не найдена или уже выполнена.
+     */
+    record NotCompleted(int id) implements CommandResult {
+    }
+
+    /**
+     * Команда <code>list</code> передала в обработчик <code>count</code> задач.
+     *
+     * @param nextAfterId значение <code>--after-id</code> для следующей страницы или <code>null</code>, если
+     *                    выведены все подходящие задачи
+     */
+    record Listed(int count, Integer nextAfterId) implements CommandResult {
+    }
+
+    /**
+     * Группа однотипных команд пакетного режима выполнена: из <code>requested</code> применено <code>applied</code>.
+     */
+    record BatchApplied(String kind, int applied, int requested) implements CommandResult {
+    }
+
+    /**
+     * Команда <code>import</code> или <code>export</code> выполнена.
+     *
+     * @param kind <code>import</code> или <code>export</code>
+     */
+    record Transferred(String kind, TaskTransfer.Report report) implements CommandResult {
+    }
+
+    /**
+     * Отчет команды <code>stats</code>, см. <code>TaskMetrics.format()</code>.
+     */
+    record Stats(String report) implements CommandResult {
+    }
+
+    /**
+     * Команда <code>watch</code> включила (<code>active</code>) или выключила вывод событий изменений.
+     */
+    record Watching(boolean active) implements CommandResult {
+    }
+
+    /**
+     * Вывод <code>watch</code> отстал, и <code>count</code> событий были вытеснены из буфера до вывода.
+     */
+    record EventsLost(long count) implements CommandResult {
+    }
+
+    /**
+     * Команда <code>archive</code> перенесла в архив <code>moved</code> задач.
+     *
+     * @param archive состояние архива после переноса
+     */
+    record Archived(int moved, TaskArchive.Summary archive) implements CommandResult {
+    }
+
+    /**
+     * Команда не выполнена из-за ошибки разбора или проверки аргументов.
+     *
+     * @param message текст ошибки для пользователя
+     * @param command исходная команда пакетного режима или <code>null</code>
+     */
+    record Invalid(String message, String command) implements CommandResult {
+
+        public Invalid(String message) {
+            this(message, null);
+        }
+    }
+}
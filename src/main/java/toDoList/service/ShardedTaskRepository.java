@@ -0,0 +1,499 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Репозиторий задач, разделенных на сегменты по диапазонам <code>id</code>. Каждый сегмент - отдельный
+ * <code>XMLTaskRepository</code> со своим файлом <code>shard-&lt;первый id&gt;.xml</code> в общем каталоге, так что
+ * запись изменения переписывает только файл своего сегмента.
+ * <p>Сегмент покрывает <code>id</code> от своего первого до первого <code>id</code> следующего сегмента. Новые задачи
+ * получают <code>id</code> из последовательности последнего сегмента и попадают только в него, поэтому старые
+ * сегменты, где со временем остаются в основном выполненные задачи, почти не переписываются.
+ * <p>Операции с одной задачей (<code>findTaskById</code>, <code>editTask</code>, <code>deleteTask</code>,
+ * <code>markAsCompleted</code>) направляются в один сегмент. Списки собираются со всех сегментов параллельно и
+ * склеиваются в порядке сегментов, что совпадает с порядком <code>id</code>. Страницы по курсору читаются
+ * последовательно, начиная с сегмента курсора, пока страница не заполнится.
+ * <p>Когда последний сегмент превышает <code>shardSize</code> задач, следующие <code>id</code> открывают новый
+ * сегмент; переполненный импортом средний сегмент делится пополам с переносом верхней половины задач. Сегмент, в
+ * котором после удалений осталось меньше четверти <code>shardSize</code>, сливается с соседним, если вместе они
+ * занимают не больше половины. Перенос: задачи копируются в сегмент-получатель и сохраняются, затем переключается
+ * маршрутизация, затем задачи удаляются из источника. Если процесс прервался посередине, при следующем открытии
+ * задачи вне диапазона своего сегмента переносятся или удаляются как дубликаты. Чтение отсекает такие задачи по
+ * диапазону, поэтому во время переноса задача не выдается дважды.
+ * <p>Потокобезопасность: таблица сегментов неизменяема и публикуется через volatile поле, чтение идет без
+ * блокировок. Изменения берут блокировку чтения <code>layoutLock</code> и параллельно выполняются разными
+ * сегментами, деление и слияние - блокировку записи.
+ * <p>События всех сегментов публикуются в один <code>TaskEventStream</code>; перенос задач событий не порождает.
+ */
+public class ShardedTaskRepository implements TaskRepository {
+
+    public static final int DEFAULT_SHARD_SIZE = 100_000;
+
+    private static final Pattern SHARD_FILE = Pattern.compile("shard-(\\d+)\\.xml");
+
+    private static final TaskMetrics.Counter SPLITS = TaskMetrics.counter("shards.splits");
+    private static final TaskMetrics.Counter MERGES = TaskMetrics.counter("shards.merges");
+
+    private final Path directory;
+    private final int shardSize;
+    private final TaskJournal.FsyncPolicy fsyncPolicy;
+    private final TaskEventStream events = new TaskEventStream();
+    private final ReentrantReadWriteLock layoutLock = new ReentrantReadWriteLock();
+
+    // Сегменты по первому id диапазона; неизменяемая карта, заменяется целиком под блокировкой записи layoutLock
+    private volatile NavigableMap<Integer, XMLTaskRepository> shards;
+    private boolean closed;
+
+    public ShardedTaskRepository(File directory) {
+        this(directory, DEFAULT_SHARD_SIZE, null);
+    }
+
+    /**
+     * @param directory каталог файлов сегментов; создается, если его нет
+     * @param shardSize количество задач, после которого сегмент делится
+     * @param fsyncPolicy политика журнала каждого сегмента; <code>null</code> отключает журнал
+     */
+    public ShardedTaskRepository(File directory, int shardSize, TaskJournal.FsyncPolicy fsyncPolicy) {
+        if (shardSize < 4) {
+            throw new IllegalArgumentException("Размер сегмента должен быть не меньше 4 задач");
+        }
+        this.directory = directory.toPath();
+        this.shardSize = shardSize;
+        this.fsyncPolicy = fsyncPolicy;
+
+        NavigableMap<Integer, XMLTaskRepository> opened = new TreeMap<>();
+        try {
+            Files.createDirectories(this.directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "shard-*.xml")) {
+                for (Path file : files) {
+                    Matcher matcher = SHARD_FILE.matcher(file.getFileName().toString());
+                    if (matcher.matches()) {
+                        opened.put(Integer.parseInt(matcher.group(1)), openShard(file));
+                    }
+                }
+            }
+            if (opened.isEmpty()) {
+                opened.put(1, createShard(1));
+            }
+        } catch (IOException | RuntimeException e) {
+            opened.values().forEach(XMLTaskRepository::close);
+            throw new RuntimeException("Ошибка при открытии сегментов задач: " + e.getMessage(), e);
+        }
+        this.shards = Collections.unmodifiableNavigableMap(opened);
+        events.withoutEvents(this::relocateStrays);
+    }
+
+    @Override
+    public Task createTask(Task task) {
+        XMLTaskRepository shard;
+        layoutLock.readLock().lock();
+        try {
+            shard = shards.lastEntry().getValue();
+            shard.createTask(task);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        rebalance(task.getId());
+        return task;
+    }
+
+    @Override
+    public void importTask(Task task) {
+        layoutLock.readLock().lock();
+        try {
+            shardFor(task.getId()).importTask(task);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        rebalance(task.getId());
+    }
+
+    @Override
+    public int reserveIds(int count) {
+        layoutLock.readLock().lock();
+        try {
+            return shards.lastEntry().getValue().reserveIds(count);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean editTask(
+            int id,
+            String newCaption,
+            String newDescription,
+            int newPriority,
+            LocalDate newDeadline,
+            StatusOfTask newStatus) {
+        layoutLock.readLock().lock();
+        try {
+            return shardFor(id).editTask(id, newCaption, newDescription, newPriority, newDeadline, newStatus);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Task findTaskById(int id) {
+        return shardFor(id).findTaskById(id);
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return fanOut(XMLTaskRepository::getTasks);
+    }
+
+    @Override
+    public List<Task> findTasks(TaskFilter filter) {
+        return fanOut(shard -> shard.findTasks(filter));
+    }
+
+    /**
+     * Сегменты читаются по порядку начиная с сегмента, содержащего <code>afterId + 1</code>, пока страница не
+     * заполнится, так что курсорная страница обычно затрагивает один сегмент.
+     */
+    @Override
+    public List<Task> findTasks(TaskFilter filter, int afterId, int limit) {
+        NavigableMap<Integer, XMLTaskRepository> current = shards;
+        List<Task> result = new ArrayList<>(Math.min(limit, STREAM_PAGE_SIZE));
+        Integer from = current.floorKey(afterId + 1);
+        for (Map.Entry<Integer, XMLTaskRepository> entry
+                : current.tailMap(from == null ? current.firstKey() : from, true).entrySet()) {
+            int upper = upperBound(current, entry.getKey());
+            int cursor = Math.max(afterId, entry.getKey() - 1);
+            for (Task task : entry.getValue().findTasks(filter, cursor, limit - result.size())) {
+                if (task.getId() >= upper) {
+                    break;
+                }
+                result.add(task);
+            }
+            if (result.size() == limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Каждый сегмент выдает до <code>count</code> своих самых срочных задач, из них выбираются <code>count</code>
+     * с наибольшей оценкой.
+     */
+    @Override
+    public List<Task> nextTasks(int count, TaskScore score) {
+        LocalDate today = LocalDate.now();
+        return fanOut(shard -> shard.nextTasks(count, score)).stream()
+                .sorted(Comparator.<Task>comparingDouble(task -> score.score(task, today)).reversed()
+                        .thenComparingInt(Task::getId))
+                .limit(count)
+                .toList();
+    }
+
+    /**
+     * Релевантность считается каждым сегментом по своей статистике слов и между сегментами не сравнима, поэтому
+     * результаты сегментов чередуются по месту в выдаче: первые результаты всех сегментов, затем вторые и так далее.
+     */
+    @Override
+    public List<Task> searchTasks(String query, int limit) {
+        NavigableMap<Integer, XMLTaskRepository> current = shards;
+        List<List<Task>> results = current.entrySet().parallelStream()
+                .map(entry -> clip(entry.getValue().searchTasks(query, limit), entry.getKey(),
+                        upperBound(current, entry.getKey())))
+                .toList();
+
+        List<Task> merged = new ArrayList<>(limit);
+        for (int rank = 0; merged.size() < limit; rank++) {
+            boolean found = false;
+            for (List<Task> result : results) {
+                if (rank < result.size() && merged.size() < limit) {
+                    merged.add(result.get(rank));
+                    found = true;
+                }
+            }
+            if (!found) {
+                break;
+            }
+        }
+        return merged;
+    }
+
+    @Override
+    public boolean deleteTask(int id) {
+        boolean deleted;
+        layoutLock.readLock().lock();
+        try {
+            deleted = shardFor(id).deleteTask(id);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+        if (deleted) {
+            rebalance(id);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean markAsCompleted(int id) {
+        layoutLock.readLock().lock();
+        try {
+            return shardFor(id).markAsCompleted(id);
+        } finally {
+            layoutLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void flush() {
+        shards.values().parallelStream().forEach(XMLTaskRepository::flush);
+    }
+
+    /**
+     * Пакет вкладывается в <code>runBatch()</code> всех сегментов, так что каждый сегмент записывается один раз
+     * по завершении пакета.
+     */
+    @Override
+    public void runBatch(Runnable batch) {
+        runBatch(shards.values().iterator(), batch);
+    }
+
+    @Override
+    public TaskEventStream events() {
+        return events;
+    }
+
+    /**
+     * @return количество сегментов
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public void close() {
+        layoutLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            shards.values().parallelStream().forEach(XMLTaskRepository::close);
+            events.close();
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    private XMLTaskRepository shardFor(int id) {
+        NavigableMap<Integer, XMLTaskRepository> current = shards;
+        Map.Entry<Integer, XMLTaskRepository> entry = current.floorEntry(id);
+        return entry == null ? current.firstEntry().getValue() : entry.getValue();
+    }
+
+    // Первый id следующего сегмента или Integer.MAX_VALUE для последнего
+    private static int upperBound(NavigableMap<Integer, XMLTaskRepository> shards, int from) {
+        Integer next = shards.higherKey(from);
+        return next == null ? Integer.MAX_VALUE : next;
+    }
+
+    // Параллельно собирает списки сегментов и склеивает их в порядке диапазонов
+    private List<Task> fanOut(Function<XMLTaskRepository, List<Task>> read) {
+        NavigableMap<Integer, XMLTaskRepository> current = shards;
+        if (current.size() == 1) {
+            return read.apply(current.firstEntry().getValue());
+        }
+        List<Task> result = new ArrayList<>();
+        current.entrySet().parallelStream()
+                .map(entry -> clip(read.apply(entry.getValue()), entry.getKey(), upperBound(current, entry.getKey())))
+                .forEachOrdered(result::addAll);
+        return result;
+    }
+
+    // Оставляет задачи диапазона сегмента: во время переноса задача может быть в двух сегментах сразу
+    private static List<Task> clip(List<Task> tasks, int from, int upper) {
+        if (tasks.stream().allMatch(task -> task.getId() >= from && task.getId() < upper)) {
+            return tasks;
+        }
+        return tasks.stream().filter(task -> task.getId() >= from && task.getId() < upper).toList();
+    }
+
+    private void runBatch(Iterator<XMLTaskRepository> remaining, Runnable batch) {
+        if (!remaining.hasNext()) {
+            batch.run();
+            return;
+        }
+        remaining.next().runBatch(() -> runBatch(remaining, batch));
+    }
+
+    /**
+     * Делит переполненный сегмент, содержащий <code>id</code>, или сливает опустевший с соседним справа. Последний
+     * сегмент не сливается: он только что открыт и заполняется новыми задачами. Пока размер в пределах, проверка
+     * стоит одного чтения размера без блокировок.
+     */
+    private void rebalance(int id) {
+        if (!needsRebalance(shards, id)) {
+            return;
+        }
+
+        layoutLock.writeLock().lock();
+        try {
+            NavigableMap<Integer, XMLTaskRepository> current = shards;
+            if (closed || !needsRebalance(current, id)) {
+                return;
+            }
+            Integer from = current.floorKey(id);
+            int key = from == null ? current.firstKey() : from;
+            XMLTaskRepository shard = current.get(key);
+            if (shard.size() > shardSize) {
+                events.withoutEvents(() -> split(key, shard));
+            } else {
+                events.withoutEvents(() -> merge(key));
+            }
+        } finally {
+            layoutLock.writeLock().unlock();
+        }
+    }
+
+    private boolean needsRebalance(NavigableMap<Integer, XMLTaskRepository> current, int id) {
+        Integer from = current.floorKey(id);
+        int key = from == null ? current.firstKey() : from;
+        int size = current.get(key).size();
+        return size > shardSize || (size < shardSize / 4 && key != current.lastKey());
+    }
+
+    // Последний сегмент уступает новые id новому сегменту, средний делится пополам по id
+    private void split(int from, XMLTaskRepository shard) {
+        int upper = upperBound(shards, from);
+        int at;
+        if (upper == Integer.MAX_VALUE) {
+            at = shard.getNextId();
+        } else {
+            List<Task> lowerHalf = shard.findTasks(TaskFilter.all(), from - 1, shard.size() / 2);
+            at = lowerHalf.get(lowerHalf.size() - 1).getId() + 1;
+        }
+        if (at <= from || at >= upper || shards.containsKey(at)) {
+            return;
+        }
+
+        XMLTaskRepository target = createShard(at);
+        List<Integer> moved = new ArrayList<>();
+        target.runBatch(() -> shard.streamTasks(TaskFilter.all(), at - 1)
+                .takeWhile(task -> task.getId() < upper)
+                .forEach(task -> {
+                    target.importTask(task);
+                    moved.add(task.getId());
+                }));
+
+        NavigableMap<Integer, XMLTaskRepository> next = new TreeMap<>(shards);
+        next.put(at, target);
+        shards = Collections.unmodifiableNavigableMap(next);
+        shard.deleteTasks(moved.stream().mapToInt(Integer::intValue).toArray());
+        SPLITS.increment();
+    }
+
+    // Сливает сегмент с соседним справа, если вместе они занимают не больше половины shardSize
+    private void merge(int left) {
+        Integer right = shards.higherKey(left);
+        if (right == null) {
+            return;
+        }
+        XMLTaskRepository target = shards.get(left);
+        XMLTaskRepository source = shards.get(right);
+        if (target.size() + source.size() > shardSize / 2) {
+            return;
+        }
+
+        boolean last = shards.higherKey(right) == null;
+        target.runBatch(() -> {
+            source.getTasks().forEach(target::importTask);
+            if (last && target.getNextId() < source.getNextId()) {
+                target.reserveIds(source.getNextId() - target.getNextId());
+            }
+        });
+
+        NavigableMap<Integer, XMLTaskRepository> next = new TreeMap<>(shards);
+        next.remove(right);
+        shards = Collections.unmodifiableNavigableMap(next);
+        source.close();
+        deleteShardFiles(right);
+        MERGES.increment();
+    }
+
+    /**
+     * Доводит до конца перенос, прерванный остановкой процесса: задачи вне диапазона своего сегмента переносятся
+     * в сегмент-владелец, если там их нет, и удаляются из чужого сегмента.
+     */
+    private void relocateStrays() {
+        NavigableMap<Integer, XMLTaskRepository> current = shards;
+        for (Map.Entry<Integer, XMLTaskRepository> entry : current.entrySet()) {
+            int from = entry.getKey();
+            int upper = upperBound(current, from);
+            XMLTaskRepository shard = entry.getValue();
+            // читаются только края сегмента, без обхода всех задач
+            List<Task> strays = new ArrayList<>();
+            if (from != current.firstKey()) {
+                shard.streamTasks(TaskFilter.all(), 0).takeWhile(task -> task.getId() < from).forEach(strays::add);
+            }
+            if (upper != Integer.MAX_VALUE) {
+                shard.streamTasks(TaskFilter.all(), upper - 1).forEach(strays::add);
+            }
+            for (Task task : strays) {
+                XMLTaskRepository owner = shardFor(task.getId());
+                if (owner.findTaskById(task.getId()) == null) {
+                    owner.importTask(task);
+                    owner.flush();
+                }
+                shard.deleteTask(task.getId());
+            }
+            if (!strays.isEmpty()) {
+                shard.flush();
+            }
+        }
+    }
+
+    private XMLTaskRepository openShard(Path file) {
+        return new XMLTaskRepository(file.toFile(), fsyncPolicy, events);
+    }
+
+    // Пустой файл сегмента, последовательность которого начинается с первого id диапазона
+    private XMLTaskRepository createShard(int from) {
+        Path file = shardFile(from);
+        new StaxTaskStore(file).writeAll(List.of(), from);
+        return openShard(file);
+    }
+
+    private Path shardFile(int from) {
+        return directory.resolve("shard-" + from + ".xml");
+    }
+
+    // Файл сегмента и его спутники: снимок, поисковый индекс, журнал, файл блокировки
+    private void deleteShardFiles(int from) {
+        String name = shardFile(from).getFileName().toString();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, name + "*")) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при удалении сегмента " + name + ": " + e.getMessage(), e);
+        }
+    }
+}
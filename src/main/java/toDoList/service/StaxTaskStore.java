@@ -0,0 +1,328 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Потоковый движок хранения задач в XML на основе <code>javax.xml.stream</code>.
+ * <p>Чтение идет через <code>XMLStreamReader</code> по одному элементу <code>Task</code> за раз, так что память не
+ * зависит от размера файла. Запись идет целиком во временный файл, который затем атомарно переименовывается на место
+ * исходного.
+ * <p>Правки отдельных задач на уровне файла здесь нет: <code>XMLTaskRepository</code> применяет их к таблице в памяти
+ * и записывает файл с задержкой одним <code>writeAll()</code> на пачку изменений, а в режиме журнала каждая правка -
+ * это дописывание в <code>TaskJournal</code>. Копирование файла с заменой одного элемента читало бы и писало его
+ * целиком на каждую правку и было бы дороже записи готового снимка.
+ * <p>Формат файла совпадает с тем, что раньше писал DOM <code>Transformer</code>: декларация с
+ * <code>standalone="no"</code>, корень <code>toDoList</code>, элементы <code>Task</code> с атрибутами
+ * <code>caption</code> и <code>id</code> и дочерними <code>Description</code>, <code>Priority</code>,
+ * <code>Deadline</code>, <code>Status</code> и необязательным <code>Complete</code>.
+ * Корень может содержать атрибут <code>nextId</code> - сохраненное значение последовательности идентификаторов.
+ */
+public class StaxTaskStore {
+
+    private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>";
+    private static final String ROOT = "toDoList";
+
+    private static final TaskMetrics.Counter DOCUMENT_PARSES = TaskMetrics.counter("xml.parses");
+    private static final TaskMetrics.Counter BYTES_READ = TaskMetrics.counter("xml.bytesRead");
+    private static final TaskMetrics.Counter BYTES_WRITTEN = TaskMetrics.counter("xml.bytesWritten");
+
+    private final Path file;
+
+    public StaxTaskStore(Path file) {
+        this.file = file;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Открывает ленивый итератор по задачам файла. Итератор необходимо закрыть после использования.
+     *
+     * @return итератор по задачам в порядке следования в файле
+     */
+    public TaskReader openReader() {
+        return new TaskReader(file);
+    }
+
+    /**
+     * Последовательно передает все задачи файла в <code>consumer</code>, не держа их в памяти.
+     *
+     * @param consumer обработчик задач
+     */
+    public void forEach(Consumer<Task> consumer) {
+        countRead();
+        try (TaskReader reader = openReader()) {
+            while (reader.hasNext()) {
+                consumer.accept(reader.next());
+            }
+        }
+    }
+
+    public List<Task> readAll() {
+        List<Task> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Читает только атрибут <code>nextId</code> корня, не разбирая задачи.
+     *
+     * @return сохраненное значение последовательности или 0, если атрибута нет
+     */
+    public int readNextId() {
+        try (TaskReader reader = openReader()) {
+            reader.hasNext();
+            return reader.getNextId();
+        }
+    }
+
+    public void writeAll(Iterable<Task> tasks) {
+        writeAll(tasks, 0);
+    }
+
+    /**
+     * Полностью перезаписывает файл переданными задачами через временный файл.
+     *
+     * @param tasks задачи в порядке записи
+     * @param nextId значение последовательности идентификаторов для атрибута корня; 0 - не записывать
+     */
+    public void writeAll(Iterable<Task> tasks, int nextId) {
+        Path temp = tempFile();
+        try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            XMLStreamWriter writer = startDocument(out, nextId);
+            for (Task task : tasks) {
+                writeTask(writer, task);
+            }
+            endDocument(writer);
+        } catch (IOException | XMLStreamException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Ошибка при сохранении XML документа: " + e.getMessage(), e);
+        }
+        replace(temp);
+    }
+
+    // Полный разбор файла: учитывается в метриках xml.parses и xml.bytesRead
+    private void countRead() {
+        if (TaskMetrics.isEnabled()) {
+            DOCUMENT_PARSES.increment();
+            try {
+                BYTES_READ.add(Files.size(file));
+            } catch (IOException ignored) {
+                // размер нужен только для статистики, ошибку чтения покажет сам разбор
+            }
+        }
+    }
+
+    static XMLStreamWriter startDocument(Writer out, int nextId) throws IOException, XMLStreamException {
+        out.write(XML_DECLARATION);
+        XMLStreamWriter writer = Factories.OUTPUT.createXMLStreamWriter(out);
+        writer.writeStartElement(ROOT);
+        if (nextId > 0) {
+            writer.writeAttribute("nextId", String.valueOf(nextId));
+        }
+        return writer;
+    }
+
+    static void endDocument(XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeEndElement();
+        writer.flush();
+        writer.close();
+    }
+
+    static void writeTask(XMLStreamWriter writer, Task task) throws XMLStreamException {
+        writer.writeStartElement("Task");
+        writer.writeAttribute("caption", task.getCaption());
+        writer.writeAttribute("id", String.valueOf(task.getId()));
+        writeTextElement(writer, "Description", task.getDescription());
+        writeTextElement(writer, "Priority", String.valueOf(task.getPriority()));
+        writeTextElement(writer, "Deadline", String.valueOf(task.getDeadline()));
+        writeTextElement(writer, "Status", String.valueOf(task.getStatusOfTask()).toLowerCase());
+        if (task.getCompletionDate() != null) {
+            writeTextElement(writer, "Complete", task.getCompletionDate().toString());
+        }
+        writer.writeEndElement();
+    }
+
+    private static void writeTextElement(XMLStreamWriter writer, String name, String value)
+            throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(value);
+        writer.writeEndElement();
+    }
+
+    private Path tempFile() {
+        return file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    private void replace(Path temp) {
+        try {
+            // данные временного файла должны попасть на диск до того, как он заменит исходный
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+                if (TaskMetrics.isEnabled()) {
+                    BYTES_WRITTEN.add(channel.size());
+                }
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new RuntimeException("Ошибка при сохранении XML документа: " + e.getMessage(), e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+            // временный файл будет перезаписан при следующей попытке
+        }
+    }
+
+    // Поиск реализаций StAX стоит десятки миллисекунд, поэтому фабрики создаются при первом разборе или записи XML,
+    // а не при загрузке класса: при старте из снимка TaskSnapshotCache они не нужны
+    private static final class Factories {
+        private static final XMLInputFactory INPUT = XMLInputFactory.newInstance();
+        private static final XMLOutputFactory OUTPUT = XMLOutputFactory.newInstance();
+    }
+
+    /**
+     * Ленивый итератор по элементам <code>Task</code> XML файла.
+     */
+    public static class TaskReader implements Iterator<Task>, Closeable {
+
+        private final InputStream in;
+        private final XMLStreamReader reader;
+        private Task next;
+        private int nextId;
+
+        private TaskReader(Path file) {
+            try {
+                this.in = Files.newInputStream(file);
+                this.reader = Factories.INPUT.createXMLStreamReader(in);
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException("Ошибка при загрузке XML документа: " + e.getMessage(), e);
+            }
+        }
+
+        /**
+         * @return атрибут <code>nextId</code> корня или 0; доступен после первого вызова <code>hasNext()</code>
+         */
+        public int getNextId() {
+            return nextId;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = readNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Task next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Task task = next;
+            next = null;
+            return task;
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+                in.close();
+            } catch (IOException | XMLStreamException e) {
+                throw new RuntimeException("Ошибка при закрытии XML документа: " + e.getMessage(), e);
+            }
+        }
+
+        private Task readNext() {
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if (reader.getLocalName().equals("Task")) {
+                        return readTask();
+                    }
+                    if (reader.getLocalName().equals(ROOT)) {
+                        readNextIdAttribute();
+                    }
+                }
+                return null;
+            } catch (XMLStreamException e) {
+                throw new RuntimeException("Ошибка при загрузке XML документа: " + e.getMessage(), e);
+            }
+        }
+
+        // Файл мог быть отредактирован вручную, поэтому некорректное значение просто игнорируется
+        private void readNextIdAttribute() {
+            String value = reader.getAttributeValue(null, "nextId");
+            try {
+                nextId = value == null ? 0 : Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                nextId = 0;
+            }
+        }
+
+        private Task readTask() throws XMLStreamException {
+            int id = Integer.parseInt(reader.getAttributeValue(null, "id"));
+            String caption = reader.getAttributeValue(null, "caption");
+            String description = null;
+            int priority = 0;
+            LocalDate deadline = null;
+            StatusOfTask status = null;
+            LocalDate completionDate = null;
+
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                String text = reader.getElementText();
+                switch (name) {
+                    case "Description" -> description = text;
+                    case "Priority" -> priority = Integer.parseInt(text);
+                    case "Deadline" -> deadline = LocalDate.parse(text);
+                    case "Status" -> status = StatusOfTask.valueOf(text.toUpperCase());
+                    case "Complete" -> completionDate = LocalDate.parse(text);
+                    default -> { }
+                }
+            }
+
+            Task task = new Task(id, caption, description, priority, deadline, status);
+            task.setCompletionDate(completionDate);
+            return task;
+        }
+    }
+}
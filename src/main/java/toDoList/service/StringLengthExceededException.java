@@ -1,6 +1,8 @@
 package main.java.toDoList.service;
 
 public class StringLengthExceededException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
     public StringLengthExceededException() {
         super();
     }
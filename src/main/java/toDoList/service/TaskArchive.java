@@ -0,0 +1,483 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Архив выполненных задач, вынесенных из рабочего хранилища командой <code>archive</code>.
+ * <p>Файл архива только дописывается и состоит из блоков до <code>BLOCK_SIZE</code> задач; каждый блок - отдельный
+ * член GZIP с задачами в порядке <code>id</code>. Запись задачи: <code>[id][приоритет][срок][статус]
+ * [дата выполнения]</code> (даты хранятся как epoch-day), затем заголовок и описание в UTF-8 с префиксом длины.
+ * <p>Индекс <code>&lt;архив&gt;.index</code> - записи фиксированной длины по блокам: <code>[смещение][длина]
+ * [количество задач][первый id][последний id][первая дата выполнения][последняя дата выполнения]</code>. Индекс
+ * целиком читается при открытии, поэтому чтение распаковывает только нужные блоки: выдача по курсору - блоки,
+ * диапазон <code>id</code> которых заходит за курсор, поиск по <code>id</code> - блоки, диапазон которых его содержит.
+ * <p>Блок сначала дописывается в файл архива и синхронизируется, затем так же записывается его запись индекса.
+ * Байты блока без записи индекса остаются после сбоя между этими шагами и отрезаются при следующем открытии.
+ * Из рабочего хранилища задачи удаляются только после записи архива, поэтому после сбоя задача может оказаться и в
+ * архиве, и в хранилище, или в архиве дважды, но не теряется; повторы отбрасываются при чтении.
+ * <p>Задачи в архиве только читаются. Запись сериализуется монитором архива, чтение идет без блокировок по
+ * неизменяемому списку блоков.
+ */
+public class TaskArchive implements AutoCloseable {
+
+    public static final int BLOCK_SIZE = 4096;
+
+    private static final int INDEX_RECORD_SIZE = 32;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final TaskMetrics.Counter ARCHIVED = TaskMetrics.counter("archive.tasks");
+    private static final TaskMetrics.Counter BLOCKS_READ = TaskMetrics.counter("archive.blocks.read");
+
+    private final Path file;
+    private final FileChannel data;
+    private final FileChannel index;
+
+    // Блоки в порядке записи; неизменяемый список, заменяется целиком под монитором архива
+    private volatile List<Block> blocks;
+
+    /**
+     * Запись индекса: блок из <code>count</code> задач с <code>id</code> от <code>firstId</code> до
+     * <code>lastId</code>, сжатый в <code>length</code> байт по смещению <code>offset</code>.
+     */
+    private record Block(long offset, int length, int count, int firstId, int lastId,
+                         int firstCompleted, int lastCompleted) {
+
+        long end() {
+            return offset + length;
+        }
+    }
+
+    /**
+     * Состояние архива для вывода пользователю.
+     *
+     * @param tasks количество задач в архиве, включая повторы после сбоев
+     * @param firstCompleted самая ранняя дата выполнения или <code>null</code>, если архив пуст
+     * @param lastCompleted самая поздняя дата выполнения или <code>null</code>, если архив пуст
+     */
+    public record Summary(int tasks, int blocks, LocalDate firstCompleted, LocalDate lastCompleted) {
+    }
+
+    /**
+     * Открывает архив и его индекс <code>&lt;file&gt;.index</code>, создавая пустые файлы, если их нет.
+     */
+    public TaskArchive(File file) {
+        this.file = file.toPath();
+        FileChannel openedData = null;
+        FileChannel openedIndex = null;
+        try {
+            openedData = FileChannel.open(this.file,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            openedIndex = FileChannel.open(Path.of(file.getPath() + ".index"),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.blocks = recover(openedData, openedIndex);
+        } catch (IOException e) {
+            closeQuietly(openedData);
+            closeQuietly(openedIndex);
+            throw new RuntimeException("Ошибка при открытии архива задач: " + e.getMessage(), e);
+        }
+        this.data = openedData;
+        this.index = openedIndex;
+    }
+
+    /**
+     * Переносит в архив выполненные задачи с датой выполнения раньше <code>completedBefore</code>: задачи
+     * читаются из <code>repository</code> по порядку <code>id</code>, каждые <code>BLOCK_SIZE</code> задач
+     * записываются блоком и удаляются из хранилища. Весь перенос идет в одном <code>runBatch()</code>, поэтому рабочий
+     * файл переписывается один раз. Удаление публикуется подписчикам <code>events()</code> как обычное.
+     *
+     * @return количество перенесенных задач
+     */
+    public synchronized int moveFrom(TaskRepository repository, LocalDate completedBefore) {
+        int[] moved = new int[1];
+        repository.runBatch(() -> {
+            List<Task> chunk = new ArrayList<>(BLOCK_SIZE);
+            try (Stream<Task> done = repository.streamTasks(TaskFilter.all().withStatus(StatusOfTask.DONE), 0)) {
+                Iterator<Task> tasks = done.iterator();
+                while (tasks.hasNext()) {
+                    Task task = tasks.next();
+                    if (task.getCompletionDate() == null || !task.getCompletionDate().isBefore(completedBefore)) {
+                        continue;
+                    }
+                    chunk.add(task);
+                    if (chunk.size() == BLOCK_SIZE) {
+                        moved[0] += move(repository, chunk);
+                    }
+                }
+            }
+            moved[0] += move(repository, chunk);
+        });
+        return moved[0];
+    }
+
+    /**
+     * Дописывает задачи в архив блоками по <code>BLOCK_SIZE</code>, каждый блок синхронизируется на диск.
+     */
+    public synchronized void append(List<Task> tasks) {
+        List<Task> sorted = tasks.stream().sorted(Comparator.comparingInt(Task::getId)).toList();
+        List<Block> appended = new ArrayList<>(blocks);
+        try {
+            for (int from = 0; from < sorted.size(); from += BLOCK_SIZE) {
+                appended.add(writeBlock(sorted.subList(from, Math.min(from + BLOCK_SIZE, sorted.size()))));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при записи архива задач: " + e.getMessage(), e);
+        } finally {
+            // уже записанные блоки видны, даже если следующий записать не удалось
+            blocks = Collections.unmodifiableList(appended);
+        }
+        ARCHIVED.add(sorted.size());
+    }
+
+    /**
+     * Задачи архива, удовлетворяющие фильтру, с <code>id</code> больше <code>afterId</code> в порядке
+     * <code>id</code>. Блоки распаковываются по мере того, как выдача доходит до их первого <code>id</code>, так что
+     * одновременно открыты только блоки с пересекающимися диапазонами.
+     */
+    public Stream<Task> streamTasks(TaskFilter filter, int afterId) {
+        List<Block> pending = blocks.stream()
+                .filter(block -> block.lastId() > afterId)
+                .sorted(Comparator.comparingInt(Block::firstId))
+                .toList();
+        return StreamSupport.stream(new BlockMerge(pending, filter, afterId), false);
+    }
+
+    /**
+     * @return задача из архива или <code>null</code>, если ее там нет
+     */
+    public Task findTaskById(int id) {
+        List<Block> current = blocks;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            Block block = current.get(i);
+            if (block.firstId() <= id && id <= block.lastId()) {
+                BlockReader reader = new BlockReader(block, TaskFilter.all(), id - 1);
+                if (reader.advance() && reader.current.getId() == id) {
+                    return reader.current;
+                }
+            }
+        }
+        return null;
+    }
+
+    public Summary summary() {
+        List<Block> current = blocks;
+        int tasks = 0;
+        int first = Integer.MAX_VALUE;
+        int last = Integer.MIN_VALUE;
+        for (Block block : current) {
+            tasks += block.count();
+            if (block.firstCompleted() != NO_DATE) {
+                first = Math.min(first, block.firstCompleted());
+                last = Math.max(last, block.lastCompleted());
+            }
+        }
+        return new Summary(tasks, current.size(),
+                first == Integer.MAX_VALUE ? null : LocalDate.ofEpochDay(first),
+                last == Integer.MIN_VALUE ? null : LocalDate.ofEpochDay(last));
+    }
+
+    /**
+     * Сливает две упорядоченные по <code>id</code> выдачи в одну; при совпадении <code>id</code> остается задача
+     * из <code>hot</code>. Закрытие результата закрывает обе выдачи.
+     */
+    public static Stream<Task> merge(Stream<Task> hot, Stream<Task> archived) {
+        Iterator<Task> left = hot.iterator();
+        Iterator<Task> right = archived.iterator();
+        Spliterator<Task> merged = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL) {
+            private Task nextLeft;
+            private Task nextRight;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Task> action) {
+                if (nextLeft == null && left.hasNext()) {
+                    nextLeft = left.next();
+                }
+                if (nextRight == null && right.hasNext()) {
+                    nextRight = right.next();
+                }
+                if (nextLeft == null && nextRight == null) {
+                    return false;
+                }
+                if (nextRight == null || (nextLeft != null && nextLeft.getId() <= nextRight.getId())) {
+                    if (nextRight != null && nextRight.getId() == nextLeft.getId()) {
+                        nextRight = null;
+                    }
+                    action.accept(nextLeft);
+                    nextLeft = null;
+                } else {
+                    action.accept(nextRight);
+                    nextRight = null;
+                }
+                return true;
+            }
+        };
+        return StreamSupport.stream(merged, false).onClose(hot::close).onClose(archived::close);
+    }
+
+    @Override
+    public synchronized void close() {
+        closeQuietly(data);
+        closeQuietly(index);
+    }
+
+    private int move(TaskRepository repository, List<Task> chunk) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        append(chunk);
+        int deleted = repository.deleteTasks(chunk.stream().mapToInt(Task::getId).toArray());
+        chunk.clear();
+        return deleted;
+    }
+
+    private Block writeBlock(List<Task> tasks) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int firstCompleted = Integer.MAX_VALUE;
+        int lastCompleted = Integer.MIN_VALUE;
+        try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes, 64 * 1024))) {
+            for (Task task : tasks) {
+                write(out, task);
+                if (task.getCompletionDate() != null) {
+                    firstCompleted = Math.min(firstCompleted, (int) task.getCompletionDate().toEpochDay());
+                    lastCompleted = Math.max(lastCompleted, (int) task.getCompletionDate().toEpochDay());
+                }
+            }
+        }
+        if (firstCompleted == Integer.MAX_VALUE) {
+            firstCompleted = NO_DATE;
+            lastCompleted = NO_DATE;
+        }
+
+        long offset = data.size();
+        writeFully(data, ByteBuffer.wrap(bytes.toByteArray()), offset);
+        data.force(false);
+        Block block = new Block(offset, bytes.size(), tasks.size(), tasks.get(0).getId(),
+                tasks.get(tasks.size() - 1).getId(), firstCompleted, lastCompleted);
+
+        ByteBuffer record = ByteBuffer.allocate(INDEX_RECORD_SIZE);
+        record.putLong(block.offset()).putInt(block.length()).putInt(block.count())
+                .putInt(block.firstId()).putInt(block.lastId())
+                .putInt(block.firstCompleted()).putInt(block.lastCompleted())
+                .flip();
+        writeFully(index, record, index.size());
+        index.force(false);
+        return block;
+    }
+
+    /**
+     * Читает индекс и отрезает то, что осталось от незавершенной записи: неполную запись индекса, записи блоков,
+     * не дописанных в файл архива, и байты блока, для которого запись индекса не успела появиться.
+     */
+    private static List<Block> recover(FileChannel data, FileChannel index) throws IOException {
+        int records = (int) (index.size() / INDEX_RECORD_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(records * INDEX_RECORD_SIZE);
+        while (buffer.hasRemaining() && index.read(buffer, buffer.position()) >= 0) {
+            // читается до конца буфера
+        }
+        buffer.flip();
+
+        List<Block> blocks = new ArrayList<>(records);
+        long end = 0;
+        long dataSize = data.size();
+        while (buffer.remaining() >= INDEX_RECORD_SIZE) {
+            Block block = new Block(buffer.getLong(), buffer.getInt(), buffer.getInt(), buffer.getInt(),
+                    buffer.getInt(), buffer.getInt(), buffer.getInt());
+            if (block.offset() != end || block.end() > dataSize) {
+                break;
+            }
+            blocks.add(block);
+            end = block.end();
+        }
+
+        if (index.size() != (long) blocks.size() * INDEX_RECORD_SIZE) {
+            index.truncate((long) blocks.size() * INDEX_RECORD_SIZE);
+        }
+        if (dataSize > end) {
+            data.truncate(end);
+        }
+        return Collections.unmodifiableList(blocks);
+    }
+
+    private static void write(DataOutputStream out, Task task) throws IOException {
+        out.writeInt(task.getId());
+        out.writeByte(task.getPriority());
+        out.writeInt(toEpochDay(task.getDeadline()));
+        out.writeByte(task.getStatusOfTask().ordinal());
+        out.writeInt(toEpochDay(task.getCompletionDate()));
+        writeString(out, task.getCaption());
+        writeString(out, task.getDescription());
+    }
+
+    private static Task read(DataInputStream in) throws IOException {
+        int id = in.readInt();
+        int priority = in.readByte();
+        LocalDate deadline = fromEpochDay(in.readInt());
+        StatusOfTask status = StatusOfTask.values()[in.readByte()];
+        LocalDate completionDate = fromEpochDay(in.readInt());
+        Task task = new Task(id, readString(in), readString(in), priority, deadline, status);
+        task.setCompletionDate(completionDate);
+        return task;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate fromEpochDay(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // архив только читается или уже синхронизирован, закрыть не удалось - нечего терять
+        }
+    }
+
+    /**
+     * Распакованный блок, читаемый по одной задаче: <code>current</code> - следующая задача с <code>id</code> больше
+     * <code>afterId</code>, удовлетворяющая фильтру.
+     */
+    private final class BlockReader {
+        private final DataInputStream in;
+        private final TaskFilter filter;
+        private final int afterId;
+        private int remaining;
+        private Task current;
+
+        BlockReader(Block block, TaskFilter filter, int afterId) {
+            this.filter = filter;
+            this.afterId = afterId;
+            this.remaining = block.count();
+            ByteBuffer compressed = ByteBuffer.allocate(block.length());
+            try {
+                while (compressed.hasRemaining()
+                        && data.read(compressed, block.offset() + compressed.position()) >= 0) {
+                    // читается до конца блока
+                }
+                this.in = new DataInputStream(new GZIPInputStream(
+                        new ByteArrayInputStream(compressed.array(), 0, compressed.position()), 16 * 1024));
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при чтении архива задач " + file + ": " + e.getMessage(), e);
+            }
+            BLOCKS_READ.increment();
+        }
+
+        boolean advance() {
+            try {
+                while (remaining > 0) {
+                    Task task = read(in);
+                    remaining--;
+                    if (task.getId() > afterId && filter.matches(task)) {
+                        current = task;
+                        return true;
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при чтении архива задач " + file + ": " + e.getMessage(), e);
+            }
+            current = null;
+            return false;
+        }
+    }
+
+    /**
+     * Слияние блоков в порядке <code>id</code>. Блоки упорядочены по первому <code>id</code> и открываются, только
+     * когда ни в одном открытом блоке не осталось задачи с меньшим <code>id</code>.
+     */
+    private final class BlockMerge extends Spliterators.AbstractSpliterator<Task> {
+        private final Iterator<Block> pending;
+        private final TaskFilter filter;
+        private final int afterId;
+        private final PriorityQueue<BlockReader> open =
+                new PriorityQueue<>(Comparator.comparingInt(reader -> reader.current.getId()));
+        private Block nextBlock;
+        private int lastId;
+
+        BlockMerge(List<Block> pending, TaskFilter filter, int afterId) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+            this.pending = pending.iterator();
+            this.filter = filter;
+            this.afterId = afterId;
+            this.nextBlock = this.pending.hasNext() ? this.pending.next() : null;
+            this.lastId = afterId;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Task> action) {
+            while (true) {
+                while (nextBlock != null && (open.isEmpty() || nextBlock.firstId() <= open.peek().current.getId())) {
+                    BlockReader reader = new BlockReader(nextBlock, filter, afterId);
+                    if (reader.advance()) {
+                        open.add(reader);
+                    }
+                    nextBlock = pending.hasNext() ? pending.next() : null;
+                }
+
+                BlockReader head = open.poll();
+                if (head == null) {
+                    return false;
+                }
+                Task task = head.current;
+                if (head.advance()) {
+                    open.add(head);
+                }
+                // повтор задачи, записанной в архив дважды, пропускается
+                if (task.getId() != lastId) {
+                    lastId = task.getId();
+                    action.accept(task);
+                    return true;
+                }
+            }
+        }
+    }
+}
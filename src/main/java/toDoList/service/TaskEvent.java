@@ -0,0 +1,110 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Событие изменения задачи, которое репозиторий публикует в <code>TaskEventStream</code> после каждой мутации.
+ * Задачи в событиях - копии, не связанные с хранилищем.
+ */
+public sealed interface TaskEvent {
+
+    /**
+     * @return <code>id</code> измененной задачи
+     */
+    int id();
+
+    /**
+     * Задача создана командой <code>new</code> или импортирована с новым <code>id</code>.
+     */
+    record Created(Task task) implements TaskEvent {
+        @Override
+        public int id() {
+            return task.getId();
+        }
+    }
+
+    /**
+     * Задача изменена правкой или импортом поверх существующей.
+     *
+     * @param task задача после изменения
+     * @param changed измененные поля, не пустое
+     */
+    record Updated(Task task, Set<Field> changed) implements TaskEvent {
+        @Override
+        public int id() {
+            return task.getId();
+        }
+    }
+
+    record Deleted(int id) implements TaskEvent {
+    }
+
+    /**
+     * Задача отмечена выполненной командой <code>complete</code>.
+     */
+    record Completed(int id, LocalDate completionDate) implements TaskEvent {
+    }
+
+    /**
+     * Поля задачи для <code>Updated.changed()</code>.
+     */
+    enum Field {
+        CAPTION, DESCRIPTION, PRIORITY, DEADLINE, STATUS, COMPLETION_DATE
+    }
+
+    /**
+     * Событие по состоянию задачи до и после мутации: без <code>before</code> - создание, без <code>after</code> -
+     * удаление, появление даты выполнения без других изменений - выполнение, иначе - изменение полей.
+     *
+     * @return событие или <code>null</code>, если задача не изменилась
+     */
+    static TaskEvent of(Task before, Task after) {
+        if (before == null) {
+            return new Created(new Task(after));
+        }
+        if (after == null) {
+            return new Deleted(before.getId());
+        }
+        Set<Field> changed = changes(before, after);
+        if (changed.isEmpty()) {
+            return null;
+        }
+        if (before.getCompletionDate() == null && after.getCompletionDate() != null
+                && EnumSet.of(Field.STATUS, Field.COMPLETION_DATE).containsAll(changed)) {
+            return new Completed(after.getId(), after.getCompletionDate());
+        }
+        return new Updated(new Task(after), changed);
+    }
+
+    /**
+     * @return неизменяемое множество полей, которыми <code>after</code> отличается от <code>before</code>
+     */
+    static Set<Field> changes(Task before, Task after) {
+        EnumSet<Field> changed = EnumSet.noneOf(Field.class);
+        if (!Objects.equals(before.getCaption(), after.getCaption())) {
+            changed.add(Field.CAPTION);
+        }
+        if (!Objects.equals(before.getDescription(), after.getDescription())) {
+            changed.add(Field.DESCRIPTION);
+        }
+        if (before.getPriority() != after.getPriority()) {
+            changed.add(Field.PRIORITY);
+        }
+        if (!Objects.equals(before.getDeadline(), after.getDeadline())) {
+            changed.add(Field.DEADLINE);
+        }
+        if (before.getStatusOfTask() != after.getStatusOfTask()) {
+            changed.add(Field.STATUS);
+        }
+        if (!Objects.equals(before.getCompletionDate(), after.getCompletionDate())) {
+            changed.add(Field.COMPLETION_DATE);
+        }
+        return Collections.unmodifiableSet(changed);
+    }
+}
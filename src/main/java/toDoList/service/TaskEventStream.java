@@ -0,0 +1,251 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Поток событий <code>TaskEvent</code> репозитория для подписчиков, которым нужны изменения задач без повторного
+ * чтения всего хранилища.
+ * <p>События пишутся в кольцевой буфер фиксированного размера. Публикация никогда не блокирует и не ждет
+ * подписчиков: событие кладется в ячейку <code>sequence % capacity</code>, после чего сдвигается volatile счетчик
+ * <code>published</code>. Писатели сериализуются монитором потока; обычно писатель один - репозиторий, который
+ * публикует события под своей блокировкой записи, а у <code>ShardedTaskRepository</code> поток общий для всех
+ * сегментов.
+ * <p>Каждый подписчик читает буфер в собственном потоке со своим курсором и засыпает через
+ * <code>LockSupport.park()</code>, когда новых событий нет; писатель будит только спящих подписчиков. Если
+ * подписчик отстал больше чем на <code>capacity</code> событий, старые события для него потеряны: курсор
+ * переносится на самое старое сохранившееся событие, а количество пропущенных передается в
+ * <code>Listener.onLost()</code>. Медленный подписчик не задерживает ни репозиторий, ни других подписчиков.
+ * <p>Пока подписчиков нет, <code>hasSubscribers()</code> возвращает <code>false</code>, и репозиторий не создает
+ * события вовсе.
+ */
+public final class TaskEventStream implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static final long CLOSE_TIMEOUT_MS = 1_000;
+
+    private static final TaskMetrics.Counter PUBLISHED = TaskMetrics.counter("events.published");
+    private static final TaskMetrics.Counter LOST = TaskMetrics.counter("events.lost");
+
+    private final AtomicReferenceArray<Slot> ring;
+    private final int mask;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // Поток, выполняющий служебное перемещение задач, события не публикует
+    private final ThreadLocal<Boolean> muted = ThreadLocal.withInitial(() -> false);
+
+    // Количество опубликованных событий; событие с номером n лежит в ячейке n & mask
+    private volatile long published;
+    private volatile boolean closed;
+
+    public TaskEventStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity размер буфера; округляется вверх до степени двойки
+     */
+    public TaskEventStream(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Размер буфера событий должен быть от 1 до 2^30");
+        }
+        int size = Integer.highestOneBit(capacity);
+        size = size == capacity ? size : size << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Обработчик событий подписчика. Вызывается только из потока подписки.
+     */
+    @FunctionalInterface
+    public interface Listener {
+
+        void onEvent(TaskEvent event);
+
+        /**
+         * Подписчик отстал, и <code>count</code> событий перед следующим были перезаписаны в буфере.
+         */
+        default void onLost(long count) {
+        }
+    }
+
+    /**
+     * Подписывает обработчик на события, опубликованные после вызова. Обработчик работает в отдельном потоке-демоне
+     * до закрытия подписки или потока событий.
+     *
+     * @param name имя подписчика для имени потока и сообщений об ошибках
+     */
+    public Subscription subscribe(String name, Listener listener) {
+        if (closed) {
+            throw new IllegalStateException("Поток событий закрыт");
+        }
+        Subscription subscription = new Subscription(name, listener, published);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * @return есть ли хотя бы одна подписка; без подписок события можно не создавать
+     */
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    /**
+     * Публикует событие. Писатели сериализуются монитором потока, подписчиков публикация не ждет.
+     */
+    synchronized void publish(TaskEvent event) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        long sequence = published;
+        ring.set((int) sequence & mask, new Slot(sequence, event));
+        published = sequence + 1;
+        PUBLISHED.increment();
+
+        for (Subscription subscription : subscriptions) {
+            if (subscription.waiting) {
+                LockSupport.unpark(subscription.thread);
+            }
+        }
+    }
+
+    /**
+     * Публикует событие <code>TaskEvent.of(before, after)</code>, если есть подписчики и задача изменилась.
+     */
+    void publish(Task before, Task after) {
+        if (subscriptions.isEmpty() || muted.get()) {
+            return;
+        }
+        TaskEvent event = TaskEvent.of(before, after);
+        if (event != null) {
+            publish(event);
+        }
+    }
+
+    /**
+     * Выполняет <code>action</code> без публикации событий из текущего потока. Используется для перемещения задач
+     * между хранилищами, которое не меняет сами задачи.
+     */
+    void withoutEvents(Runnable action) {
+        muted.set(true);
+        try {
+            action.run();
+        } finally {
+            muted.set(false);
+        }
+    }
+
+    /**
+     * Закрывает поток событий: подписчики дочитывают уже опубликованные события и завершаются.
+     * Ожидание каждого подписчика ограничено <code>CLOSE_TIMEOUT_MS</code>.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Subscription subscription : subscriptions) {
+            LockSupport.unpark(subscription.thread);
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.join();
+        }
+        subscriptions.clear();
+    }
+
+    private record Slot(long sequence, TaskEvent event) {
+    }
+
+    /**
+     * Подписка на поток событий со своим курсором и потоком доставки.
+     */
+    public final class Subscription implements AutoCloseable {
+        private final String name;
+        private final Listener listener;
+        private final Thread thread;
+
+        // Номер следующего события для доставки; используется только потоком подписки
+        private long cursor;
+        private volatile boolean waiting;
+        private volatile boolean stopped;
+
+        private Subscription(String name, Listener listener, long cursor) {
+            this.name = name;
+            this.listener = listener;
+            this.cursor = cursor;
+            this.thread = new Thread(this::run, "task-events-" + name);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * Останавливает доставку событий. Не ждет обработки уже опубликованных событий.
+         */
+        @Override
+        public void close() {
+            stopped = true;
+            subscriptions.remove(this);
+            LockSupport.unpark(thread);
+            if (Thread.currentThread() != thread) {
+                join();
+            }
+        }
+
+        private void run() {
+            while (!stopped) {
+                long available = published;
+                if (cursor == available) {
+                    if (closed) {
+                        return;
+                    }
+                    waiting = true;
+                    // повторная проверка после waiting: писатель либо увидит флаг, либо мы увидим событие
+                    if (published == cursor && !stopped && !closed) {
+                        LockSupport.park(this);
+                    }
+                    waiting = false;
+                    continue;
+                }
+
+                long oldest = available - ring.length();
+                if (cursor < oldest) {
+                    long lost = oldest - cursor;
+                    LOST.add(lost);
+                    cursor = oldest;
+                    deliver(() -> listener.onLost(lost));
+                    continue;
+                }
+
+                Slot slot = ring.get((int) cursor & mask);
+                if (slot.sequence() != cursor) {
+                    // ячейку уже перезаписали, потеря будет учтена на следующем шаге
+                    continue;
+                }
+                cursor++;
+                deliver(() -> listener.onEvent(slot.event()));
+            }
+        }
+
+        private void deliver(Runnable call) {
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                // ошибка одного обработчика не должна останавливать доставку
+                System.err.println("Ошибка в подписчике событий " + name + ": " + e.getMessage());
+            }
+        }
+
+        private void join() {
+            try {
+                thread.join(CLOSE_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
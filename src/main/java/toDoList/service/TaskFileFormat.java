@@ -0,0 +1,41 @@
+package main.java.toDoList.service;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Форматы файлов для команд <code>import</code> и <code>export</code>. Формат определяется по расширению файла.
+ */
+public enum TaskFileFormat {
+    /**
+     * Текущая схема XML хранилища, см. <code>StaxTaskStore</code>.
+     */
+    XML,
+    /**
+     * CSV со строкой заголовка <code>id,caption,description,priority,deadline,status,completionDate</code>;
+     * значения с запятыми, кавычками и переводами строк заключаются в кавычки.
+     */
+    CSV,
+    /**
+     * JSON Lines: по одному объекту задачи на строку с теми же полями, что и в HTTP API.
+     */
+    JSONL;
+
+    /**
+     * @throws IllegalArgumentException если расширение файла не <code>.xml</code>, <code>.csv</code>,
+     * <code>.jsonl</code> или <code>.ndjson</code>
+     */
+    public static TaskFileFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xml")) {
+            return XML;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return JSONL;
+        }
+        throw new IllegalArgumentException("Ошибка: поддерживаются файлы .xml, .csv и .jsonl");
+    }
+}
@@ -0,0 +1,83 @@
+package main.java.toDoList.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Межпроцессная блокировка файла задач через <code>FileChannel.lock</code>.
+ * <p>Репозитории держат задачи в памяти, поэтому два процесса, одновременно открывшие один файл, затирали бы
+ * изменения друг друга. Блокировка берется на весь срок жизни репозитория: второй процесс ждет до
+ * <code>timeoutMs</code> и получает ошибку, если файл так и не освободился.
+ * <p>Блокируется не сам файл данных, а соседний <code>&lt;файл&gt;.lock</code>: файл данных при записи заменяется
+ * переименованием, и блокировка на старом файле перестала бы что-либо защищать.
+ */
+final class TaskFileLock implements AutoCloseable {
+
+    private static final long RETRY_INTERVAL_MS = 50;
+
+    private final FileChannel channel;
+    private final FileLock lock;
+
+    private TaskFileLock(FileChannel channel, FileLock lock) {
+        this.channel = channel;
+        this.lock = lock;
+    }
+
+    static TaskFileLock acquire(Path dataFile, long timeoutMs) {
+        Path lockFile = dataFile.resolveSibling(dataFile.getFileName() + ".lock");
+        long deadline = System.currentTimeMillis() + timeoutMs;
+
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при блокировке файла задач: " + e.getMessage(), e);
+        }
+
+        try {
+            do {
+                try {
+                    FileLock lock = channel.tryLock();
+                    if (lock != null) {
+                        return new TaskFileLock(channel, lock);
+                    }
+                } catch (OverlappingFileLockException e) {
+                    // файл уже открыт другим репозиторием в этой же JVM
+                }
+                Thread.sleep(RETRY_INTERVAL_MS);
+            } while (System.currentTimeMillis() < deadline);
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw new RuntimeException("Ошибка при блокировке файла задач: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            closeQuietly(channel);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание блокировки файла задач прервано", e);
+        }
+
+        closeQuietly(channel);
+        throw new IllegalStateException("Файл задач " + dataFile + " уже используется другим процессом");
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // исходная ошибка важнее
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            lock.release();
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при снятии блокировки файла задач: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.time.LocalDate;
+
+/**
+ * Условия выборки задач для <code>TaskRepository.findTasks()</code>. Заданные условия объединяются через "и",
+ * фильтр без условий выбирает все задачи.
+ */
+public class TaskFilter {
+
+    private StatusOfTask status;
+    private Integer priority;
+    private LocalDate dueBefore;
+    private LocalDate overdueOn;
+
+    public static TaskFilter all() {
+        return new TaskFilter();
+    }
+
+    public TaskFilter withStatus(StatusOfTask status) {
+        this.status = status;
+        return this;
+    }
+
+    public TaskFilter withPriority(int priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @param date задачи со сроком строго раньше этой даты
+     */
+    public TaskFilter dueBefore(LocalDate date) {
+        this.dueBefore = date;
+        return this;
+    }
+
+    /**
+     * @param today задачи, не выполненные и со сроком раньше этой даты
+     */
+    public TaskFilter overdueOn(LocalDate today) {
+        this.overdueOn = today;
+        return this;
+    }
+
+    public StatusOfTask getStatus() {
+        return status;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public LocalDate getDueBefore() {
+        return dueBefore;
+    }
+
+    public LocalDate getOverdueOn() {
+        return overdueOn;
+    }
+
+    /**
+     * Проверка одной задачи по тем же условиям, что и выборка <code>TaskIndex.select()</code>, для хранилищ без
+     * индекса.
+     */
+    public boolean matches(Task task) {
+        if (status != null && task.getStatusOfTask() != status) {
+            return false;
+        }
+        if (priority != null && task.getPriority() != priority) {
+            return false;
+        }
+        LocalDate deadline = task.getDeadline();
+        if (dueBefore != null && (deadline == null || !deadline.isBefore(dueBefore))) {
+            return false;
+        }
+        return overdueOn == null
+                || (deadline != null && deadline.isBefore(overdueOn) && task.getStatusOfTask() != StatusOfTask.DONE);
+    }
+
+    public boolean isEmpty() {
+        return status == null && priority == null && dueBefore == null && overdueOn == null;
+    }
+}
@@ -0,0 +1,127 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Вторичные индексы по статусу, приоритету и сроку задач. Индексы хранят множества <code>id</code> в виде
+ * <code>BitSet</code>, поэтому пересечение условий выполняется побитовыми операциями без обхода задач.
+ * <ul>
+ *     <li>статус - <code>EnumMap&lt;StatusOfTask, BitSet&gt;</code>;</li>
+ *     <li>приоритет - массив из 11 корзин для значений 0..10;</li>
+ *     <li>срок - <code>NavigableMap&lt;LocalDate, BitSet&gt;</code> для запросов по диапазону дат;</li>
+ *     <li>срочность - <code>TaskPriorityQueue</code> невыполненных задач для команды <code>next</code>.</li>
+ * </ul>
+ * Индекс не потокобезопасен и обновляется репозиторием под его блокировкой.
+ */
+public class TaskIndex {
+
+    private static final int MAX_PRIORITY = 10;
+
+    private final Map<StatusOfTask, BitSet> byStatus = new EnumMap<>(StatusOfTask.class);
+    private final BitSet[] byPriority = new BitSet[MAX_PRIORITY + 1];
+    private final NavigableMap<LocalDate, BitSet> byDeadline = new TreeMap<>();
+    private final BitSet all = new BitSet();
+    private final TaskPriorityQueue next = new TaskPriorityQueue();
+
+    public TaskIndex() {
+        for (StatusOfTask status : StatusOfTask.values()) {
+            byStatus.put(status, new BitSet());
+        }
+        for (int i = 0; i < byPriority.length; i++) {
+            byPriority[i] = new BitSet();
+        }
+    }
+
+    public void add(Task task) {
+        int id = task.getId();
+        all.set(id);
+        if (task.getStatusOfTask() != null) {
+            byStatus.get(task.getStatusOfTask()).set(id);
+        }
+        if (task.getPriority() >= 0 && task.getPriority() <= MAX_PRIORITY) {
+            byPriority[task.getPriority()].set(id);
+        }
+        if (task.getDeadline() != null) {
+            byDeadline.computeIfAbsent(task.getDeadline(), date -> new BitSet()).set(id);
+        }
+        next.add(task);
+    }
+
+    public void remove(Task task) {
+        int id = task.getId();
+        all.clear(id);
+        if (task.getStatusOfTask() != null) {
+            byStatus.get(task.getStatusOfTask()).clear(id);
+        }
+        if (task.getPriority() >= 0 && task.getPriority() <= MAX_PRIORITY) {
+            byPriority[task.getPriority()].clear(id);
+        }
+        if (task.getDeadline() != null) {
+            BitSet ids = byDeadline.get(task.getDeadline());
+            if (ids != null) {
+                ids.clear(id);
+                if (ids.isEmpty()) {
+                    byDeadline.remove(task.getDeadline());
+                }
+            }
+        }
+        next.remove(task);
+    }
+
+    public void update(Task before, Task after) {
+        remove(before);
+        add(after);
+    }
+
+    /**
+     * @param count количество задач
+     * @param score формула оценки; при смене формулы куча перестраивается
+     * @return <code>id</code> самых срочных невыполненных задач в порядке убывания оценки
+     */
+    public int[] next(int count, TaskScore score) {
+        next.setScore(score);
+        return next.top(count);
+    }
+
+    /**
+     * @return <code>id</code> задач, удовлетворяющих всем условиям фильтра
+     */
+    public BitSet select(TaskFilter filter) {
+        BitSet result = (BitSet) all.clone();
+
+        if (filter.getStatus() != null) {
+            result.and(byStatus.get(filter.getStatus()));
+        }
+        if (filter.getPriority() != null) {
+            int priority = filter.getPriority();
+            if (priority < 0 || priority > MAX_PRIORITY) {
+                return new BitSet();
+            }
+            result.and(byPriority[priority]);
+        }
+        if (filter.getDueBefore() != null) {
+            result.and(dueBefore(filter.getDueBefore()));
+        }
+        if (filter.getOverdueOn() != null) {
+            result.and(dueBefore(filter.getOverdueOn()));
+            result.andNot(byStatus.get(StatusOfTask.DONE));
+        }
+        return result;
+    }
+
+    private BitSet dueBefore(LocalDate date) {
+        BitSet result = new BitSet();
+        for (BitSet ids : byDeadline.headMap(date, false).values()) {
+            result.or(ids);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,369 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи (write-ahead log) для изменений задач.
+ * <p>Каждое изменение дописывается в конец файла сегмента журнала как запись
+ * <code>[длина][CRC32][тип][id][состояние задачи]</code>. Запись <code>PUT</code> содержит полное состояние задачи
+ * после изменения, <code>DELETE</code> только <code>id</code>, поэтому повторное применение журнала идемпотентно.
+ * Запись <code>SEQUENCE</code> фиксирует резервирование идентификаторов.
+ * <p>Сегменты лежат рядом с XML файлом и называются <code>&lt;файл&gt;.journal.&lt;номер&gt;</code>. Перед записью
+ * контрольной точки репозиторий вызывает <code>rotate()</code>, а после успешной записи XML удаляет старые сегменты
+ * через <code>deleteSegmentsBefore()</code>. При старте все оставшиеся сегменты проигрываются поверх XML;
+ * оборванная последняя запись (сбой посреди записи) отбрасывается.
+ */
+public class TaskJournal implements AutoCloseable {
+
+    /**
+     * Политика сброса журнала на диск.
+     */
+    public enum FsyncPolicy {
+        /** <code>fsync</code> после каждой записи */
+        PER_OPERATION,
+        /** <code>fsync</code> периодически из фонового потока */
+        BATCHED,
+        /** сброс на усмотрение операционной системы */
+        NONE
+    }
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte SEQUENCE = 3;
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private static final TaskMetrics.Counter BYTES_READ = TaskMetrics.counter("journal.bytesRead");
+    private static final TaskMetrics.Counter BYTES_WRITTEN = TaskMetrics.counter("journal.bytesWritten");
+    private static final TaskMetrics.Timer SYNC = TaskMetrics.timer("journal.sync");
+
+    private final Path xmlFile;
+    private final FsyncPolicy fsyncPolicy;
+    private long segment;
+    private FileChannel channel;
+    private boolean unsynced;
+    private boolean syncDeferred;
+    private int maxReplayedId;
+
+    public TaskJournal(Path xmlFile, FsyncPolicy fsyncPolicy) {
+        this.xmlFile = xmlFile;
+        this.fsyncPolicy = fsyncPolicy;
+        List<Long> segments = segments();
+        this.segment = segments.isEmpty() ? 1 : segments.get(segments.size() - 1);
+        this.channel = open(segment);
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    /**
+     * Проигрывает все сегменты журнала поверх переданного состояния.
+     *
+     * @param tasks задачи из последней контрольной точки, изменяются на месте
+     * @return количество примененных записей
+     */
+    synchronized int replay(TaskTable tasks) {
+        int applied = 0;
+        for (long seq : segments()) {
+            applied += replaySegment(seq, tasks);
+        }
+        return applied;
+    }
+
+    /**
+     * @return наибольший <code>id</code>, встреченный при последнем <code>replay()</code>, включая удаленные задачи и
+     * зарезервированные диапазоны
+     */
+    public synchronized int getMaxReplayedId() {
+        return maxReplayedId;
+    }
+
+    /**
+     * Фиксирует, что последовательность идентификаторов сдвинута до <code>nextId</code>.
+     */
+    public synchronized void advanceSequence(int nextId) {
+        append(encode(SEQUENCE, nextId, null));
+    }
+
+    public synchronized void put(Task task) {
+        append(encode(PUT, task.getId(), task));
+    }
+
+    public synchronized void delete(int id) {
+        append(encode(DELETE, id, null));
+    }
+
+    /**
+     * На время пакетной операции откладывает <code>fsync</code> политики <code>PER_OPERATION</code> до ее окончания.
+     *
+     * @param deferred <code>true</code> в начале пакета, <code>false</code> в конце (со сбросом на диск)
+     */
+    public synchronized void setSyncDeferred(boolean deferred) {
+        syncDeferred = deferred;
+        if (!deferred && fsyncPolicy == FsyncPolicy.PER_OPERATION) {
+            sync();
+        }
+    }
+
+    /**
+     * Сбрасывает накопленные записи на диск. Используется фоновым потоком при политике <code>BATCHED</code>.
+     */
+    public synchronized void sync() {
+        if (!unsynced) {
+            return;
+        }
+        long started = SYNC.start();
+        try {
+            channel.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при сбросе журнала задач: " + e.getMessage(), e);
+        } finally {
+            SYNC.stop(started);
+        }
+    }
+
+    /**
+     * Закрывает текущий сегмент и начинает новый.
+     *
+     * @return номер первого сегмента, не вошедшего в контрольную точку
+     */
+    public synchronized long rotate() {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            sync();
+        }
+        closeChannel();
+        segment++;
+        channel = open(segment);
+        return segment;
+    }
+
+    /**
+     * Удаляет сегменты, изменения из которых уже записаны в контрольную точку.
+     *
+     * @param firstLiveSegment номер, полученный из <code>rotate()</code>
+     */
+    public synchronized void deleteSegmentsBefore(long firstLiveSegment) {
+        for (long seq : segments()) {
+            if (seq < firstLiveSegment) {
+                try {
+                    Files.deleteIfExists(segmentPath(seq));
+                } catch (IOException e) {
+                    throw new RuntimeException("Ошибка при удалении сегмента журнала: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    public synchronized long size() {
+        try {
+            return channel.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при чтении журнала задач: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (fsyncPolicy != FsyncPolicy.NONE) {
+            sync();
+        }
+        closeChannel();
+    }
+
+    private void append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(8 + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            BYTES_WRITTEN.add(buffer.limit());
+            unsynced = true;
+            if (fsyncPolicy == FsyncPolicy.PER_OPERATION && !syncDeferred) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при записи в журнал задач: " + e.getMessage(), e);
+        }
+    }
+
+    private int replaySegment(long seq, TaskTable tasks) {
+        Path path = segmentPath(seq);
+        int applied = 0;
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer data = ByteBuffer.allocate((int) in.size());
+            while (data.hasRemaining() && in.read(data) >= 0) {
+                // читаем сегмент целиком
+            }
+            data.flip();
+            BYTES_READ.add(data.limit());
+
+            long validEnd = 0;
+            while (data.remaining() >= 8) {
+                int length = data.getInt();
+                int checksum = data.getInt();
+                if (length < 0 || length > data.remaining()) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                data.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+
+                apply(ByteBuffer.wrap(payload), tasks);
+                applied++;
+                validEnd = data.position();
+            }
+
+            if (validEnd < in.size()) {
+                // обрезаем оборванную при сбое запись, чтобы новые записи не шли после мусора
+                in.truncate(validEnd);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при восстановлении из журнала задач: " + e.getMessage(), e);
+        }
+        return applied;
+    }
+
+    private void apply(ByteBuffer payload, TaskTable tasks) {
+        byte type = payload.get();
+        int id = payload.getInt();
+
+        if (type == SEQUENCE) {
+            maxReplayedId = Math.max(maxReplayedId, id - 1);
+            return;
+        }
+        maxReplayedId = Math.max(maxReplayedId, id);
+
+        if (type == DELETE) {
+            tasks.remove(id);
+            return;
+        }
+
+        String caption = readString(payload);
+        String description = readString(payload);
+        int priority = payload.getInt();
+        LocalDate deadline = readDate(payload);
+        byte status = payload.get();
+        LocalDate completionDate = readDate(payload);
+
+        Task task = new Task(id, caption, description, priority, deadline,
+                status < 0 ? null : StatusOfTask.values()[status]);
+        task.setCompletionDate(completionDate);
+        tasks.put(task);
+    }
+
+    private static byte[] encode(byte type, int id, Task task) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(type);
+            out.writeInt(id);
+            if (task != null) {
+                writeString(out, task.getCaption());
+                writeString(out, task.getDescription());
+                out.writeInt(task.getPriority());
+                out.writeLong(task.getDeadline() == null ? NO_DATE : task.getDeadline().toEpochDay());
+                out.writeByte(task.getStatusOfTask() == null ? -1 : task.getStatusOfTask().ordinal());
+                out.writeLong(task.getCompletionDate() == null ? NO_DATE : task.getCompletionDate().toEpochDay());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при записи в журнал задач: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static LocalDate readDate(ByteBuffer in) {
+        long epochDay = in.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private FileChannel open(long seq) {
+        try {
+            return FileChannel.open(segmentPath(seq),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при открытии журнала задач: " + e.getMessage(), e);
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при закрытии журнала задач: " + e.getMessage(), e);
+        }
+    }
+
+    private Path segmentPath(long seq) {
+        return xmlFile.resolveSibling(xmlFile.getFileName() + ".journal." + seq);
+    }
+
+    // Номера существующих сегментов по возрастанию
+    private List<Long> segments() {
+        String prefix = xmlFile.getFileName() + ".journal.";
+        List<Long> result = new ArrayList<>();
+
+        Path directory = xmlFile.toAbsolutePath().getParent();
+        try (Stream<Path> files = Files.list(directory)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(prefix))
+                    .forEach(name -> {
+                        try {
+                            result.add(Long.parseLong(name.substring(prefix.length())));
+                        } catch (NumberFormatException ignored) {
+                            // посторонний файл с похожим именем
+                        }
+                    });
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при чтении журнала задач: " + e.getMessage(), e);
+        }
+
+        result.sort(null);
+        return result;
+    }
+}
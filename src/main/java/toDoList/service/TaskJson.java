@@ -0,0 +1,215 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Минимальная JSON сериализация задач для HTTP API и файлов JSON Lines без внешних зависимостей.
+ * Разбор поддерживает только плоские объекты со строками, числами, <code>true/false</code> и <code>null</code>,
+ * чего достаточно для тел запросов API и строк JSON Lines.
+ */
+public final class TaskJson {
+
+    private TaskJson() {
+    }
+
+    public static String toJson(Task task) {
+        StringBuilder json = new StringBuilder(160);
+        appendTask(json, task);
+        return json.toString();
+    }
+
+    public static String toJson(List<Task> tasks) {
+        StringBuilder json = new StringBuilder(tasks.size() * 160 + 2);
+        json.append('[');
+        for (int i = 0; i < tasks.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendTask(json, tasks.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    public static String error(String message) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        appendString(json, message);
+        return json.append('}').toString();
+    }
+
+    /**
+     * Разбирает плоский JSON объект.
+     *
+     * @return значения полей в виде строк; <code>null</code> для JSON <code>null</code>
+     * @throws IllegalArgumentException если тело не является плоским JSON объектом
+     */
+    public static Map<String, String> parseObject(String body) {
+        Parser parser = new Parser(body);
+        Map<String, String> result = parser.object();
+        parser.skipWhitespace();
+        if (!parser.atEnd()) {
+            throw new IllegalArgumentException("Лишние символы после JSON объекта");
+        }
+        return result;
+    }
+
+    private static void appendTask(StringBuilder json, Task task) {
+        json.append("{\"id\":").append(task.getId());
+        json.append(",\"caption\":");
+        appendString(json, task.getCaption());
+        json.append(",\"description\":");
+        appendString(json, task.getDescription());
+        json.append(",\"priority\":").append(task.getPriority());
+        json.append(",\"deadline\":");
+        appendString(json, task.getDeadline() == null ? null : task.getDeadline().toString());
+        json.append(",\"status\":");
+        appendString(json, task.getStatusOfTask() == null ? null : task.getStatusOfTask().name().toLowerCase());
+        json.append(",\"completionDate\":");
+        appendString(json, task.getCompletionDate() == null ? null : task.getCompletionDate().toString());
+        json.append('}');
+    }
+
+    private static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            Map<String, String> result = new HashMap<>();
+            expect('{');
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return result;
+            }
+
+            while (true) {
+                skipWhitespace();
+                String key = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                result.put(key, value());
+                skipWhitespace();
+                char next = next();
+                if (next == '}') {
+                    return result;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Ожидалась ',' или '}' в позиции " + (position - 1));
+                }
+            }
+        }
+
+        private String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+
+            int start = position;
+            while (!atEnd() && ",}] \t\r\n".indexOf(peek()) < 0) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty() || literal.equals("{") || literal.startsWith("[")) {
+                throw new IllegalArgumentException("Поддерживаются только плоские JSON объекты");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder result = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return result.toString();
+                }
+                if (c != '\\') {
+                    result.append(c);
+                    continue;
+                }
+
+                char escaped = next();
+                switch (escaped) {
+                    case 'n' -> result.append('\n');
+                    case 'r' -> result.append('\r');
+                    case 't' -> result.append('\t');
+                    case 'b' -> result.append('\b');
+                    case 'f' -> result.append('\f');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Некорректная escape-последовательность");
+                        }
+                        result.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> result.append(escaped);
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (!atEnd() && Character.isWhitespace(peek())) {
+                position++;
+            }
+        }
+
+        boolean atEnd() {
+            return position >= text.length();
+        }
+
+        private char peek() {
+            if (atEnd()) {
+                throw new IllegalArgumentException("Неожиданный конец JSON");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("Ожидался '" + expected + "' в позиции " + (position - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package main.java.toDoList.service;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики и гистограммы задержек операций репозитория и команд <code>TaskService</code>.
+ * <p>Метрики выключены по умолчанию: пока не вызван <code>enable()</code>, замер стоит одного чтения volatile поля,
+ * <code>System.nanoTime()</code> не вызывается и ничего не записывается. Запись замера не блокирует:
+ * гистограмма - массив <code>AtomicLongArray</code> с логарифмическими корзинами по образцу HdrHistogram
+ * (<code>SUB_BUCKETS</code> линейных корзин на каждую степень двойки, относительная погрешность около 3%),
+ * количество и сумма - <code>LongAdder</code>.
+ * <p>Таймеры и счетчики создаются один раз в статических полях классов, которые их используют, и регистрируются
+ * по имени для отчета <code>format()</code>.
+ */
+public final class TaskMetrics {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Замеры дольше ~68 с попадают в последнюю корзину
+    private static final int MAX_VALUE_BITS = 36;
+    private static final long MAX_VALUE = (1L << MAX_VALUE_BITS) - 1;
+    private static final int BUCKETS = bucket(MAX_VALUE) + 1;
+
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+    private static final Map<String, Counter> COUNTERS = new ConcurrentSkipListMap<>();
+
+    private static volatile boolean enabled;
+
+    private TaskMetrics() {
+    }
+
+    public static void enable() {
+        enabled = true;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return таймер с указанным именем; повторный вызов с тем же именем возвращает тот же таймер
+     */
+    public static Timer timer(String name) {
+        return TIMERS.computeIfAbsent(name, Timer::new);
+    }
+
+    /**
+     * @return счетчик с указанным именем; повторный вызов с тем же именем возвращает тот же счетчик
+     */
+    public static Counter counter(String name) {
+        return COUNTERS.computeIfAbsent(name, Counter::new);
+    }
+
+    /**
+     * Обнуляет все таймеры и счетчики.
+     */
+    public static void reset() {
+        TIMERS.values().forEach(Timer::reset);
+        COUNTERS.values().forEach(counter -> counter.value.reset());
+    }
+
+    /**
+     * Текстовый отчет: по строке на каждый таймер и счетчик с ненулевыми значениями. Время в микросекундах.
+     */
+    public static String format() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-28s %10s %10s %10s %10s %10s%n",
+                "операция", "кол-во", "среднее", "p50", "p99", "макс"));
+        for (Timer timer : TIMERS.values()) {
+            long count = timer.count.sum();
+            if (count == 0) {
+                continue;
+            }
+            report.append(String.format("%-28s %10d %10.1f %10.1f %10.1f %10.1f%n",
+                    timer.name, count, timer.total.sum() / 1e3 / count,
+                    timer.percentile(0.50) / 1e3, timer.percentile(0.99) / 1e3, timer.max.get() / 1e3));
+        }
+        for (Counter counter : COUNTERS.values()) {
+            long value = counter.value.sum();
+            if (value != 0) {
+                report.append(String.format("%-28s %10d%n", counter.name, value));
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * Включает метрики и раз в <code>intervalSeconds</code> дописывает отчет <code>format()</code> в файл.
+     * При закрытии возвращенного объекта отчет дописывается последний раз.
+     *
+     * @param logFile файл журнала метрик
+     * @param intervalSeconds период записи
+     */
+    public static Dump dumpPeriodically(Path logFile, long intervalSeconds) {
+        enable();
+        return new Dump(logFile, intervalSeconds);
+    }
+
+    private static void dump(Path logFile) {
+        try (Writer out = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write("Метрики на " + LocalDateTime.now() + System.lineSeparator());
+            out.write(format());
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            // Журнал метрик не должен мешать работе программы
+            System.err.println("Ошибка при записи метрик в " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    // Индекс корзины: значения меньше 2 * SUB_BUCKETS точные, дальше SUB_BUCKETS корзин на степень двойки
+    private static int bucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    // Наибольшее значение, попадающее в корзину
+    private static long bucketUpperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+
+    /**
+     * Периодическая запись отчета в файл из фонового потока.
+     */
+    public static final class Dump implements AutoCloseable {
+        private final Path logFile;
+        private final ScheduledExecutorService executor;
+
+        private Dump(Path logFile, long intervalSeconds) {
+            this.logFile = logFile;
+            this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "task-metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleAtFixedRate(() -> dump(logFile), intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+            dump(logFile);
+        }
+    }
+
+    /**
+     * Таймер операции. Использование:
+     * <pre>
+     * long started = TIMER.start();
+     * try { ... } finally { TIMER.stop(started); }
+     * </pre>
+     */
+    public static final class Timer {
+        private final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private Timer(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return момент начала замера или 0, если метрики выключены
+         */
+        public long start() {
+            return enabled ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Записывает длительность с момента <code>started</code>; ничего не делает, если замер не начинался.
+         */
+        public void stop(long started) {
+            if (started != 0) {
+                record(System.nanoTime() - started);
+            }
+        }
+
+        /**
+         * Записывает длительность в наносекундах.
+         */
+        public void record(long nanos) {
+            long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+            count.increment();
+            total.add(value);
+            histogram.incrementAndGet(bucket(value));
+            long previous = max.get();
+            while (value > previous && !max.compareAndSet(previous, value)) {
+                previous = max.get();
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return верхняя граница корзины, в которую попадает перцентиль <code>quantile</code>, в наносекундах
+         */
+        public long percentile(double quantile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        private void reset() {
+            count.reset();
+            total.reset();
+            max.set(0);
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Счетчик событий или байт. Увеличивается только при включенных метриках.
+     */
+    public static final class Counter {
+        private final String name;
+        private final LongAdder value = new LongAdder();
+
+        private Counter(String name) {
+            this.name = name;
+        }
+
+        public void add(long delta) {
+            if (enabled) {
+                value.add(delta);
+            }
+        }
+
+        public void increment() {
+            add(1);
+        }
+
+        public long get() {
+            return value.sum();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Индексированная двоичная куча невыполненных задач, упорядоченная по <code>TaskScore</code>.
+ * Для каждой задачи известна ее позиция в куче, поэтому добавление, удаление и изменение задачи выполняются за
+ * <code>O(log n)</code>, а первые <code>k</code> задач выбираются за <code>O(k log k)</code> без сортировки списка.
+ * <p>Оценка линейна по сроку, поэтому порядок задач не зависит от текущей даты и куча не перестраивается при
+ * смене дня. Выполненные задачи (<code>DONE</code>) в куче не хранятся.
+ * Куча не потокобезопасна и обновляется вместе с <code>TaskIndex</code> под его блокировкой.
+ */
+public class TaskPriorityQueue {
+
+    private static final int ABSENT = -1;
+    private static final int NO_DEADLINE = (int) TaskScore.NO_DEADLINE.toEpochDay();
+
+    private TaskScore score = TaskScore.DEFAULT;
+
+    // куча id задач: на вершине задача с наибольшей оценкой
+    private int[] heap = new int[1024];
+    private int size;
+
+    // по id: позиция в куче, оценка и поля, нужные для ее пересчета
+    private int[] position = new int[1024];
+    private double[] keys = new double[1024];
+    private byte[] priorities = new byte[1024];
+    private int[] deadlines = new int[1024];
+
+    public TaskPriorityQueue() {
+        Arrays.fill(position, ABSENT);
+    }
+
+    public void add(Task task) {
+        if (task.getStatusOfTask() == StatusOfTask.DONE) {
+            return;
+        }
+
+        int id = task.getId();
+        ensureCapacity(id);
+        priorities[id] = (byte) task.getPriority();
+        deadlines[id] = task.getDeadline() == null ? NO_DEADLINE : (int) task.getDeadline().toEpochDay();
+        keys[id] = score.key(priorities[id], deadlines[id]);
+
+        if (position[id] != ABSENT) {
+            restore(position[id]);
+            return;
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        heap[size] = id;
+        position[id] = size;
+        siftUp(size++);
+    }
+
+    public void remove(Task task) {
+        int id = task.getId();
+        if (id >= position.length || position[id] == ABSENT) {
+            return;
+        }
+
+        int index = position[id];
+        position[id] = ABSENT;
+        size--;
+        if (index != size) {
+            heap[index] = heap[size];
+            position[heap[index]] = index;
+            restore(index);
+        }
+    }
+
+    /**
+     * @return <code>id</code> не более чем <code>count</code> невыполненных задач в порядке убывания оценки
+     */
+    public int[] top(int count) {
+        int[] result = new int[Math.max(0, Math.min(count, size))];
+        if (result.length == 0) {
+            return result;
+        }
+
+        // Обход кучи от вершины: кандидаты - дети уже выбранных узлов, лучший из них следующий по оценке
+        PriorityQueue<Integer> candidates = new PriorityQueue<>((a, b) -> compare(heap[b], heap[a]));
+        candidates.add(0);
+        for (int i = 0; i < result.length; i++) {
+            int index = candidates.poll();
+            result[i] = heap[index];
+            if (2 * index + 1 < size) {
+                candidates.add(2 * index + 1);
+            }
+            if (2 * index + 2 < size) {
+                candidates.add(2 * index + 2);
+            }
+        }
+        return result;
+    }
+
+    public TaskScore getScore() {
+        return score;
+    }
+
+    /**
+     * Меняет формулу оценки и перестраивает кучу за <code>O(n)</code>.
+     */
+    public void setScore(TaskScore score) {
+        if (score.equals(this.score)) {
+            return;
+        }
+
+        this.score = score;
+        for (int i = 0; i < size; i++) {
+            int id = heap[i];
+            keys[id] = score.key(priorities[id], deadlines[id]);
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void restore(int index) {
+        if (index > 0 && compare(heap[index], heap[(index - 1) / 2]) > 0) {
+            siftUp(index);
+        } else {
+            siftDown(index);
+        }
+    }
+
+    private void siftUp(int index) {
+        int id = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (compare(id, heap[parent]) <= 0) {
+                break;
+            }
+            heap[index] = heap[parent];
+            position[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+
+    private void siftDown(int index) {
+        int id = heap[index];
+        while (2 * index + 1 < size) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && compare(heap[child + 1], heap[child]) > 0) {
+                child++;
+            }
+            if (compare(id, heap[child]) >= 0) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        position[id] = index;
+    }
+
+    // Больше оценка - выше в куче; при равной оценке выше задача с меньшим id
+    private int compare(int a, int b) {
+        int byKey = Double.compare(keys[a], keys[b]);
+        return byKey != 0 ? byKey : Integer.compare(b, a);
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < position.length) {
+            return;
+        }
+
+        int capacity = Math.max(id + 1, position.length * 2);
+        int previous = position.length;
+        position = Arrays.copyOf(position, capacity);
+        Arrays.fill(position, previous, capacity, ABSENT);
+        keys = Arrays.copyOf(keys, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        deadlines = Arrays.copyOf(deadlines, capacity);
+    }
+}
@@ -0,0 +1,391 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Напоминания о сроках невыполненных задач: "скоро срок" за <code>leadDays</code> дней до срока и "просрочена" на
+ * следующий день после срока. Каждое напоминание выдается один раз; изменение срока или возврат задачи из
+ * <code>DONE</code> взводит напоминания заново.
+ * <p>Сроки задаются датой, поэтому вместо колеса таймеров с миллисекундными слотами используется календарь: одна
+ * корзина <code>id</code> на каждый день срабатывания в <code>TreeMap</code>. Задача находится не более чем в одной
+ * корзине: сначала в корзине дня "скоро срок", после срабатывания - в корзине дня просрочки. Постановка в корзину -
+ * дописывание в массив, а отмена ленивая: состояние задачи хранится в массивах по <code>id</code>
+ * (<code>deadlines</code>, <code>stages</code>), и при срабатывании корзины записи, которые с тех пор перенесены или
+ * отменены, просто пропускаются. Память - несколько байт на задачу плюс <code>int</code> на запись в корзине.
+ * <p>Состояние обновляется по событиям <code>TaskRepository.events()</code>, без обхода задач. Полный обход делается
+ * один раз при запуске и повторно, только если подписка отстала и потеряла события. Поток напоминаний просыпается
+ * в начале каждых суток и разбирает корзины наступивших дней; задачи, срок которых подошел в момент изменения,
+ * напоминаются сразу.
+ * <p>Задачи, уже просроченные или со сроком скоро на момент запуска, не перечисляются по одной: о них сообщается одной
+ * сводкой <code>Listener.onBacklog()</code>.
+ */
+public final class TaskReminders implements AutoCloseable {
+
+    private static final TaskMetrics.Counter FIRED = TaskMetrics.counter("reminders.fired");
+
+    private static final byte NONE = 0;
+    private static final byte SOON = 1;
+    private static final byte OVERDUE = 2;
+    private static final byte FIRED_ALL = 3;
+
+    private final TaskRepository repository;
+    private final int leadDays;
+    private final Clock clock;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+    private final TaskEventStream.Subscription subscription;
+
+    // Поля ниже защищены монитором this
+    private int[] deadlines = new int[1024];
+    private byte[] stages = new byte[1024];
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+    private int pending;
+
+    /**
+     * Вид напоминания.
+     */
+    public enum Kind {
+        DUE_SOON, OVERDUE
+    }
+
+    /**
+     * Напоминание о задаче. <code>task</code> - копия задачи на момент напоминания.
+     */
+    public record Reminder(Kind kind, Task task) {
+    }
+
+    /**
+     * Получатель напоминаний. Вызывается из потока напоминаний или потока подписки на события.
+     */
+    public interface Listener {
+
+        void onReminder(Reminder reminder);
+
+        /**
+         * Сводка при запуске: сколько задач уже просрочено и у скольких срок наступает в ближайшие
+         * <code>leadDays</code> дней.
+         */
+        void onBacklog(int overdue, int dueSoon);
+    }
+
+    /**
+     * Запускает напоминания: подписывается на события репозитория, обходит его задачи и планирует разбор корзин
+     * в начале каждых суток.
+     *
+     * @param leadDays за сколько дней до срока напоминать, не меньше 0
+     * @param clock часы для текущей даты и часового пояса
+     */
+    public TaskReminders(TaskRepository repository, int leadDays, Clock clock, Listener listener) {
+        if (leadDays < 0) {
+            throw new IllegalArgumentException("Количество дней до срока не может быть отрицательным");
+        }
+        this.repository = repository;
+        this.leadDays = leadDays;
+        this.clock = clock;
+        this.listener = listener;
+
+        // подписка раньше обхода: изменение между обходом и подпиской иначе было бы потеряно; событие, которое
+        // обход уже учел, при применении пропускается
+        this.subscription = repository.events().subscribe("reminders", new TaskEventStream.Listener() {
+            @Override
+            public void onEvent(TaskEvent event) {
+                apply(event);
+            }
+
+            @Override
+            public void onLost(long count) {
+                // без пропущенных событий состояние не восстановить, сверяемся с задачами целиком
+                List<Reminder> due = new ArrayList<>();
+                synchronized (TaskReminders.this) {
+                    rescan(due::add);
+                }
+                due.forEach(TaskReminders.this::fire);
+            }
+        });
+
+        int[] backlog = new int[2];
+        try {
+            synchronized (this) {
+                rescan(reminder -> backlog[reminder.kind() == Kind.OVERDUE ? 0 : 1]++);
+            }
+            listener.onBacklog(backlog[0], backlog[1]);
+        } catch (RuntimeException e) {
+            subscription.close();
+            throw e;
+        }
+
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "task-reminders");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduleNextDay();
+    }
+
+    /**
+     * Напоминания в файл: каждое напоминание дописывается строкой <code>дата-время вид id заголовок срок</code>.
+     *
+     * @param clock часы для отметки времени, те же, что у напоминаний
+     */
+    public static Listener logTo(Path logFile, Clock clock) {
+        return new Listener() {
+            @Override
+            public void onReminder(Reminder reminder) {
+                Task task = reminder.task();
+                append(logFile, clock, reminder.kind() + " " + task.getId() + " " + task.getCaption()
+                        + " " + task.getDeadline());
+            }
+
+            @Override
+            public void onBacklog(int overdue, int dueSoon) {
+                append(logFile, clock, "BACKLOG " + overdue + " " + dueSoon);
+            }
+        };
+    }
+
+    /**
+     * @return количество задач, для которых еще ожидается напоминание
+     */
+    public synchronized int getPending() {
+        return pending;
+    }
+
+    /**
+     * Разбирает корзины всех наступивших дней. Вызывается потоком напоминаний в начале суток.
+     */
+    public void fireDue() {
+        long today = LocalDate.now(clock).toEpochDay();
+        while (true) {
+            Reminder reminder;
+            synchronized (this) {
+                reminder = pollDue(today);
+            }
+            if (reminder == null) {
+                return;
+            }
+            fire(reminder);
+        }
+    }
+
+    @Override
+    public void close() {
+        subscription.close();
+        executor.shutdownNow();
+    }
+
+    private void scheduleNextDay() {
+        ZonedDateTime now = ZonedDateTime.now(clock);
+        ZonedDateTime midnight = now.toLocalDate().plusDays(1).atStartOfDay(now.getZone());
+        executor.schedule(() -> {
+            try {
+                fireDue();
+            } finally {
+                if (!executor.isShutdown()) {
+                    scheduleNextDay();
+                }
+            }
+        }, Duration.between(now, midnight).toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void apply(TaskEvent event) {
+        Reminder reminder;
+        synchronized (this) {
+            if (event instanceof TaskEvent.Created created) {
+                reminder = armedFor(created.task()) ? null : arm(created.task());
+            } else if (event instanceof TaskEvent.Updated updated) {
+                Task task = updated.task();
+                int id = task.getId();
+                boolean reopened = task.getStatusOfTask() != StatusOfTask.DONE
+                        && (id >= stages.length || stages[id] == NONE);
+                // смена статуса без выполнения или возврата из DONE напоминания не взводит заново
+                reminder = !armedFor(task) && (updated.changed().contains(TaskEvent.Field.DEADLINE)
+                        || task.getStatusOfTask() == StatusOfTask.DONE || reopened) ? arm(task) : null;
+            } else {
+                disarm(event.id());
+                reminder = null;
+            }
+        }
+        if (reminder != null) {
+            fire(reminder);
+        }
+    }
+
+    /**
+     * Сверяет состояние со всеми задачами. Напоминания задач, у которых срок и статус не менялись, не повторяются.
+     *
+     * @param due получатель напоминаний, срок которых уже наступил
+     */
+    private void rescan(Consumer<Reminder> due) {
+        BitSet seen = new BitSet();
+        try (Stream<Task> tasks = repository.streamTasks(TaskFilter.all(), 0)) {
+            tasks.forEach(task -> {
+                int id = task.getId();
+                seen.set(id);
+                if (armedFor(task)) {
+                    return;
+                }
+                Reminder reminder = arm(task);
+                if (reminder != null) {
+                    due.accept(reminder);
+                }
+            });
+        }
+        for (int id = 0; id < stages.length; id++) {
+            if (stages[id] != NONE && !seen.get(id)) {
+                disarm(id);
+            }
+        }
+    }
+
+    /**
+     * @return <code>true</code>, если напоминания задачи уже взведены по ее текущему сроку, например начальным
+     * обходом, который увидел изменение раньше, чем пришло его событие
+     */
+    private boolean armedFor(Task task) {
+        int id = task.getId();
+        return id < stages.length && stages[id] != NONE && task.getDeadline() != null
+                && deadlines[id] == (int) task.getDeadline().toEpochDay()
+                && task.getStatusOfTask() != StatusOfTask.DONE;
+    }
+
+    /**
+     * Взводит напоминания задачи по ее сроку и статусу заново.
+     *
+     * @return напоминание, срок которого уже наступил, или <code>null</code>
+     */
+    private Reminder arm(Task task) {
+        int id = task.getId();
+        disarm(id);
+        if (task.getDeadline() == null || task.getStatusOfTask() == StatusOfTask.DONE) {
+            return null;
+        }
+
+        ensureCapacity(id);
+        long today = LocalDate.now(clock).toEpochDay();
+        int deadline = (int) task.getDeadline().toEpochDay();
+        deadlines[id] = deadline;
+        if (deadline < today) {
+            setStage(id, FIRED_ALL);
+            return new Reminder(Kind.OVERDUE, task);
+        }
+        if (deadline - leadDays <= today) {
+            schedule(id, OVERDUE, deadline + 1L);
+            return new Reminder(Kind.DUE_SOON, task);
+        }
+        schedule(id, SOON, (long) deadline - leadDays);
+        return null;
+    }
+
+    private void disarm(int id) {
+        if (id < stages.length) {
+            setStage(id, NONE);
+        }
+    }
+
+    private void schedule(int id, byte stage, long day) {
+        setStage(id, stage);
+        buckets.computeIfAbsent(day, key -> new Bucket()).add(id);
+    }
+
+    private void setStage(int id, byte stage) {
+        if (stages[id] == SOON || stages[id] == OVERDUE) {
+            pending--;
+        }
+        if (stage == SOON || stage == OVERDUE) {
+            pending++;
+        }
+        stages[id] = stage;
+    }
+
+    // Следующее напоминание из корзин наступивших дней; устаревшие записи корзин пропускаются
+    private Reminder pollDue(long today) {
+        while (!buckets.isEmpty() && buckets.firstKey() <= today) {
+            Map.Entry<Long, Bucket> first = buckets.firstEntry();
+            long day = first.getKey();
+            Bucket bucket = first.getValue();
+            while (bucket.size > 0) {
+                int id = bucket.ids[--bucket.size];
+                byte stage = stages[id];
+                if (stage == SOON && (long) deadlines[id] - leadDays == day) {
+                    Task task = repository.findTaskById(id);
+                    if (task != null) {
+                        schedule(id, OVERDUE, deadlines[id] + 1L);
+                        return new Reminder(Kind.DUE_SOON, task);
+                    }
+                    disarm(id);
+                } else if (stage == OVERDUE && deadlines[id] + 1L == day) {
+                    Task task = repository.findTaskById(id);
+                    setStage(id, task == null ? NONE : FIRED_ALL);
+                    if (task != null) {
+                        return new Reminder(Kind.OVERDUE, task);
+                    }
+                }
+            }
+            buckets.remove(day);
+        }
+        return null;
+    }
+
+    private void fire(Reminder reminder) {
+        FIRED.increment();
+        try {
+            listener.onReminder(reminder);
+        } catch (RuntimeException e) {
+            System.err.println("Ошибка при выдаче напоминания: " + e.getMessage());
+        }
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= stages.length) {
+            int length = Math.max(id + 1, stages.length * 2);
+            deadlines = Arrays.copyOf(deadlines, length);
+            stages = Arrays.copyOf(stages, length);
+        }
+    }
+
+    private static void append(Path logFile, Clock clock, String line) {
+        try (Writer out = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            out.write(ZonedDateTime.now(clock) + " " + line + System.lineSeparator());
+        } catch (IOException e) {
+            // Журнал напоминаний не должен мешать работе программы
+            System.err.println("Ошибка при записи напоминания в " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    // Записи одного дня срабатывания; отмененные и перенесенные остаются до разбора корзины
+    private static final class Bucket {
+        private int[] ids = new int[4];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+}
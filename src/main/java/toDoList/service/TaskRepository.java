@@ -0,0 +1,251 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Хранилище задач, с которым работает <code>TaskService</code>.
+ * Реализации: <code>XMLTaskRepository</code> (XML файл), <code>BinaryTaskRepository</code> (бинарный файл,
+ * отображенный в память) и <code>ShardedTaskRepository</code> (каталог XML сегментов по диапазонам <code>id</code>).
+ */
+public interface TaskRepository extends AutoCloseable {
+
+    /**
+     * Размер страницы, которыми <code>streamTasks()</code> читает задачи из хранилища.
+     */
+    int STREAM_PAGE_SIZE = 256;
+
+    /**
+     * Сохраняет новую задачу, присваивая ей следующий <code>id</code> из последовательности и статус <code>NEW</code>.
+     *
+     * @param task новая задача
+     * @return та же задача с заполненными <code>id</code> и статусом
+     */
+    Task createTask(Task task);
+
+    /**
+     * Сохраняет задачу с уже заданным <code>id</code>, заменяя существующую с тем же <code>id</code>.
+     * Последовательность идентификаторов сдвигается так, чтобы <code>createTask</code> не выдал этот <code>id</code>
+     * повторно. Используется при импорте и миграции.
+     *
+     * @param task задача с заполненным <code>id</code>
+     */
+    void importTask(Task task);
+
+    /**
+     * Атомарно резервирует непрерывный диапазон идентификаторов, например для массового импорта через
+     * <code>importTask</code>. Зарезервированные <code>id</code> больше не будут выданы <code>createTask</code>.
+     *
+     * @param count количество идентификаторов
+     * @return первый идентификатор диапазона <code>[first, first + count)</code>
+     */
+    int reserveIds(int count);
+
+    /**
+     * Изменяет задачу. Пустые строки, нулевой приоритет и <code>null</code> оставляют поле без изменений.
+     *
+     * @return <code>false</code>, если задача не найдена
+     */
+    boolean editTask(
+            int id,
+            String newCaption,
+            String newDescription,
+            int newPriority,
+            LocalDate newDeadline,
+            StatusOfTask newStatus);
+
+    /**
+     * @return копия задачи или <code>null</code>, если задача не найдена
+     */
+    Task findTaskById(int id);
+
+    /**
+     * @return копии всех задач, упорядоченные по <code>id</code>
+     */
+    List<Task> getTasks();
+
+    /**
+     * Выбирает задачи по вторичным индексам статуса, приоритета и срока без обхода всех задач.
+     *
+     * @param filter условия выборки
+     * @return копии подходящих задач, упорядоченные по <code>id</code>
+     */
+    List<Task> findTasks(TaskFilter filter);
+
+    /**
+     * Страница выборки по курсору: до <code>limit</code> подходящих задач с <code>id</code> больше
+     * <code>afterId</code>. Стоимость не зависит от номера страницы, в отличие от пропуска первых N задач.
+     *
+     * @param filter условия выборки
+     * @param afterId последний <code>id</code> предыдущей страницы; 0 - с начала
+     * @param limit максимальный размер страницы
+     * @return копии подходящих задач, упорядоченные по <code>id</code>
+     */
+    List<Task> findTasks(TaskFilter filter, int afterId, int limit);
+
+    /**
+     * Ленивый поток подходящих задач с <code>id</code> больше <code>afterId</code>, упорядоченных по
+     * <code>id</code>. Задачи читаются страницами по <code>STREAM_PAGE_SIZE</code> через
+     * <code>findTasks(filter, afterId, limit)</code>, поэтому первая задача доступна сразу, а память не зависит
+     * от общего количества задач.
+     * <p>Поток слабо согласован: изменения, сделанные во время обхода, могут быть видны или не видны в еще
+     * не прочитанных страницах, но каждая задача выдается не более одного раза.
+     *
+     * @param filter условия выборки
+     * @param afterId <code>id</code>, после которого начинается выдача; 0 - с начала
+     */
+    default Stream<Task> streamTasks(TaskFilter filter, int afterId) {
+        Iterator<Task> pages = new Iterator<>() {
+            private Iterator<Task> page = Collections.emptyIterator();
+            private int cursor = afterId;
+            private boolean exhausted;
+
+            @Override
+            public boolean hasNext() {
+                if (!page.hasNext() && !exhausted) {
+                    List<Task> next = findTasks(filter, cursor, STREAM_PAGE_SIZE);
+                    exhausted = next.size() < STREAM_PAGE_SIZE;
+                    if (!next.isEmpty()) {
+                        cursor = next.get(next.size() - 1).getId();
+                    }
+                    page = next.iterator();
+                }
+                return page.hasNext();
+            }
+
+            @Override
+            public Task next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Самые срочные невыполненные задачи по оценке <code>score</code>. Выбираются из индексированной кучи,
+     * которая обновляется при каждом изменении задачи, без сортировки всего списка.
+     *
+     * @param count максимальное количество задач
+     * @param score формула оценки
+     * @return копии задач в порядке убывания оценки
+     */
+    List<Task> nextTasks(int count, TaskScore score);
+
+    /**
+     * Полнотекстовый поиск по заголовку и описанию через <code>TaskSearchIndex</code>. Индекс загружается из
+     * файла рядом с хранилищем при первом поиске и дальше обновляется вместе с задачами.
+     *
+     * @param query слова запроса, каждое сопоставляется как префикс слова
+     * @param limit максимальное количество результатов
+     * @return копии задач, содержащих все слова запроса, в порядке убывания релевантности
+     */
+    List<Task> searchTasks(String query, int limit);
+
+    /**
+     * @return <code>false</code>, если задача не найдена
+     */
+    boolean deleteTask(int id);
+
+    /**
+     * Отмечает задачу выполненной текущей датой.
+     *
+     * @return <code>false</code>, если задача не найдена или уже выполнена
+     */
+    boolean markAsCompleted(int id);
+
+    /**
+     * Синхронно сохраняет все накопленные изменения.
+     */
+    void flush();
+
+    /**
+     * Выполняет группу изменений как одну транзакцию: реализации не сохраняют промежуточное состояние, а по
+     * завершении все изменения записываются одним <code>flush()</code>.
+     *
+     * @param batch изменения
+     */
+    default void runBatch(Runnable batch) {
+        try {
+            batch.run();
+        } finally {
+            flush();
+        }
+    }
+
+    /**
+     * Массово создает задачи одной транзакцией <code>runBatch()</code>.
+     *
+     * @return те же задачи с присвоенными <code>id</code>
+     */
+    default List<Task> createTasks(List<Task> tasks) {
+        runBatch(() -> tasks.forEach(this::createTask));
+        return tasks;
+    }
+
+    /**
+     * Массово удаляет задачи одной транзакцией <code>runBatch()</code>.
+     *
+     * @return количество удаленных задач
+     */
+    default int deleteTasks(int... ids) {
+        int[] deleted = {0};
+        runBatch(() -> {
+            for (int id : ids) {
+                if (deleteTask(id)) {
+                    deleted[0]++;
+                }
+            }
+        });
+        return deleted[0];
+    }
+
+    /**
+     * Массово отмечает задачи выполненными одной транзакцией <code>runBatch()</code>.
+     *
+     * @return количество задач, отмеченных выполненными
+     */
+    default int markAsCompleted(int... ids) {
+        int[] completed = {0};
+        runBatch(() -> {
+            for (int id : ids) {
+                if (markAsCompleted(id)) {
+                    completed[0]++;
+                }
+            }
+        });
+        return completed[0];
+    }
+
+    /**
+     * Поток событий <code>TaskEvent</code> о каждом изменении задач этого репозитория. Подписчики получают события
+     * в своих потоках через неблокирующий кольцевой буфер, см. <code>TaskEventStream</code>.
+     */
+    TaskEventStream events();
+
+    /**
+     * Сохраняет изменения и освобождает хранилище; подписчики <code>events()</code> дочитывают опубликованные
+     * события и завершаются.
+     */
+    @Override
+    void close();
+
+    default List<Task> viewTasksByStatus(List<Task> tasks, StatusOfTask statusFilter) {
+        return tasks.stream()
+                .filter(task -> task.getStatusOfTask() == statusFilter)
+                .toList();
+    }
+}
@@ -0,0 +1,60 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Оценка срочности задачи для команды <code>next</code>:
+ * <code>priorityWeight * приоритет - dayWeight * дней до срока</code>. Чем выше оценка, тем раньше задачу стоит
+ * взять в работу; просроченные задачи получают надбавку за каждый день просрочки. Задача без срока считается
+ * со сроком <code>NO_DEADLINE</code>: при ненулевом весе дня она идет после всех задач со сроком.
+ * <p>По умолчанию один пункт приоритета равен одному дню до срока.
+ *
+ * @param priorityWeight вес одного пункта приоритета
+ * @param dayWeight вес одного дня до срока
+ */
+public record TaskScore(double priorityWeight, double dayWeight) {
+
+    public static final TaskScore DEFAULT = new TaskScore(1, 1);
+
+    // Срок задачи без срока: и в score(), и в ключах TaskPriorityQueue
+    static final LocalDate NO_DEADLINE = LocalDate.of(9999, 12, 31);
+
+    public TaskScore {
+        if (!(priorityWeight >= 0) || !(dayWeight >= 0)) {
+            throw new IllegalArgumentException("Веса оценки должны быть неотрицательными числами");
+        }
+    }
+
+    /**
+     * Разбирает веса в формате <code>приоритет,день</code>, например <code>2,0.5</code>.
+     *
+     * @throws IllegalArgumentException если формат некорректен
+     */
+    public static TaskScore parse(String weights) {
+        String[] parts = weights.split(",");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Ожидаются два веса через запятую, например 2,0.5");
+        }
+        return new TaskScore(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()));
+    }
+
+    /**
+     * @return оценка задачи на дату <code>today</code>
+     */
+    public double score(Task task, LocalDate today) {
+        LocalDate deadline = task.getDeadline() == null ? NO_DEADLINE : task.getDeadline();
+        long days = ChronoUnit.DAYS.between(today, deadline);
+        return priorityWeight * task.getPriority() - dayWeight * days;
+    }
+
+    /**
+     * Ключ упорядочивания для <code>TaskPriorityQueue</code>: отличается от <code>score()</code> на величину,
+     * одинаковую для всех задач в один день, поэтому не зависит от текущей даты.
+     */
+    double key(int priority, int deadlineEpochDay) {
+        return priorityWeight * priority - dayWeight * deadlineEpochDay;
+    }
+}
@@ -0,0 +1,420 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Полнотекстовый инвертированный индекс по заголовку и описанию задач.
+ * <p>Текст разбивается на слова из букв и цифр (кириллица и латиница одинаково), слова приводятся к нижнему
+ * регистру, <code>ё</code> заменяется на <code>е</code>. Для каждого слова хранится отсортированный список
+ * <code>id</code> задач с весом: вхождение в заголовок весит <code>CAPTION_WEIGHT</code>, в описание - 1.
+ * <p>Слова запроса сопоставляются как префиксы: <code>мус</code> найдет <code>мусор</code> и <code>мусорный</code>.
+ * Задача попадает в результат, если содержит все слова запроса; результаты упорядочены по сумме
+ * <code>вес * idf</code>, точное совпадение слова ценится выше префиксного.
+ * <p>Индекс сохраняется в файл рядом с хранилищем. Для каждой задачи хранится отпечаток текста, поэтому после
+ * загрузки <code>reconcile()</code> переиндексирует только задачи, изменившиеся с момента сохранения.
+ * Индекс не потокобезопасен и обновляется репозиторием под его блокировкой.
+ */
+public class TaskSearchIndex {
+
+    private static final int MAGIC = 0x54534958; // "TSIX"
+    private static final int VERSION = 1;
+    private static final int CAPTION_WEIGHT = 3;
+    private static final double PREFIX_FACTOR = 0.5;
+
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    // отпечатки текста задач по id, 0 - задачи нет в индексе
+    private long[] fingerprints = new long[1024];
+    private int documents;
+    private boolean modified;
+
+    public void add(Task task) {
+        int id = task.getId();
+        ensureCapacity(id);
+        if (fingerprints[id] != 0) {
+            remove(task);
+        }
+
+        Map<String, Integer> weights = new HashMap<>();
+        for (String term : tokenize(task.getCaption())) {
+            weights.merge(term, CAPTION_WEIGHT, Integer::sum);
+        }
+        for (String term : tokenize(task.getDescription())) {
+            weights.merge(term, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            terms.computeIfAbsent(entry.getKey(), term -> new Postings()).put(id, entry.getValue());
+        }
+
+        fingerprints[id] = fingerprint(task);
+        documents++;
+        modified = true;
+    }
+
+    /**
+     * Удаляет задачу из индекса. <code>task</code> должна содержать тот же текст, с которым задача была добавлена.
+     */
+    public void remove(Task task) {
+        int id = task.getId();
+        if (id >= fingerprints.length || fingerprints[id] == 0) {
+            return;
+        }
+
+        Set<String> removed = new LinkedHashSet<>(tokenize(task.getCaption()));
+        removed.addAll(tokenize(task.getDescription()));
+        for (String term : removed) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(id) && postings.size == 0) {
+                terms.remove(term);
+            }
+        }
+
+        fingerprints[id] = 0;
+        documents--;
+        modified = true;
+    }
+
+    /**
+     * Обновляет индекс после изменения задачи. Если заголовок и описание не менялись, индекс не трогается.
+     */
+    public void update(Task before, Task after) {
+        if (before.getId() == after.getId()
+                && Objects.equals(before.getCaption(), after.getCaption())
+                && Objects.equals(before.getDescription(), after.getDescription())) {
+            return;
+        }
+        remove(before);
+        add(after);
+    }
+
+    /**
+     * Приводит индекс в соответствие с текущими задачами хранилища: задачи с изменившимся отпечатком текста и
+     * удаленные задачи убираются одним проходом по словарю, новые и измененные добавляются заново.
+     *
+     * @param tasks все задачи хранилища
+     * @return количество переиндексированных и удаленных задач
+     */
+    public int reconcile(Iterable<Task> tasks) {
+        BitSet present = new BitSet();
+        BitSet stale = new BitSet();
+        List<Task> changed = new ArrayList<>();
+
+        for (Task task : tasks) {
+            int id = task.getId();
+            present.set(id);
+            long stored = id < fingerprints.length ? fingerprints[id] : 0;
+            if (stored != fingerprint(task)) {
+                if (stored != 0) {
+                    stale.set(id);
+                }
+                changed.add(task);
+            }
+        }
+        int deleted = 0;
+        for (int id = 1; id < fingerprints.length; id++) {
+            if (fingerprints[id] != 0 && !present.get(id)) {
+                stale.set(id);
+                deleted++;
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            Iterator<Postings> iterator = terms.values().iterator();
+            while (iterator.hasNext()) {
+                Postings postings = iterator.next();
+                postings.removeAll(stale);
+                if (postings.size == 0) {
+                    iterator.remove();
+                }
+            }
+            for (int id = stale.nextSetBit(0); id >= 0; id = stale.nextSetBit(id + 1)) {
+                fingerprints[id] = 0;
+                documents--;
+            }
+            modified = true;
+        }
+        for (Task task : changed) {
+            add(task);
+        }
+
+        return changed.size() + deleted;
+    }
+
+    /**
+     * @param query слова запроса, каждое сопоставляется как префикс
+     * @param limit максимальное количество результатов
+     * @return <code>id</code> задач, содержащих все слова запроса, в порядке убывания релевантности
+     */
+    public int[] search(String query, int limit) {
+        List<String> queryTerms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new int[0];
+        }
+
+        // id плотные, поэтому баллы копятся в массиве по id, а совпадения всех слов - пересечением BitSet
+        double[] scores = new double[fingerprints.length];
+        BitSet matched = null;
+        for (String queryTerm : queryTerms) {
+            BitSet termMatched = new BitSet();
+            for (Map.Entry<String, Postings> entry : prefixRange(queryTerm).entrySet()) {
+                Postings postings = entry.getValue();
+                double idf = Math.log(1 + (double) documents / postings.size)
+                        * (entry.getKey().equals(queryTerm) ? 1 : PREFIX_FACTOR);
+                for (int i = 0; i < postings.size; i++) {
+                    scores[postings.ids[i]] += postings.weights[i] * idf;
+                    termMatched.set(postings.ids[i]);
+                }
+            }
+
+            if (matched == null) {
+                matched = termMatched;
+            } else {
+                matched.and(termMatched);
+            }
+            if (matched.isEmpty()) {
+                return new int[0];
+            }
+        }
+
+        // Отбор лучших limit: куча с худшим из отобранных на вершине
+        Comparator<Integer> worstFirst = Comparator.<Integer>comparingDouble(id -> scores[id])
+                .thenComparing(Comparator.reverseOrder());
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, matched.cardinality()) + 1, worstFirst);
+        for (int id = matched.nextSetBit(0); id >= 0; id = matched.nextSetBit(id + 1)) {
+            if (top.size() < limit) {
+                top.add(id);
+            } else if (worstFirst.compare(id, top.peek()) > 0) {
+                top.poll();
+                top.add(id);
+            }
+        }
+
+        int[] result = new int[top.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = top.poll();
+        }
+        return result;
+    }
+
+    public int size() {
+        return documents;
+    }
+
+    /**
+     * @return <code>true</code>, если индекс менялся с момента загрузки или последнего <code>save()</code>
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Сохраняет индекс во временный файл и атомарно заменяет им <code>file</code>.
+     */
+    public void save(Path file) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(documents);
+            for (int id = 1; id < fingerprints.length; id++) {
+                if (fingerprints[id] != 0) {
+                    out.writeInt(id);
+                    out.writeLong(fingerprints[id]);
+                }
+            }
+
+            out.writeInt(terms.size());
+            for (Map.Entry<String, Postings> entry : terms.entrySet()) {
+                Postings postings = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeInt(postings.size);
+                int previousId = 0;
+                for (int i = 0; i < postings.size; i++) {
+                    out.writeInt(postings.ids[i] - previousId);
+                    out.writeInt(postings.weights[i]);
+                    previousId = postings.ids[i];
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при сохранении поискового индекса: " + e.getMessage(), e);
+        }
+
+        try {
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при сохранении поискового индекса: " + e.getMessage(), e);
+        }
+        modified = false;
+    }
+
+    /**
+     * Загружает индекс, сохраненный <code>save()</code>.
+     *
+     * @return индекс или пустой индекс, если файла нет, он поврежден или другой версии
+     */
+    public static TaskSearchIndex load(Path file) {
+        TaskSearchIndex index = new TaskSearchIndex();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return new TaskSearchIndex();
+            }
+
+            int documents = in.readInt();
+            for (int i = 0; i < documents; i++) {
+                int id = in.readInt();
+                index.ensureCapacity(id);
+                index.fingerprints[id] = in.readLong();
+            }
+            index.documents = documents;
+
+            int termCount = in.readInt();
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int size = in.readInt();
+                Postings postings = new Postings(size);
+                int id = 0;
+                for (int j = 0; j < size; j++) {
+                    id += in.readInt();
+                    postings.ids[j] = id;
+                    postings.weights[j] = in.readInt();
+                }
+                postings.size = size;
+                index.terms.put(term, postings);
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return index;
+        } catch (IOException | RuntimeException e) {
+            // поврежденный индекс просто перестраивается
+            return new TaskSearchIndex();
+        }
+    }
+
+    /**
+     * Разбивает текст на слова из букв и цифр в нижнем регистре.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                token.append(c == 'ё' ? 'е' : c);
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        return tokens;
+    }
+
+    private NavigableMap<String, Postings> prefixRange(String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private void ensureCapacity(int id) {
+        if (id >= fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, Math.max(id + 1, fingerprints.length * 2));
+        }
+    }
+
+    // Отпечаток текста задачи; 0 зарезервирован под отсутствие задачи
+    private static long fingerprint(Task task) {
+        long hash = ((long) String.valueOf(task.getCaption()).hashCode() << 32)
+                ^ (String.valueOf(task.getDescription()).hashCode() & 0xffffffffL);
+        return hash == 0 ? 1 : hash;
+    }
+
+    /**
+     * Отсортированный по <code>id</code> список вхождений слова.
+     */
+    private static final class Postings {
+        private int[] ids;
+        private int[] weights;
+        private int size;
+
+        Postings() {
+            this(4);
+        }
+
+        Postings(int capacity) {
+            ids = new int[Math.max(capacity, 1)];
+            weights = new int[ids.length];
+        }
+
+        void put(int id, int weight) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                weights[position] = weight;
+                return;
+            }
+
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(weights, position, weights, position + 1, size - position);
+            ids[position] = id;
+            weights[position] = weight;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position < 0) {
+                return false;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(weights, position + 1, weights, position, size - position - 1);
+            size--;
+            return true;
+        }
+
+        void removeAll(BitSet removed) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!removed.get(ids[i])) {
+                    ids[kept] = ids[i];
+                    weights[kept] = weights[i];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+    }
+}
@@ -3,202 +3,692 @@ package main.java.toDoList.service;
 import main.java.toDoList.model.StatusOfTask;
 import main.java.toDoList.model.Task;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 
 /**
  * Класс, содержащий в себе бизнес-логику для управления задачами.
  * Обрабатывает входящие команды и исключения.
- * По итогам обработки передает необходимые параметры в методы класса <code>XMLTaskRepository</code>.
+ * По итогам обработки передает необходимые параметры в методы <code>TaskRepository</code>.
+ * <p>Сервис не пишет в консоль: команды возвращают <code>CommandResult</code>, задачи списка передаются
+ * в обработчик по одной, а отображение выполняет <code>TaskView</code>.
  */
 public class TaskService {
-    private final XMLTaskRepository taskRepository;
+    private static final int SEARCH_LIMIT = 20;
+    private static final int NEXT_LIMIT = 5;
+
+    private static final TaskMetrics.Timer NEW = TaskMetrics.timer("command.new");
+    private static final TaskMetrics.Timer EDIT = TaskMetrics.timer("command.edit");
+    private static final TaskMetrics.Timer LIST = TaskMetrics.timer("command.list");
+    private static final TaskMetrics.Timer NEXT = TaskMetrics.timer("command.next");
+    private static final TaskMetrics.Timer SEARCH = TaskMetrics.timer("command.search");
+    private static final TaskMetrics.Timer REMOVE = TaskMetrics.timer("command.remove");
+    private static final TaskMetrics.Timer COMPLETE = TaskMetrics.timer("command.complete");
+    private static final TaskMetrics.Timer IMPORT = TaskMetrics.timer("command.import");
+    private static final TaskMetrics.Timer EXPORT = TaskMetrics.timer("command.export");
+    private static final TaskMetrics.Timer ARCHIVE = TaskMetrics.timer("command.archive");
+
+    private final TaskRepository taskRepository;
+    private final TaskScore nextScore;
+    private final Supplier<TaskArchive> archiveOpener;
+
+    // Открывается при первой команде архива; запись защищена монитором this
+    private volatile TaskArchive archive;
+
+    // Подписка команды watch; защищено монитором this
+    private TaskEventStream.Subscription watch;
+
+    public TaskService(TaskRepository taskRepository) {
+        this(taskRepository, TaskScore.DEFAULT);
+    }
+
+    /**
+     * @param nextScore формула оценки срочности для команды <code>next</code>
+     */
+    public TaskService(TaskRepository taskRepository, TaskScore nextScore) {
+        this(taskRepository, nextScore, (Supplier<TaskArchive>) null);
+    }
+
+    /**
+     * @param archive архив для команды <code>archive</code> и <code>list --include-archive</code>;
+     *                <code>null</code> - команды архива недоступны
+     */
+    public TaskService(TaskRepository taskRepository, TaskScore nextScore, TaskArchive archive) {
+        this(taskRepository, nextScore, archive == null ? null : () -> archive);
+    }
 
-    public TaskService(XMLTaskRepository taskRepository) {
+    /**
+     * @param archiveOpener открывает архив при первой команде <code>archive</code> или
+     *                      <code>list --include-archive</code>, вызывается не больше одного раза;
+     *                      <code>null</code> - команды архива недоступны
+     */
+    public TaskService(TaskRepository taskRepository, TaskScore nextScore, Supplier<TaskArchive> archiveOpener) {
         this.taskRepository = taskRepository;
+        this.nextScore = nextScore;
+        this.archiveOpener = archiveOpener;
     }
 
     /**
      * Разделяет полученную команду на аргументы <code>caption</code>, <code>description</code>, <code>priority</code>,
      * <code>deadline</code>.
      * проверяет на количество аргументов и их соответствие к ограничениям.
-     * Создает новый объект класса <code>Task</code> и передает его в метод <code>createTask(Task task)</code> класса
-     * <code>XMLTaskRepository</code> который создает соответствующую запись в XML
+     * Создает новый объект класса <code>Task</code> и передает его в метод <code>createTask(Task task)</code>
+     * <code>TaskRepository</code>, который сохраняет задачу в хранилище
      *
      * @param command команда из консоли
-     * @throws StringIndexOutOfBoundsException если аргументы команд в некорректном формате
-     * @throws StringLengthExceededException если <code>caption</code> более 50 символов
-     * @throws NumberFormatException если <code>priority</code> более 10 или менее 0
-     * @throws DateTimeParseException если <code>deadline</code> передано в некорректном формате
+     * @return <code>Created</code> с созданной задачей или <code>Invalid</code>, если аргументы
+     * в некорректном формате, <code>caption</code> более 50 символов, <code>priority</code> более 10 или менее 0
+     * или <code>deadline</code> передано в некорректном формате
      */
-    public void addTask(String command) {
+    public CommandResult addTask(String command) {
+        long started = NEW.start();
         try {
-            String[] parts = command.substring(4).split(", ");
+            return add(command);
+        } finally {
+            NEW.stop(started);
+        }
+    }
 
-            if (parts.length != 4) {
-                throw new StringIndexOutOfBoundsException();
-            }
+    private CommandResult add(String command) {
+        try {
+            return new CommandResult.Created(taskRepository.createTask(parseNewTask(command)));
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+    }
 
-            if (parts[0].length() > 50){
-                throw new StringLengthExceededException();
-            } else if ((Integer.parseInt(parts[2]) > 10) || (Integer.parseInt(parts[2]) < 0)){
-                throw new NumberFormatException();
+    /**
+     * Выполняет команды из <code>scanner</code> (файл или stdin) в пакетном режиме как одну транзакцию
+     * <code>TaskRepository.runBatch()</code>: промежуточной записи на диск нет, все изменения сохраняются одним
+     * <code>flush()</code> в конце.
+     * <p>Подряд идущие команды <code>new</code>, <code>remove</code> и <code>complete</code> собираются в группу и
+     * выполняются одним вызовом <code>createTasks()</code>, <code>deleteTasks()</code> или
+     * <code>markAsCompleted(int...)</code>; порядок команд разных видов сохраняется. <code>edit</code> запрашивает
+     * новые значения через <code>view</code>, <code>list</code>, <code>search</code> и <code>next</code> выводят задачи,
+     * <code>import</code> и <code>export</code> переносят задачи из файла и в файл, <code>stats</code> выводит метрики,
+     * <code>watch</code> включает вывод событий изменений, <code>archive</code> переносит старые выполненные задачи в
+     * архив, <code>exit</code> завершает пакет.
+     * Ошибки разбора передаются в <code>view</code> вместе с текстом команды и не прерывают пакет.
+     *
+     * @param scanner источник команд
+     * @param view представление для результатов команд
+     */
+    public void executeBatch(Scanner scanner, TaskView view) {
+        taskRepository.runBatch(() -> {
+            BatchGroup group = new BatchGroup(view);
+
+            while (scanner.hasNextLine()) {
+                String command = scanner.nextLine().trim();
+                if (command.isEmpty()) {
+                    continue;
+                }
+
+                String kind = command.split(" ")[0];
+                if (!kind.equals(group.kind)) {
+                    group.commit();
+                }
+
+                try {
+                    switch (kind) {
+                        case "new" -> group.add(kind, parseNewTask(command));
+                        case "remove", "complete" -> group.add(kind, parseId(command));
+                        case "edit" -> view.showResult(editTask(command, view));
+                        case "list" -> view.showResult(listTask(command, view::showTask));
+                        case "search" -> view.showResult(searchTask(command, view::showTask));
+                        case "next" -> view.showResult(nextTask(command, view::showTask));
+                        case "import" -> view.showResult(importTasks(command));
+                        case "export" -> view.showResult(exportTasks(command));
+                        case "stats" -> view.showResult(stats(command));
+                        case "watch" -> view.showResult(watchTasks(command, view));
+                        case "archive" -> view.showResult(archiveTasks(command));
+                        case "exit" -> {
+                            return;
+                        }
+                        default -> view.showResult(new CommandResult.Invalid("Неизвестная команда: " + command));
+                    }
+                } catch (InvalidCommandException e) {
+                    view.showResult(new CommandResult.Invalid(e.getMessage(), command));
+                }
             }
+            group.commit();
+        });
+    }
+
+    /**
+     * Разбирает и проверяет аргументы команды <code>new</code>.
+     *
+     * @throws InvalidCommandException если аргументы не прошли проверку
+     */
+    private Task parseNewTask(String command) {
+        String[] parts = command.length() > 4 ? command.substring(4).split(", ") : new String[0];
+        if (parts.length != 4) {
+            throw new InvalidCommandException("Ошибка: некорректный формат команды. Пример: new Выкинуть мусор, " +
+                    "Выкинуть мусор из дома, 10, 2024-10-20");
+        }
+        return newTask(parts[0], parts[1], parts[2], parts[3]);
+    }
 
-            Task newTask = new Task(
-                    parts[0],
-                    parts[1],
-                    Integer.parseInt(parts[2]),
-                    LocalDate.parse(parts[3]));
-            Task task = taskRepository.createTask(newTask);
-            System.out.println("Создана задача. " + task.toString());
+    /**
+     * Проверяет поля новой задачи по тем же правилам, что и команда <code>new</code>. Используется также
+     * импортом задач из файлов.
+     *
+     * @throws InvalidCommandException если <code>caption</code> более 50 символов, <code>priority</code> не целое
+     * число от 0 до 10 или <code>deadline</code> в некорректном формате
+     */
+    static Task newTask(String caption, String description, String priority, String deadline) {
+        try {
+            validateCaption(caption);
+            int parsedPriority = Integer.parseInt(priority);
+            validatePriority(parsedPriority);
+
+            return new Task(caption, description, parsedPriority, LocalDate.parse(deadline));
         } catch (StringLengthExceededException e) {
-            System.out.println("Ошибка: заголовок должен содержать не более 50 символов");
+            throw new InvalidCommandException("Ошибка: заголовок должен содержать не более 50 символов");
         } catch (NumberFormatException e) {
-            System.out.println("Ошибка: приоритет должен быть целым числом в диапазоне от 0 до 10");
+            throw new InvalidCommandException("Ошибка: приоритет должен быть целым числом в диапазоне от 0 до 10");
         } catch (DateTimeParseException e) {
-            System.out.println("Ошибка: некорреткный формат ввода даты. Пример: YYYY-MM-DD");
-        } catch (StringIndexOutOfBoundsException e) {
-            System.out.println("Ошибка: некорректный формат команды. Пример: new Выкинуть мусор, " +
-                    "Выкинуть мусор из дома, 10, 2024-10-20");
+            throw new InvalidCommandException("Ошибка: некорреткный формат ввода даты. Пример: YYYY-MM-DD");
         }
-
     }
 
     /**
      * Разделяет полученную команду и извлекает из нее значение <code>id</code>.
      * Проверяет на соответствие ограничениям.
-     * В случае, если <code>Task</code> с таким <code>id</code> из XML найдено, выводит его в консоль и запрашивает новые
-     * параметры для этого <code>Task</code>. Ввод также проверяется на соответствие ограничениям.
+     * В случае, если <code>Task</code> с таким <code>id</code> найдено, передает его в <code>view</code> как
+     * результат <code>Found</code> и запрашивает через <code>view.ask()</code> новые параметры для этого
+     * <code>Task</code>. Ввод также проверяется на соответствие ограничениям.
      * Передает полученные значения ввода в
      * <code>editTask(id, newCaption, newDescription, newPriority, newDeadline, newStatus)</code>
-     * класса <code>XMLTaskRepository</code>.
-     * <p> Если возврат <code>editTask</code> равен <code>false</code>, то вызывается сообщение об ошибке.
-     * Иначе на консоль выводится сообщение об успешном редактировании задачи
+     * <code>TaskRepository</code>.
      *
      * @param command команда из консоли
-     * @param scanner объект класса <code>Scanner</code> для ввода новых параметров
-     *
-     * @throws StringLengthExceededException если <code>caption</code> более 50 символов
-     * @throws NumberFormatException если <code>priority</code> более 10 или менее 0
-     * @throws DateTimeParseException если <code>deadline</code> передано в некорректном формате
-     * @throws IllegalArgumentException если <code>status</code> не содержится в enum <code>StatusOfTask</code>
+     * @param view представление для вывода найденной задачи и ввода новых параметров
+     * @return <code>Edited</code>, <code>NotFound</code> или <code>Invalid</code>, если <code>caption</code> более
+     * 50 символов, <code>priority</code> не целое число от 0 до 10, <code>deadline</code> передано в некорректном
+     * формате или <code>status</code> не содержится в enum <code>StatusOfTask</code>
      */
-    public void editTask(String command, Scanner scanner) {
+    public CommandResult editTask(String command, TaskView view) {
+        long started = EDIT.start();
+        try {
+            return edit(command, view);
+        } finally {
+            EDIT.stop(started);
+        }
+    }
+
+    private CommandResult edit(String command, TaskView view) {
         String[] parts = command.split(" ");
         if (parts.length < 2) {
-            System.out.println("Ошибка: некорректный формат команды. Пример: edit 1");
-            return;
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: edit 1");
         }
 
         try{
             int id = Integer.parseInt(parts[1]);
 
             Task task = taskRepository.findTaskById(id);
+            if (task == null) {
+                return new CommandResult.NotFound(id);
+            }
 
-            System.out.println("Найдена задача. " + task.toString());
+            view.showResult(new CommandResult.Found(task));
 
-            String newCaption = inputParameters("заголовок", scanner);
-            if (newCaption.length() > 50){
-                throw new StringLengthExceededException();
-            }
-            String newDescription = inputParameters("описание", scanner);
-            String newPriorityInput = inputParameters("приоритет", scanner);
+            String newCaption = view.ask("заголовок");
+            validateCaption(newCaption);
+            String newDescription = view.ask("описание");
+            String newPriorityInput = view.ask("приоритет");
             int newPriority = newPriorityInput.isEmpty()
                     ? 0
                     : Integer.parseInt(newPriorityInput);
-            if ((newPriority > 10) || (newPriority < 0)){
-                throw new NumberFormatException();
-            }
-            String newDeadlineInput = inputParameters("срок", scanner);
+            validatePriority(newPriority);
+            String newDeadlineInput = view.ask("срок");
             LocalDate newDeadline = newDeadlineInput.isEmpty()
                     ? null
                     : LocalDate.parse(newDeadlineInput);
-            String newStatusInput = inputParameters("статус", scanner);
+            String newStatusInput = view.ask("статус");
             StatusOfTask newStatus = newStatusInput.isEmpty()
                     ? task.getStatusOfTask()
                     : StatusOfTask.valueOf(newStatusInput.toUpperCase());
 
             if(!taskRepository.editTask(id, newCaption, newDescription, newPriority, newDeadline, newStatus)){
-                System.out.println("Задача не найдена");
-                return;
+                return new CommandResult.NotFound(id);
             }
 
-            System.out.println("Задача " + id + " успешно отредактирована!");
+            return new CommandResult.Edited(id);
         } catch (StringLengthExceededException e) {
-            System.out.println("Ошибка: заголовок должен содержать не более 50 символов");
+            return new CommandResult.Invalid("Ошибка: заголовок должен содержать не более 50 символов");
         } catch (NumberFormatException e) {
-            System.out.println("Ошибка: ввод должен быть целым числом. Приоритет в диапазоне от 0 до 10");
+            return new CommandResult.Invalid("Ошибка: ввод должен быть целым числом. Приоритет в диапазоне от 0 до 10");
         } catch (DateTimeParseException e) {
-            System.out.println("Некорректный формат ввода даты! Пример: YYYY-MM-DD. Попробуйте еще раз");
+            return new CommandResult.Invalid("Некорректный формат ввода даты! Пример: YYYY-MM-DD. Попробуйте еще раз");
         } catch (IllegalArgumentException e) {
-            System.out.println("Некорректный формат ввода статуса! Возможные статусы: new, in_progress, done. Попробуйте еще раз");
+            return new CommandResult.Invalid("Некорректный формат ввода статуса! Возможные статусы: new, in_progress, "
+                    + "done. Попробуйте еще раз");
         }
     }
 
     /**
-     * Разделяет полученную команду на аргументы. Аргументами могут быть <code>-s new</code>, <code>-s done</code>,
-     * <code>-s in_progress</code>. В случае если в команде содержится только <code>list</code>, то выводится список
-     * из всех задач, отсортированный по <code>id</code>. Аргументы <code>-s new</code>, <code>-s done</code>,
-     * <code>-s in_progress</code> выводят список из новых/выполненных/в процессе задач соответственно.
-     * <p>Вывод всех задач происходит благодаря <code>ArrayList</code> из <code>Task</code>, которые были получены из
-     * <code>getTasks()</code> и выводятся циклом <code>for</code>. <code>ArrayList</code> из задач по статусу получаем
-     * через <code>viewTasksByStatus()</code>
-     * <p>В случае если команда введена неверно, вызывается соответствующее сообщение об ошибке.
+     * Разделяет полученную команду на аргументы. В случае если в команде содержится только <code>list</code>, то
+     * в <code>consumer</code> передаются все задачи, отсортированные по <code>id</code>. Аргументы можно сочетать:
+     * <ul>
+     *     <li><code>-s new|in_progress|done</code> - задачи с указанным статусом;</li>
+     *     <li><code>-p N</code> - задачи с приоритетом N;</li>
+     *     <li><code>--due-before YYYY-MM-DD</code> - задачи со сроком раньше указанной даты;</li>
+     *     <li><code>--overdue</code> - невыполненные задачи с истекшим сроком;</li>
+     *     <li><code>--limit N</code> - не более N задач;</li>
+     *     <li><code>--offset M</code> - пропустить первые M подходящих задач;</li>
+     *     <li><code>--after-id K</code> - задачи с <code>id</code> больше K (постраничный вывод по курсору);</li>
+     *     <li><code>--include-archive</code> - вместе с задачами из <code>TaskArchive</code>.</li>
+     * </ul>
+     * <p>Выборка строится в <code>TaskFilter</code> и читается лениво через <code>streamTasks()</code> по индексам
+     * репозитория: задачи передаются в <code>consumer</code> по мере чтения страниц, поэтому первая задача выводится
+     * сразу, а память не зависит от количества задач в хранилище. <code>--after-id</code> начинает чтение сразу с
+     * нужного места, а <code>--offset</code> читает и пропускает M задач, поэтому для дальних страниц лучше курсор.
+     * С <code>--include-archive</code> выдача архива сливается с выдачей репозитория в общем порядке <code>id</code>.
      *
      * @param command команда из консоли
+     * @param consumer обработчик выбранных задач
+     * @return <code>Listed</code> с количеством задач и курсором следующей страницы или <code>Invalid</code>, если
+     * <code>priority</code> не целое число от 0 до 10, дата передана в некорректном формате, статус не содержится
+     * в enum <code>StatusOfTask</code>, параметры страницы некорректны или архив не подключен
      */
-    public void listTask(String command){
+    public CommandResult listTask(String command, Consumer<? super Task> consumer) {
+        long started = LIST.start();
+        try {
+            return list(command, consumer);
+        } finally {
+            LIST.stop(started);
+        }
+    }
+
+    private CommandResult list(String command, Consumer<? super Task> consumer) {
         String[] parts = command.split(" ");
-        List<Task> tasks = taskRepository.getTasks();
+        TaskFilter filter = TaskFilter.all();
+        int limit = Integer.MAX_VALUE;
+        int offset = 0;
+        int afterId = 0;
+        boolean includeArchive = false;
+
+        try {
+            if (!parts[0].equals("list")) {
+                throw new StringIndexOutOfBoundsException();
+            }
 
-        if (parts.length == 1 && parts[0].equals("list")) {
-            for (Task task : tasks) {
-                System.out.println(task);
+            for (int i = 1; i < parts.length; i++) {
+                switch (parts[i]) {
+                    case "-s" -> filter.withStatus(StatusOfTask.valueOf(parts[++i].toUpperCase()));
+                    case "-p" -> {
+                        int priority = Integer.parseInt(parts[++i]);
+                        validatePriority(priority);
+                        filter.withPriority(priority);
+                    }
+                    case "--due-before" -> filter.dueBefore(LocalDate.parse(parts[++i]));
+                    case "--overdue" -> filter.overdueOn(LocalDate.now());
+                    case "--limit" -> limit = parsePageParameter("--limit", parts[++i], 1);
+                    case "--offset" -> offset = parsePageParameter("--offset", parts[++i], 0);
+                    case "--after-id" -> afterId = parsePageParameter("--after-id", parts[++i], 0);
+                    case "--include-archive" -> includeArchive = true;
+                    default -> throw new StringIndexOutOfBoundsException();
+                }
             }
-        } else if (parts.length == 3 && parts[0].equals("list") && parts[1].equals("-s")) {
-            List<Task> taskByStatus = taskRepository.viewTasksByStatus(tasks, StatusOfTask.valueOf(parts[2].toUpperCase()));
-            for (Task task : taskByStatus) {
-                System.out.println(task);
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        } catch (IndexOutOfBoundsException e) {
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: list -s new");
+        } catch (NumberFormatException e) {
+            return new CommandResult.Invalid("Ошибка: приоритет должен быть целым числом в диапазоне от 0 до 10");
+        } catch (DateTimeParseException e) {
+            return new CommandResult.Invalid("Ошибка: некорреткный формат ввода даты. Пример: YYYY-MM-DD");
+        } catch (IllegalArgumentException e) {
+            return new CommandResult.Invalid("Некорректный формат ввода статуса! Возможные статусы: new, in_progress, done.");
+        }
+        if (includeArchive && archiveOpener == null) {
+            return new CommandResult.Invalid("Ошибка: архив задач не подключен");
+        }
+
+        int count = 0;
+        int lastId = afterId;
+        TaskArchive opened = includeArchive ? openArchive() : null;
+        Stream<Task> selected = includeArchive
+                ? TaskArchive.merge(taskRepository.streamTasks(filter, afterId), opened.streamTasks(filter, afterId))
+                : taskRepository.streamTasks(filter, afterId);
+        try (Stream<Task> tasks = selected.skip(offset)) {
+            Iterator<Task> iterator = tasks.iterator();
+            while (iterator.hasNext()) {
+                if (count == limit) {
+                    return new CommandResult.Listed(count, lastId);
+                }
+                Task task = iterator.next();
+                consumer.accept(task);
+                lastId = task.getId();
+                count++;
             }
-        } else {
-            System.out.println("Ошибка: некорректный формат команды. Пример: list -s new");
         }
+        return new CommandResult.Listed(count, null);
     }
 
     /**
-     * Разделяет полученную команду и извлекает из нее значение <code>id</code>.
-     * В случае, если <code>Task</code> с таким <code>id</code> из XML найдено, вызывается функция
-     * <code>deleteTask()</code>, которая удаляет соответствующую запись из XML.
-     * <p>В случае если команда введена неверно или задача не найдена, вызывается соответствующее сообщение об ошибке.
+     * Выводит самые срочные невыполненные задачи: <code>next [k]</code>, по умолчанию <code>NEXT_LIMIT</code>.
+     * Задачи упорядочены по оценке <code>TaskScore</code> из приоритета и количества дней до срока и выбираются
+     * из кучи репозитория без сортировки всего списка.
      *
      * @param command команда из консоли
-     * @throws NumberFormatException если <code>id</code> не удалось переконвертировать в int, т.е. если
-     * на вход было получено не целое число
+     * @param consumer обработчик выбранных задач
+     * @return <code>Listed</code> с количеством задач или <code>Invalid</code>, если <code>k</code> не
+     * положительное целое число
      */
-    public void removeTask(String command) {
+    public CommandResult nextTask(String command, Consumer<? super Task> consumer) {
+        long started = NEXT.start();
+        try {
+            return next(command, consumer);
+        } finally {
+            NEXT.stop(started);
+        }
+    }
+
+    private CommandResult next(String command, Consumer<? super Task> consumer) {
         String[] parts = command.split(" ");
-        if (parts.length < 2) {
-            System.out.println("Ошибка: некорректный формат команды. Пример: delete 1");
-            return;
+        int count = NEXT_LIMIT;
+        try {
+            if (parts.length > 2) {
+                throw new InvalidCommandException("Ошибка: некорректный формат команды. Пример: next 5");
+            }
+            if (parts.length == 2) {
+                count = parsePageParameter("k", parts[1], 1);
+            }
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
         }
 
+        List<Task> next = nextTasks(count);
+        next.forEach(consumer);
+        return new CommandResult.Listed(next.size(), null);
+    }
+
+    /**
+     * Полнотекстовый поиск по заголовку и описанию: <code>search [--limit N] слова</code>.
+     * Каждое слово сопоставляется как начало слова в тексте задачи без учета регистра, в результат попадают задачи,
+     * содержащие все слова запроса. Задачи передаются в <code>consumer</code> в порядке убывания релевантности,
+     * по умолчанию не более <code>SEARCH_LIMIT</code>.
+     *
+     * @param command команда из консоли
+     * @param consumer обработчик найденных задач
+     * @return <code>Listed</code> с количеством найденных задач или <code>Invalid</code>, если запрос пуст или
+     * <code>--limit</code> некорректен
+     */
+    public CommandResult searchTask(String command, Consumer<? super Task> consumer) {
+        long started = SEARCH.start();
         try {
+            return search(command, consumer);
+        } finally {
+            SEARCH.stop(started);
+        }
+    }
 
+    private CommandResult search(String command, Consumer<? super Task> consumer) {
+        String[] parts = command.split(" ");
+        int limit = SEARCH_LIMIT;
+        StringBuilder query = new StringBuilder();
 
-            int id = Integer.parseInt(parts[1]);
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].equals("--limit") && i + 1 < parts.length) {
+                    limit = parsePageParameter("--limit", parts[++i], 1);
+                } else {
+                    query.append(parts[i]).append(' ');
+                }
+            }
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+        if (TaskSearchIndex.tokenize(query.toString()).isEmpty()) {
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: search мусор");
+        }
 
-            if (!taskRepository.deleteTask(id)) {
-                System.out.println("Задача не найдена");
-                return;
+        List<Task> found = taskRepository.searchTasks(query.toString(), limit);
+        found.forEach(consumer);
+        return new CommandResult.Listed(found.size(), null);
+    }
+
+    /**
+     * Импортирует задачи из файла: <code>import файл</code>. Формат определяется по расширению (<code>.xml</code>,
+     * <code>.csv</code>, <code>.jsonl</code>), записи проверяются по тем же правилам, что и команда <code>new</code>,
+     * некорректные пропускаются. Подробнее см. <code>TaskTransfer</code>.
+     *
+     * @param command команда из консоли
+     * @return <code>Transferred</code> с отчетом или <code>Invalid</code>, если файл не найден, формат не
+     * поддерживается или файл не удалось открыть. Если файл не удалось дочитать, в отчете <code>Transferred</code>
+     * есть ошибка, а задачи до нее уже добавлены
+     */
+    public CommandResult importTasks(String command) {
+        long started = IMPORT.start();
+        try {
+            return importFrom(command);
+        } finally {
+            IMPORT.stop(started);
+        }
+    }
+
+    private CommandResult importFrom(String command) {
+        try {
+            Path file = parseFile(command, "import");
+            if (!Files.isRegularFile(file)) {
+                return new CommandResult.Invalid("Ошибка: файл не найден: " + file);
             }
+            return new CommandResult.Transferred("import", TaskTransfer.importFile(file, taskRepository));
+        } catch (RuntimeException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+    }
 
-            System.out.println("Задача " + id + " успешно удалена!");
-        } catch (NumberFormatException e){
-            System.out.println("Аргумент id должен быть целым числом");
+    /**
+     * Экспортирует все задачи в файл: <code>export файл</code>. Формат определяется по расширению, файл
+     * перезаписывается.
+     *
+     * @param command команда из консоли
+     * @return <code>Transferred</code> с отчетом или <code>Invalid</code>, если формат не поддерживается или файл не
+     * удалось записать
+     */
+    public CommandResult exportTasks(String command) {
+        long started = EXPORT.start();
+        try {
+            return exportTo(command);
+        } finally {
+            EXPORT.stop(started);
+        }
+    }
+
+    private CommandResult exportTo(String command) {
+        try {
+            return new CommandResult.Transferred("export",
+                    TaskTransfer.exportFile(taskRepository, parseFile(command, "export")));
+        } catch (RuntimeException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+    }
+
+    /**
+     * Выводит метрики операций репозитория и команд: <code>stats</code>; <code>stats --reset</code> дополнительно
+     * обнуляет их после вывода. См. <code>TaskMetrics</code>.
+     *
+     * @param command команда из консоли
+     * @return <code>Stats</code> с текстом отчета или <code>Invalid</code>, если метрики выключены
+     */
+    public CommandResult stats(String command) {
+        if (!TaskMetrics.isEnabled()) {
+            return new CommandResult.Invalid("Метрики выключены. Запустите программу с параметром --metrics <файл|->");
+        }
+
+        String[] parts = command.split(" ");
+        boolean reset = parts.length == 2 && parts[1].equals("--reset");
+        if (parts.length > 2 || (parts.length == 2 && !reset)) {
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: stats --reset");
+        }
+
+        String report = TaskMetrics.format();
+        if (reset) {
+            TaskMetrics.reset();
+        }
+        return new CommandResult.Stats(report);
+    }
+
+    /**
+     * Включает и выключает вывод изменений задач: <code>watch</code> подписывается на
+     * <code>TaskRepository.events()</code> и передает каждое событие в <code>view.showEvent()</code> по мере
+     * изменений, в том числе сделанных через HTTP API; <code>watch stop</code> отменяет подписку. События выводятся
+     * из потока подписки, параллельно с обработкой команд. Если вывод отстал от изменений настолько, что события
+     * вытеснены из буфера, в <code>view</code> передается <code>EventsLost</code> с количеством пропущенных.
+     *
+     * @param command команда из консоли
+     * @param view представление для событий
+     * @return <code>Watching</code> с состоянием подписки или <code>Invalid</code>
+     */
+    public synchronized CommandResult watchTasks(String command, TaskView view) {
+        String[] parts = command.split(" ");
+        if (!parts[0].equals("watch") || parts.length > 2 || (parts.length == 2 && !parts[1].equals("stop"))) {
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: watch или watch stop");
+        }
+
+        if (parts.length == 2) {
+            if (watch != null) {
+                watch.close();
+                watch = null;
+            }
+            return new CommandResult.Watching(false);
+        }
+
+        if (watch == null) {
+            watch = taskRepository.events().subscribe("watch", new TaskEventStream.Listener() {
+                @Override
+                public void onEvent(TaskEvent event) {
+                    view.showEvent(event);
+                }
+
+                @Override
+                public void onLost(long count) {
+                    view.showResult(new CommandResult.EventsLost(count));
+                }
+            });
+        }
+        return new CommandResult.Watching(true);
+    }
+
+    /**
+     * Переносит выполненные задачи в архив: <code>archive --older-than N</code> - задачи, выполненные раньше чем
+     * N дней назад. Задачи удаляются из репозитория и остаются доступны через <code>list --include-archive</code>.
+     * См. <code>TaskArchive.moveFrom()</code>.
+     *
+     * @param command команда из консоли
+     * @return <code>Archived</code> с количеством перенесенных задач и состоянием архива или <code>Invalid</code>,
+     * если N не целое неотрицательное число или архив не подключен
+     */
+    public CommandResult archiveTasks(String command) {
+        long started = ARCHIVE.start();
+        try {
+            return archive(command);
+        } finally {
+            ARCHIVE.stop(started);
+        }
+    }
+
+    private CommandResult archive(String command) {
+        String[] parts = command.split(" ");
+        if (parts.length != 3 || !parts[0].equals("archive") || !parts[1].equals("--older-than")) {
+            return new CommandResult.Invalid("Ошибка: некорректный формат команды. Пример: archive --older-than 30");
+        }
+        if (archiveOpener == null) {
+            return new CommandResult.Invalid("Ошибка: архив задач не подключен");
+        }
+
+        try {
+            int days = parsePageParameter("--older-than", parts[2], 0);
+            TaskArchive opened = openArchive();
+            int moved = opened.moveFrom(taskRepository, LocalDate.now().minusDays(days));
+            return new CommandResult.Archived(moved, opened.summary());
+        } catch (RuntimeException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+    }
+
+    private TaskArchive openArchive() {
+        TaskArchive opened = archive;
+        if (opened == null) {
+            synchronized (this) {
+                opened = archive;
+                if (opened == null) {
+                    opened = archiveOpener.get();
+                    archive = opened;
+                }
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * Извлекает путь к файлу из команд <code>import</code> и <code>export</code>; путь может содержать пробелы.
+     *
+     * @throws InvalidCommandException если файл не указан
+     */
+    private static Path parseFile(String command, String kind) {
+        String file = command.length() > kind.length() ? command.substring(kind.length()).trim() : "";
+        if (file.isEmpty()) {
+            throw new InvalidCommandException("Ошибка: некорректный формат команды. Пример: " + kind + " tasks.csv");
+        }
+        return Path.of(file);
+    }
+
+    /**
+     * Разбирает значение <code>--limit</code>, <code>--offset</code>, <code>--after-id</code> или
+     * <code>--older-than</code>.
+     *
+     * @throws InvalidCommandException если значение не целое число или меньше <code>min</code>
+     */
+    private static int parsePageParameter(String name, String value, int min) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= min) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // сообщение ниже
+        }
+        throw new InvalidCommandException("Ошибка: " + name + " должен быть целым числом не меньше " + min);
+    }
+
+    /**
+     * Разделяет полученную команду и извлекает из нее значение <code>id</code>.
+     * В случае, если <code>Task</code> с таким <code>id</code> из XML найдено, вызывается функция
+     * <code>deleteTask()</code>, которая удаляет соответствующую запись из XML.
+     *
+     * @param command команда из консоли
+     * @return <code>Removed</code>, <code>NotFound</code> или <code>Invalid</code>, если <code>id</code> не целое число
+     */
+    public CommandResult removeTask(String command) {
+        long started = REMOVE.start();
+        try {
+            return remove(command);
+        } finally {
+            REMOVE.stop(started);
+        }
+    }
+
+    private CommandResult remove(String command) {
+        try {
+            int id = parseId(command);
+            return taskRepository.deleteTask(id)
+                    ? new CommandResult.Removed(id)
+                    : new CommandResult.NotFound(id);
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
         }
     }
 
@@ -207,49 +697,197 @@ public class TaskService {
      * В случае, если <code>Task</code> с таким <code>id</code> из XML найдено, вызывается функция
      * <code>markAsCompleted()</code>, которая корректирует статус задачи на "done", добавляет элеменет
      * "Complete" в XML.
-     * <p>В случае если команда введена неверно, задача не найдена или уже выполнена,
-     * вызывается соответствующее сообщение об ошибке.
      *
      * @param command команда из консоли
-     * @throws NumberFormatException если <code>id</code> не удалось переконвертировать в int, т.е. если
-     * на вход было получено не целое число
+     * @return <code>Completed</code>, <code>NotCompleted</code>, если задача не найдена или уже выполнена, или
+     * <code>Invalid</code>, если <code>id</code> не целое число
      */
-    public void completeTask(String command){
+    public CommandResult completeTask(String command) {
+        long started = COMPLETE.start();
+        try {
+            return complete(command);
+        } finally {
+            COMPLETE.stop(started);
+        }
+    }
+
+    private CommandResult complete(String command) {
+        try {
+            int id = parseId(command);
+            return taskRepository.markAsCompleted(id)
+                    ? new CommandResult.Completed(id)
+                    : new CommandResult.NotCompleted(id);
+        } catch (InvalidCommandException e) {
+            return new CommandResult.Invalid(e.getMessage());
+        }
+    }
+
+    /**
+     * Извлекает <code>id</code> из команд <code>remove</code> и <code>complete</code>.
+     *
+     * @throws InvalidCommandException если <code>id</code> не указан или не целое число
+     */
+    private int parseId(String command) {
         String[] parts = command.split(" ");
         if (parts.length < 2) {
-            System.out.println("Ошибка: некорректный формат команды. Пример: delete 1");
-            return;
+            throw new InvalidCommandException("Ошибка: некорректный формат команды. Пример: delete 1");
         }
 
         try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e){
+            throw new InvalidCommandException("Аргумент id должен быть целым числом");
+        }
+    }
+
+    /**
+     * Ошибка разбора аргументов команды. Используется внутри сервиса и импорта задач, наружу отдается как
+     * <code>CommandResult.Invalid</code>.
+     */
+    static class InvalidCommandException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
 
+        InvalidCommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
 
-            int id = Integer.parseInt(parts[1]);
+    /**
+     * Группа подряд идущих однотипных команд пакетного режима, выполняемая одним массовым вызовом репозитория.
+     */
+    private class BatchGroup {
+        private final TaskView view;
+        private String kind;
+        private final List<Task> tasks = new ArrayList<>();
+        private final List<Integer> ids = new ArrayList<>();
+
+        BatchGroup(TaskView view) {
+            this.view = view;
+        }
 
-            if (!taskRepository.markAsCompleted(id)) {
-                System.out.println("Задача не найдена или уже выполнена");
+        void add(String kind, Task task) {
+            this.kind = kind;
+            tasks.add(task);
+        }
+
+        void add(String kind, int id) {
+            this.kind = kind;
+            ids.add(id);
+        }
+
+        void commit() {
+            if (kind == null) {
                 return;
             }
 
-            System.out.println("Задача " + id + " успешно отмечена как выполненная!");
-        } catch (NumberFormatException e){
-            System.out.println("Аргумент id должен быть целым числом");
+            int[] idArray = ids.stream().mapToInt(Integer::intValue).toArray();
+            switch (kind) {
+                case "new" -> view.showResult(new CommandResult.BatchApplied(kind,
+                        taskRepository.createTasks(tasks).size(), tasks.size()));
+                case "remove" -> view.showResult(new CommandResult.BatchApplied(kind,
+                        taskRepository.deleteTasks(idArray), idArray.length));
+                case "complete" -> view.showResult(new CommandResult.BatchApplied(kind,
+                        taskRepository.markAsCompleted(idArray), idArray.length));
+                default -> { }
+            }
+
+            kind = null;
+            tasks.clear();
+            ids.clear();
+        }
+    }
+
+    /**
+     * Программный вариант <code>addTask()</code> для HTTP API и других не консольных клиентов: проверяет те же
+     * ограничения, но вместо вывода в консоль бросает исключения.
+     *
+     * @return созданная задача с присвоенным <code>id</code>
+     * @throws StringLengthExceededException если <code>caption</code> более 50 символов
+     * @throws NumberFormatException если <code>priority</code> более 10 или менее 0
+     * @throws IllegalArgumentException если не заданы заголовок, описание или срок
+     */
+    public Task createTask(String caption, String description, int priority, LocalDate deadline) {
+        if (caption == null || caption.isEmpty() || description == null || deadline == null) {
+            throw new IllegalArgumentException("Заголовок, описание и срок задачи обязательны");
         }
+        validateCaption(caption);
+        validatePriority(priority);
+        return taskRepository.createTask(new Task(caption, description, priority, deadline));
+    }
 
+    /**
+     * @return задача или <code>null</code>, если не найдена
+     */
+    public Task findTask(int id) {
+        return taskRepository.findTaskById(id);
+    }
+
+    public List<Task> findTasks(TaskFilter filter) {
+        return taskRepository.findTasks(filter);
+    }
+
+    /**
+     * Страница выборки по курсору, см. <code>TaskRepository.findTasks(filter, afterId, limit)</code>.
+     */
+    public List<Task> findTasks(TaskFilter filter, int afterId, int limit) {
+        return taskRepository.findTasks(filter, afterId, limit);
+    }
+
+    /**
+     * @return не более <code>count</code> самых срочных невыполненных задач по оценке, заданной при создании сервиса
+     */
+    public List<Task> nextTasks(int count) {
+        return taskRepository.nextTasks(count, nextScore);
+    }
+
+    /**
+     * Полнотекстовый поиск, см. <code>TaskRepository.searchTasks()</code>.
+     */
+    public List<Task> searchTasks(String query, int limit) {
+        return taskRepository.searchTasks(query, limit);
     }
 
     /**
-     * Вспомогательный метод для <code>editTask()</code>.
-     * Вывод сообщение о значении, которое мы хотим изменить в задаче и получает на ввод строку с измененными
-     * параметрами для задачи.
+     * Программный вариант <code>editTask()</code>. Пустые строки, нулевой приоритет и <code>null</code> оставляют
+     * поле без изменений.
      *
-     * @param type тип элемента, который мы хотим изменить
-     * @param scanner сканнер для ввода новых параметров от пользователя
-     * @return новый параметр, необходимый для изменения в <code>editTask()</code>
+     * @return <code>false</code>, если задача не найдена
+     * @throws StringLengthExceededException если <code>caption</code> более 50 символов
+     * @throws NumberFormatException если <code>priority</code> более 10 или менее 0
+     */
+    public boolean updateTask(int id, String caption, String description, int priority, LocalDate deadline,
+                              StatusOfTask status) {
+        caption = caption == null ? "" : caption;
+        description = description == null ? "" : description;
+        validateCaption(caption);
+        validatePriority(priority);
+        return taskRepository.editTask(id, caption, description, priority, deadline, status);
+    }
+
+    /**
+     * @return <code>false</code>, если задача не найдена или уже выполнена
+     */
+    public boolean markTaskCompleted(int id) {
+        return taskRepository.markAsCompleted(id);
+    }
+
+    /**
+     * @return <code>false</code>, если задача не найдена
      */
-    private String inputParameters(String type, Scanner scanner){
-        System.out.println("Введите новое значение " + type.toLowerCase() + " или нажмите Enter, чтобы оставить без изменений:");
-        return scanner.nextLine();
+    public boolean deleteTask(int id) {
+        return taskRepository.deleteTask(id);
+    }
+
+    private static void validateCaption(String caption) {
+        if (caption.length() > 50){
+            throw new StringLengthExceededException();
+        }
+    }
+
+    private static void validatePriority(int priority) {
+        if ((priority > 10) || (priority < 0)){
+            throw new NumberFormatException();
+        }
     }
 
 }
@@ -0,0 +1,159 @@
+package main.java.toDoList.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Бинарный снимок задач XML файла для быстрого старта: разбор XML заменяется отображением в память файла
+ * <code>&lt;файл&gt;.cache</code> рядом с XML.
+ * <p>Формат: заголовок <code>[magic][версия][размер XML][время изменения XML][CRC32 XML][CRC32 данных][nextId]
+ * [количество задач]</code>, за которым идут данные <code>TaskTable.save()</code>. Колонки таблицы копируются из
+ * файла блоками, а заголовки и описания остаются в отображенном файле и декодируются при чтении задач.
+ * <p>Снимок считается свежим, только если размер, время изменения и контрольная сумма XML совпадают с записанными
+ * в заголовке, а контрольная сумма данных - с самими данными. Иначе <code>load()</code> возвращает <code>null</code>,
+ * и репозиторий разбирает XML как обычно. Снимок записывается во временный файл с атомарной заменой, поэтому
+ * оборванная запись не оставляет полуготового файла.
+ */
+final class TaskSnapshotCache {
+
+    private static final int MAGIC = 0x54444353; // "TDCS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+
+    private static final TaskMetrics.Counter HITS = TaskMetrics.counter("cache.hits");
+    private static final TaskMetrics.Counter MISSES = TaskMetrics.counter("cache.misses");
+
+    private final Path xmlFile;
+    private final Path file;
+
+    TaskSnapshotCache(Path xmlFile) {
+        this.xmlFile = xmlFile;
+        this.file = Path.of(xmlFile + ".cache");
+    }
+
+    /**
+     * Загруженный снимок: задачи и сохраненная последовательность идентификаторов.
+     */
+    record Snapshot(TaskTable tasks, int nextId) {
+    }
+
+    /**
+     * @return задачи из снимка или <code>null</code>, если снимка нет, он устарел или поврежден
+     */
+    Snapshot load() {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                return miss();
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (data.getInt() != MAGIC || data.getInt() != VERSION
+                    || data.getLong() != Files.size(xmlFile)
+                    || data.getLong() != Files.getLastModifiedTime(xmlFile).toMillis()) {
+                return miss();
+            }
+            int xmlChecksum = data.getInt();
+            int dataChecksum = data.getInt();
+            int nextId = data.getInt();
+            int count = data.getInt();
+            if (checksum(data.slice()) != dataChecksum || xmlChecksum() != xmlChecksum) {
+                return miss();
+            }
+
+            TaskTable tasks = TaskTable.load(data.slice());
+            if (tasks.size() != count) {
+                return miss();
+            }
+            HITS.increment();
+            return new Snapshot(tasks, nextId);
+        } catch (NoSuchFileException e) {
+            return miss();
+        } catch (IOException | RuntimeException e) {
+            // поврежденный снимок просто игнорируется, задачи будут прочитаны из XML
+            return miss();
+        }
+    }
+
+    /**
+     * Записывает снимок задач, совпадающих с текущим содержимым XML файла.
+     *
+     * @param tasks задачи в том виде, в каком они записаны в XML
+     * @param nextId значение последовательности идентификаторов
+     */
+    void save(TaskTable tasks, int nextId) {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), 64 * 1024), crc))) {
+                // заголовок дописывается в конце, когда известны количество задач и контрольная сумма
+                out.write(new byte[HEADER_SIZE]);
+                crc.reset();
+                tasks.save(out);
+            }
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                    .putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(Files.size(xmlFile))
+                    .putLong(Files.getLastModifiedTime(xmlFile).toMillis())
+                    .putInt(xmlChecksum())
+                    .putInt((int) crc.getValue())
+                    .putInt(nextId)
+                    .putInt(tasks.size())
+                    .flip();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (header.hasRemaining()) {
+                    channel.write(header, header.position());
+                }
+            }
+
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // временный файл будет перезаписан при следующей попытке
+            }
+            throw new RuntimeException("Ошибка при записи снимка задач в " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Snapshot miss() {
+        MISSES.increment();
+        return null;
+    }
+
+    // Контрольная сумма XML считается по отображенному в память файлу без копирования в кучу
+    private int xmlChecksum() throws IOException {
+        try (FileChannel channel = FileChannel.open(xmlFile, StandardOpenOption.READ)) {
+            CRC32 crc = new CRC32();
+            long size = channel.size();
+            for (long position = 0; position < size; position += Integer.MAX_VALUE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Integer.MAX_VALUE, size - position)));
+            }
+            return (int) crc.getValue();
+        }
+    }
+
+    private static int checksum(ByteBuffer data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+}
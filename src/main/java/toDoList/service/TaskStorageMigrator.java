@@ -0,0 +1,49 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+import java.io.File;
+import java.util.Iterator;
+
+/**
+ * Перенос задач между XML и бинарным хранилищем с сохранением <code>id</code>, статусов и дат выполнения.
+ */
+public final class TaskStorageMigrator {
+
+    private TaskStorageMigrator() {
+    }
+
+    /**
+     * Импортирует задачи из XML файла в хранилище. Задачи с совпадающими <code>id</code> заменяются.
+     *
+     * @param xmlFile исходный XML файл
+     * @param target хранилище, например бинарное
+     * @return количество импортированных задач
+     */
+    public static int importXml(File xmlFile, TaskRepository target) {
+        int[] count = {0};
+        new StaxTaskStore(xmlFile.toPath()).forEach(task -> {
+            target.importTask(task);
+            count[0]++;
+        });
+        target.flush();
+        return count[0];
+    }
+
+    /**
+     * Экспортирует все задачи хранилища в XML файл в текущем формате.
+     *
+     * @param source любое хранилище задач
+     * @param xmlFile XML файл, который будет перезаписан
+     * @return количество экспортированных задач
+     */
+    public static int exportXml(TaskRepository source, File xmlFile) {
+        // Задачи читаются постранично из streamTasks(), весь список в памяти не собирается
+        int[] count = {0};
+        Iterator<Task> tasks = source.streamTasks(TaskFilter.all(), 0)
+                .peek(task -> count[0]++)
+                .iterator();
+        new StaxTaskStore(xmlFile.toPath()).writeAll(() -> tasks);
+        return count[0];
+    }
+}
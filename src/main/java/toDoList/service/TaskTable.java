@@ -0,0 +1,544 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Колоночное хранилище задач в памяти: вместо объекта <code>Task</code> с двумя <code>LocalDate</code>, ссылкой
+ * на enum и узлом карты на каждую задачу поля лежат в массивах, индексированных <code>id</code>:
+ * <ul>
+ *     <li>статус - <code>byte</code> (0 - задачи нет), приоритет - <code>byte</code>;</li>
+ *     <li>срок и дата выполнения - <code>int</code> эпохальных дней;</li>
+ *     <li>заголовок и описание - ссылки на строки, повторяющиеся строки дедуплицируются.</li>
+ * </ul>
+ * Массивы разбиты на блоки по <code>CHUNK_SIZE</code> задач, блоки сгруппированы в сегменты по
+ * <code>SEGMENT_SIZE</code> блоков. Объекты <code>Task</code> создаются только на границе API в <code>get()</code>
+ * и итераторе.
+ * <p><code>copy()</code> стоит O(1): копии разделяют сегменты и блоки, а запись в любую из копий сначала копирует
+ * путь к изменяемой строке - массив сегментов, сегмент и блок, - если они принадлежат не ей. Узлы, созданные
+ * таблицей после последнего <code>copy()</code>, меняются на месте, так что загрузка без копий не копирует ничего.
+ * <p>Изменять таблицу может только один поток, но ее копию можно читать из любых потоков параллельно с записью в
+ * оригинал, если копия опубликована через volatile поле: ни один узел копии больше не меняется.
+ * <code>XMLTaskRepository</code> публикует так снимок после каждого изменения.
+ * <p><code>save()</code> и <code>load()</code> переносят таблицу в файл и обратно колонками блоков целиком.
+ * Загруженная таблица не декодирует строки сразу: блок держит ссылку на буфер с текстами (обычно отображенный в
+ * память файл) и смещение строк каждой задачи, а строки декодируются при каждом <code>get()</code>, пока задача не
+ * будет перезаписана.
+ */
+public final class TaskTable implements Iterable<Task> {
+
+    private static final int CHUNK_BITS = 7;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int SEGMENT_BITS = 7;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int SEGMENT_SHIFT = CHUNK_BITS + SEGMENT_BITS;
+
+    // в колонке статуса: 0 - задачи нет, 1 - статус не задан, 2 + ordinal - статус
+    private static final byte ABSENT = 0;
+    private static final byte NO_STATUS = 1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final StatusOfTask[] STATUSES = StatusOfTask.values();
+
+    // Кэш прямого отображения для дедупликации строк: фиксированный размер, без учета ссылок и утечек.
+    // Общий для всех копий таблицы: его читает и пишет только put().
+    private static final int STRING_CACHE_SIZE = 1 << 14;
+
+    private Segment[] segments;
+    private boolean ownsSegments;
+    // Метка владельца: узлы с этой меткой созданы таблицей после последнего copy() и меняются на месте
+    private Object owner = new Object();
+    private final String[] stringCache;
+    private int size;
+
+    public TaskTable() {
+        segments = new Segment[4];
+        ownsSegments = true;
+        stringCache = new String[STRING_CACHE_SIZE];
+    }
+
+    private TaskTable(TaskTable source) {
+        segments = source.segments;
+        stringCache = source.stringCache;
+        size = source.size;
+    }
+
+    public boolean contains(int id) {
+        Chunk chunk = chunk(id);
+        return chunk != null && chunk.status[id & CHUNK_MASK] != ABSENT;
+    }
+
+    /**
+     * @return новый объект задачи с полями из таблицы или <code>null</code>, если задачи нет
+     */
+    public Task get(int id) {
+        return get(id, true);
+    }
+
+    private Task get(int id, boolean withText) {
+        Chunk chunk = chunk(id);
+        if (chunk == null) {
+            return null;
+        }
+
+        int row = id & CHUNK_MASK;
+        byte status = chunk.status[row];
+        if (status == ABSENT) {
+            return null;
+        }
+
+        String caption = chunk.caption[row];
+        String description = chunk.description[row];
+        int textOffset = chunk.textOffset == null ? 0 : chunk.textOffset[row];
+        if (withText && textOffset != 0) {
+            caption = readText(chunk.text, textOffset - 1);
+            description = readText(chunk.text, skipText(chunk.text, textOffset - 1));
+        }
+
+        Task task = new Task(
+                id,
+                caption,
+                description,
+                chunk.priority[row],
+                toDate(chunk.deadline[row]),
+                status == NO_STATUS ? null : STATUSES[status - 2]);
+        task.setCompletionDate(toDate(chunk.completion[row]));
+        return task;
+    }
+
+    /**
+     * Сохраняет поля задачи, заменяя задачу с тем же <code>id</code>.
+     */
+    public void put(Task task) {
+        int id = task.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Некорректный id задачи: " + id);
+        }
+
+        Segment segment = editableSegment(id);
+        Chunk chunk = editableChunk(segment, id);
+
+        int row = id & CHUNK_MASK;
+        if (chunk.status[row] == ABSENT) {
+            chunk.live++;
+            size++;
+        }
+        chunk.status[row] = task.getStatusOfTask() == null
+                ? NO_STATUS
+                : (byte) (task.getStatusOfTask().ordinal() + 2);
+        chunk.priority[row] = (byte) task.getPriority();
+        chunk.deadline[row] = toEpochDay(task.getDeadline());
+        chunk.completion[row] = toEpochDay(task.getCompletionDate());
+        chunk.caption[row] = deduplicate(task.getCaption());
+        chunk.description[row] = deduplicate(task.getDescription());
+        if (chunk.textOffset != null) {
+            chunk.textOffset[row] = 0;
+        }
+    }
+
+    /**
+     * @return <code>false</code>, если задачи нет
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+
+        Segment segment = editableSegment(id);
+        Chunk chunk = editableChunk(segment, id);
+        int row = id & CHUNK_MASK;
+        chunk.status[row] = ABSENT;
+        chunk.caption[row] = null;
+        chunk.description[row] = null;
+        if (chunk.textOffset != null) {
+            chunk.textOffset[row] = 0;
+        }
+        size--;
+        if (--chunk.live == 0) {
+            segment.chunks[(id >>> CHUNK_BITS) & SEGMENT_MASK] = null;
+            if (--segment.live == 0) {
+                segments[id >>> SEGMENT_SHIFT] = null;
+            }
+        }
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return наименьший <code>id</code> задачи больше <code>id</code> или -1
+     */
+    public int higher(int id) {
+        int next = Math.max(id + 1, 0);
+        for (int index = next >>> CHUNK_BITS; (index >>> SEGMENT_BITS) < segments.length;
+                index++, next = index << CHUNK_BITS) {
+            Segment segment = segments[index >>> SEGMENT_BITS];
+            if (segment == null) {
+                // следующий сегмент
+                index |= SEGMENT_MASK;
+                continue;
+            }
+            Chunk chunk = segment.chunks[index & SEGMENT_MASK];
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = next & CHUNK_MASK; row < CHUNK_SIZE; row++) {
+                if (chunk.status[row] != ABSENT) {
+                    return (index << CHUNK_BITS) | row;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return наибольший <code>id</code> задачи или 0, если таблица пуста
+     */
+    public int lastId() {
+        for (int index = (segments.length << SEGMENT_BITS) - 1; index >= 0; index--) {
+            Segment segment = segments[index >>> SEGMENT_BITS];
+            if (segment == null) {
+                index &= ~SEGMENT_MASK;
+                continue;
+            }
+            Chunk chunk = segment.chunks[index & SEGMENT_MASK];
+            if (chunk == null) {
+                continue;
+            }
+            for (int row = CHUNK_SIZE - 1; row >= 0; row--) {
+                if (chunk.status[row] != ABSENT) {
+                    return (index << CHUNK_BITS) | row;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Копия таблицы за O(1). После вызова и копия, и оригинал копируют разделяемые узлы при первой записи в них.
+     */
+    public TaskTable copy() {
+        ownsSegments = false;
+        owner = new Object();
+        return new TaskTable(this);
+    }
+
+    /**
+     * Передает задачи по возрастанию <code>id</code> без заголовка и описания: для построения индексов, которым
+     * текст не нужен, так что строки загруженной таблицы не декодируются.
+     */
+    void forEachWithoutText(Consumer<Task> action) {
+        for (int id = higher(-1); id >= 0; id = higher(id)) {
+            action.accept(get(id, false));
+        }
+    }
+
+    /**
+     * Записывает таблицу в формате <code>[тексты][количество блоков]{[индекс блока][задач в блоке][статусы]
+     * [приоритеты][сроки][даты выполнения][смещения текстов + 1]}[длина текстов]</code>. Текст задачи - заголовок и
+     * описание в UTF-8 с префиксом длины (-1 - <code>null</code>). Тексты, еще не декодированные из буфера
+     * загруженной таблицы, копируются байтами. Колонки <code>int</code> пишутся в порядке little-endian, чтобы на
+     * x86 и ARM загружаться копированием памяти без перестановки байт.
+     */
+    void save(DataOutputStream out) throws IOException {
+        int start = out.size();
+        List<Chunk> chunks = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        List<int[]> offsets = new ArrayList<>();
+        byte[] copy = new byte[256];
+        ByteBuffer ints = ByteBuffer.allocate(CHUNK_SIZE * 4).order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int index = 0; index < segments.length << SEGMENT_BITS; index++) {
+            Segment segment = segments[index >>> SEGMENT_BITS];
+            Chunk chunk = segment == null ? null : segment.chunks[index & SEGMENT_MASK];
+            if (chunk == null) {
+                continue;
+            }
+
+            int[] chunkOffsets = new int[CHUNK_SIZE];
+            for (int row = 0; row < CHUNK_SIZE; row++) {
+                if (chunk.status[row] == ABSENT) {
+                    continue;
+                }
+                chunkOffsets[row] = out.size() - start + 1;
+                int textOffset = chunk.textOffset == null ? 0 : chunk.textOffset[row];
+                if (textOffset != 0) {
+                    int from = textOffset - 1;
+                    int length = skipText(chunk.text, skipText(chunk.text, from)) - from;
+                    if (copy.length < length) {
+                        copy = new byte[length];
+                    }
+                    chunk.text.get(from, copy, 0, length);
+                    out.write(copy, 0, length);
+                } else {
+                    writeText(out, chunk.caption[row]);
+                    writeText(out, chunk.description[row]);
+                }
+            }
+            chunks.add(chunk);
+            indexes.add(index);
+            offsets.add(chunkOffsets);
+        }
+        int textLength = out.size() - start;
+        // колонки выравниваются на 4 байта, чтобы читаться одним представлением IntBuffer
+        out.write(new byte[-textLength & 3]);
+
+        out.writeInt(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            out.writeInt(indexes.get(i));
+            out.writeInt(chunk.live);
+            out.write(chunk.status);
+            out.write(chunk.priority);
+            writeInts(out, ints, chunk.deadline);
+            writeInts(out, ints, chunk.completion);
+            writeInts(out, ints, offsets.get(i));
+        }
+        out.writeInt(textLength);
+    }
+
+    /**
+     * Загружает таблицу, записанную <code>save()</code>. Колонки копируются блоками, тексты остаются в
+     * <code>data</code> и декодируются при чтении задач, поэтому буфер не должен меняться, пока таблица используется.
+     */
+    static TaskTable load(ByteBuffer data) {
+        int textLength = data.getInt(data.limit() - 4);
+        ByteBuffer text = data.slice(0, textLength);
+        IntBuffer ints = data.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        int position = (textLength + 3) & ~3;
+        int count = data.getInt(position);
+        position += 4;
+
+        TaskTable table = new TaskTable();
+        for (int i = 0; i < count; i++) {
+            int index = data.getInt(position);
+            Chunk chunk = new Chunk(table.owner);
+            chunk.live = data.getInt(position + 4);
+            position += 8;
+            data.get(position, chunk.status);
+            position += CHUNK_SIZE;
+            data.get(position, chunk.priority);
+            position += CHUNK_SIZE;
+            ints.get(position / 4, chunk.deadline);
+            position += CHUNK_SIZE * 4;
+            ints.get(position / 4, chunk.completion);
+            position += CHUNK_SIZE * 4;
+            chunk.textOffset = new int[CHUNK_SIZE];
+            ints.get(position / 4, chunk.textOffset);
+            position += CHUNK_SIZE * 4;
+            chunk.text = text;
+
+            Segment segment = table.editableSegment(index << CHUNK_BITS);
+            segment.chunks[index & SEGMENT_MASK] = chunk;
+            segment.live++;
+            table.size += chunk.live;
+        }
+        return table;
+    }
+
+    /**
+     * Итератор задач по возрастанию <code>id</code>; объекты <code>Task</code> создаются по одному.
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return iterator(0);
+    }
+
+    /**
+     * @param afterId итерация начинается с задачи, следующей за <code>afterId</code>
+     */
+    public Iterator<Task> iterator(int afterId) {
+        return new Iterator<>() {
+            private int next = higher(afterId);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Task next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Task task = get(next);
+                next = higher(next);
+                return task;
+            }
+        };
+    }
+
+    private Chunk chunk(int id) {
+        int index = id >>> SEGMENT_SHIFT;
+        if (index >= segments.length) {
+            return null;
+        }
+        Segment segment = segments[index];
+        return segment == null ? null : segment.chunks[(id >>> CHUNK_BITS) & SEGMENT_MASK];
+    }
+
+    // Сегмент для записи: массив сегментов и сам сегмент копируются, если принадлежат не этой таблице
+    private Segment editableSegment(int id) {
+        int index = id >>> SEGMENT_SHIFT;
+        if (index >= segments.length) {
+            segments = Arrays.copyOf(segments, Math.max(index + 1, segments.length * 2));
+            ownsSegments = true;
+        } else if (!ownsSegments) {
+            segments = segments.clone();
+            ownsSegments = true;
+        }
+
+        Segment segment = segments[index];
+        if (segment == null) {
+            segment = new Segment(owner);
+            segments[index] = segment;
+        } else if (segment.owner != owner) {
+            segment = new Segment(segment, owner);
+            segments[index] = segment;
+        }
+        return segment;
+    }
+
+    private Chunk editableChunk(Segment segment, int id) {
+        int index = (id >>> CHUNK_BITS) & SEGMENT_MASK;
+        Chunk chunk = segment.chunks[index];
+        if (chunk == null) {
+            chunk = new Chunk(owner);
+            segment.chunks[index] = chunk;
+            segment.live++;
+        } else if (chunk.owner != owner) {
+            chunk = new Chunk(chunk, owner);
+            segment.chunks[index] = chunk;
+        }
+        return chunk;
+    }
+
+    private String deduplicate(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        int slot = value.hashCode() & (STRING_CACHE_SIZE - 1);
+        String cached = stringCache[slot];
+        if (value.equals(cached)) {
+            return cached;
+        }
+        stringCache[slot] = value;
+        return value;
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, ByteBuffer buffer, int[] values) throws IOException {
+        buffer.clear();
+        buffer.asIntBuffer().put(values);
+        out.write(buffer.array(), 0, values.length * 4);
+    }
+
+
+    private static String readText(ByteBuffer text, int position) {
+        int length = text.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        text.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Позиция следующего текста после текста, начинающегося с position
+    private static int skipText(ByteBuffer text, int position) {
+        return position + 4 + Math.max(text.getInt(position), 0);
+    }
+
+    private static int toEpochDay(LocalDate date) {
+        return date == null ? NO_DATE : (int) date.toEpochDay();
+    }
+
+    private static LocalDate toDate(int epochDay) {
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static final class Segment {
+        private final Object owner;
+        private final Chunk[] chunks;
+        private int live;
+
+        Segment(Object owner) {
+            this.owner = owner;
+            chunks = new Chunk[SEGMENT_SIZE];
+        }
+
+        Segment(Segment source, Object owner) {
+            this.owner = owner;
+            chunks = source.chunks.clone();
+            live = source.live;
+        }
+    }
+
+    private static final class Chunk {
+        private final Object owner;
+        private final byte[] status;
+        private final byte[] priority;
+        private final int[] deadline;
+        private final int[] completion;
+        private final String[] caption;
+        private final String[] description;
+        // Тексты загруженного блока: смещение + 1 в буфере text или 0, если строки уже в caption и description
+        private ByteBuffer text;
+        private int[] textOffset;
+        private int live;
+
+        Chunk(Object owner) {
+            this.owner = owner;
+            status = new byte[CHUNK_SIZE];
+            priority = new byte[CHUNK_SIZE];
+            deadline = new int[CHUNK_SIZE];
+            completion = new int[CHUNK_SIZE];
+            caption = new String[CHUNK_SIZE];
+            description = new String[CHUNK_SIZE];
+        }
+
+        Chunk(Chunk source, Object owner) {
+            this.owner = owner;
+            status = source.status.clone();
+            priority = source.priority.clone();
+            deadline = source.deadline.clone();
+            completion = source.completion.clone();
+            caption = source.caption.clone();
+            description = source.description.clone();
+            text = source.text;
+            textOffset = source.textOffset == null ? null : source.textOffset.clone();
+            live = source.live;
+        }
+    }
+}
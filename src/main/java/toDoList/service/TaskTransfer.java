@@ -0,0 +1,600 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Массовый импорт и экспорт задач в файлы XML, CSV и JSON Lines (см. <code>TaskFileFormat</code>).
+ * <p>Импорт - конвейер из трех стадий, связанных ограниченными очередями:
+ * <ol>
+ *     <li>чтение: один поток делит файл на записи (строки CSV и JSON Lines, элементы <code>Task</code> XML) и
+ *     собирает их в пачки по <code>CHUNK_SIZE</code>;</li>
+ *     <li>разбор и проверка: <code>PARSER_THREADS</code> потоков превращают записи в задачи и проверяют их по
+ *     правилам команды <code>new</code> (<code>TaskService.newTask()</code>), а также проверяют статус и дату
+ *     выполнения;</li>
+ *     <li>запись: вызывающий поток восстанавливает порядок пачек и записывает их в репозиторий - на пачку один
+ *     <code>reserveIds()</code> и <code>importTask()</code> для каждой задачи, весь импорт в одном
+ *     <code>runBatch()</code>.</li>
+ * </ol>
+ * Если запись не успевает, очереди заполняются и чтение файла приостанавливается, поэтому память не зависит от
+ * размера файла. Задачи получают новые <code>id</code> из последовательности репозитория и не затирают существующие;
+ * статус и дата выполнения из файла сохраняются. Некорректные записи пропускаются и попадают в отчет.
+ * <p>Записанные задачи не откатываются: если файл не удалось дочитать (например, в CSV осталась незакрытая кавычка),
+ * импортируются все записи до места ошибки, а ошибка возвращается в отчете вместе с их количеством.
+ * <p>Экспорт читает задачи постранично через <code>streamTasks()</code> и пишет их в файл последовательно:
+ * форматирование задачи дешевле ее чтения, и распараллеливать здесь нечего.
+ */
+public final class TaskTransfer {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int PARSER_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    private static final int QUEUE_CAPACITY = PARSER_THREADS * 2;
+    private static final int MAX_REPORTED_ERRORS = 10;
+
+    private static final String[] CSV_HEADER =
+            {"id", "caption", "description", "priority", "deadline", "status", "completionDate"};
+
+    // Порядок полей записи после чтения: имена соответствуют CSV_HEADER без id
+    private static final int CAPTION = 0;
+    private static final int DESCRIPTION = 1;
+    private static final int PRIORITY = 2;
+    private static final int DEADLINE = 3;
+    private static final int STATUS = 4;
+    private static final int COMPLETION = 5;
+    private static final int FIELDS = 6;
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    // Признак конца потока пачек
+    private static final Chunk END = new Chunk(-1, 0);
+
+    private TaskTransfer() {
+    }
+
+    /**
+     * Итог импорта или экспорта.
+     *
+     * @param transferred количество записанных задач
+     * @param rejected количество записей, не прошедших проверку
+     * @param errors сообщения о первых <code>MAX_REPORTED_ERRORS</code> отклоненных записях
+     * @param failure ошибка чтения, на которой импорт остановился, или <code>null</code>, если файл прочитан целиком
+     * @param nanos длительность операции
+     */
+    public record Report(int transferred, int rejected, List<String> errors, String failure, long nanos) {
+
+        public double tasksPerSecond() {
+            return nanos == 0 ? 0 : transferred * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Импортирует задачи из файла в репозиторий.
+     *
+     * @param file файл <code>.xml</code>, <code>.csv</code> или <code>.jsonl</code>
+     * @param target репозиторий, в который добавляются задачи
+     * @return отчет с количеством импортированных и отклоненных задач и ошибкой, если файл не удалось дочитать
+     * @throws IllegalArgumentException если формат файла не поддерживается или в заголовке CSV нет нужных столбцов
+     * @throws RuntimeException если файл не удалось открыть
+     */
+    public static Report importFile(Path file, TaskRepository target) {
+        long start = System.nanoTime();
+        RecordSource source = open(file, TaskFileFormat.of(file));
+
+        AtomicInteger threads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(PARSER_THREADS + 1, runnable -> {
+            Thread thread = new Thread(runnable, "task-import-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            BlockingQueue<Chunk> read = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            BlockingQueue<Chunk> parsed = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Future<?> reader = executor.submit(() -> {
+                read(source, read);
+                return null;
+            });
+            for (int i = 0; i < PARSER_THREADS; i++) {
+                executor.submit(() -> {
+                    parse(source, read, parsed);
+                    return null;
+                });
+            }
+
+            ImportWriter writer = new ImportWriter(target);
+            target.runBatch(() -> writer.drain(parsed));
+            String failure = null;
+            try {
+                reader.get();
+            } catch (ExecutionException e) {
+                failure = "Ошибка при импорте задач: " + e.getCause().getMessage();
+            }
+            return new Report(writer.imported, writer.rejected, List.copyOf(writer.errors), failure,
+                    System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Импорт задач прерван", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Экспортирует все задачи репозитория в файл, перезаписывая его.
+     *
+     * @param source репозиторий
+     * @param file файл <code>.xml</code>, <code>.csv</code> или <code>.jsonl</code>
+     * @return отчет с количеством экспортированных задач
+     * @throws IllegalArgumentException если формат файла не поддерживается
+     */
+    public static Report exportFile(TaskRepository source, Path file) {
+        long start = System.nanoTime();
+        TaskFileFormat format = TaskFileFormat.of(file);
+
+        int[] count = {0};
+        try (Stream<Task> tasks = source.streamTasks(TaskFilter.all(), 0).peek(task -> count[0]++)) {
+            Iterator<Task> iterator = tasks.iterator();
+            if (format == TaskFileFormat.XML) {
+                new StaxTaskStore(file).writeAll(() -> iterator);
+            } else {
+                writeLines(file, format, iterator);
+            }
+        }
+        return new Report(count[0], 0, List.of(), null, System.nanoTime() - start);
+    }
+
+    // Стадия чтения: делит файл на пачки записей; записи, прочитанные до ошибки, тоже уходят дальше
+    private static void read(RecordSource source, BlockingQueue<Chunk> read) throws Exception {
+        long seq = 0;
+        int firstRecord = 1;
+        Chunk chunk = new Chunk(seq++, firstRecord);
+        try {
+            for (Object record = source.next(); record != null; record = source.next()) {
+                chunk.records[chunk.size++] = record;
+                if (chunk.size == CHUNK_SIZE) {
+                    read.put(chunk);
+                    firstRecord += CHUNK_SIZE;
+                    chunk = new Chunk(seq++, firstRecord);
+                }
+            }
+        } finally {
+            source.close();
+            if (chunk.size > 0) {
+                read.put(chunk);
+            }
+            for (int i = 0; i < PARSER_THREADS; i++) {
+                read.put(END);
+            }
+        }
+    }
+
+    // Стадия разбора и проверки: ошибки отдельных записей не прерывают импорт
+    private static void parse(RecordSource source, BlockingQueue<Chunk> read, BlockingQueue<Chunk> parsed)
+            throws InterruptedException {
+        while (true) {
+            Chunk chunk = read.take();
+            if (chunk == END) {
+                parsed.put(END);
+                return;
+            }
+
+            for (int i = 0; i < chunk.size; i++) {
+                try {
+                    chunk.tasks[i] = toTask(source.fields(chunk.records[i]));
+                } catch (TaskService.InvalidCommandException e) {
+                    chunk.errors[i] = e.getMessage();
+                } catch (RuntimeException e) {
+                    chunk.errors[i] = "Ошибка: некорректная запись: " + e.getMessage();
+                }
+                chunk.records[i] = null;
+            }
+            parsed.put(chunk);
+        }
+    }
+
+    /**
+     * Проверяет поля записи по правилам команды <code>new</code>; статус и дата выполнения необязательны.
+     */
+    private static Task toTask(String[] fields) {
+        if (fields[CAPTION] == null || fields[DESCRIPTION] == null || fields[PRIORITY] == null
+                || fields[DEADLINE] == null) {
+            throw new TaskService.InvalidCommandException(
+                    "Ошибка: заголовок, описание, приоритет и срок задачи обязательны");
+        }
+        Task task = TaskService.newTask(fields[CAPTION], fields[DESCRIPTION], fields[PRIORITY], fields[DEADLINE]);
+
+        task.setStatusOfTask(StatusOfTask.NEW);
+        if (fields[STATUS] != null && !fields[STATUS].isEmpty()) {
+            try {
+                task.setStatusOfTask(StatusOfTask.valueOf(fields[STATUS].toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new TaskService.InvalidCommandException(
+                        "Некорректный формат ввода статуса! Возможные статусы: new, in_progress, done.");
+            }
+        }
+        if (fields[COMPLETION] != null && !fields[COMPLETION].isEmpty()) {
+            try {
+                task.setCompletionDate(LocalDate.parse(fields[COMPLETION]));
+            } catch (DateTimeParseException e) {
+                throw new TaskService.InvalidCommandException(
+                        "Ошибка: некорреткный формат ввода даты. Пример: YYYY-MM-DD");
+            }
+        }
+        return task;
+    }
+
+    private static RecordSource open(Path file, TaskFileFormat format) {
+        try {
+            return switch (format) {
+                case XML -> new XmlSource(file);
+                case CSV -> new CsvSource(file);
+                case JSONL -> new JsonLinesSource(file);
+            };
+        } catch (IOException | XMLStreamException e) {
+            throw new RuntimeException("Ошибка при импорте задач: " + e.getMessage(), e);
+        }
+    }
+
+    private static void writeLines(Path file, TaskFileFormat format, Iterator<Task> tasks) {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            if (format == TaskFileFormat.CSV) {
+                out.write(String.join(",", CSV_HEADER));
+                out.newLine();
+            }
+            StringBuilder line = new StringBuilder(256);
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                line.setLength(0);
+                if (format == TaskFileFormat.CSV) {
+                    appendCsv(line, task);
+                } else {
+                    line.append(TaskJson.toJson(task));
+                }
+                out.append(line);
+                out.newLine();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Ошибка при экспорте задач: " + e.getMessage(), e);
+        }
+    }
+
+    private static void appendCsv(StringBuilder line, Task task) {
+        line.append(task.getId()).append(',');
+        appendCsvValue(line, task.getCaption());
+        line.append(',');
+        appendCsvValue(line, task.getDescription());
+        line.append(',').append(task.getPriority()).append(',');
+        line.append(task.getDeadline() == null ? "" : task.getDeadline().toString()).append(',');
+        line.append(task.getStatusOfTask() == null ? "" : task.getStatusOfTask().name().toLowerCase()).append(',');
+        line.append(task.getCompletionDate() == null ? "" : task.getCompletionDate().toString());
+    }
+
+    private static void appendCsvValue(StringBuilder line, String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    /**
+     * Разбирает запись CSV: значения в кавычках могут содержать запятые, переводы строк и удвоенные кавычки.
+     */
+    private static List<String> parseCsv(String record) {
+        List<String> values = new ArrayList<>(CSV_HEADER.length);
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Пачка записей, проходящая по конвейеру. Записи и результаты хранятся по индексу записи в пачке.
+     */
+    private static final class Chunk {
+        private final long seq;
+        private final int firstRecord;
+        private final Object[] records;
+        private final Task[] tasks;
+        private final String[] errors;
+        private int size;
+
+        Chunk(long seq, int firstRecord) {
+            this.seq = seq;
+            this.firstRecord = firstRecord;
+            boolean end = seq < 0;
+            this.records = end ? null : new Object[CHUNK_SIZE];
+            this.tasks = end ? null : new Task[CHUNK_SIZE];
+            this.errors = end ? null : new String[CHUNK_SIZE];
+        }
+    }
+
+    /**
+     * Стадия записи: выдает пачки в репозиторий в порядке файла, хотя разбираются они параллельно.
+     */
+    private static final class ImportWriter {
+        private final TaskRepository target;
+        private final Map<Long, Chunk> pending = new HashMap<>();
+        private final List<String> errors = new ArrayList<>();
+        private long expected;
+        private int imported;
+        private int rejected;
+
+        ImportWriter(TaskRepository target) {
+            this.target = target;
+        }
+
+        void drain(BlockingQueue<Chunk> parsed) {
+            try {
+                for (int finished = 0; finished < PARSER_THREADS; ) {
+                    Chunk chunk = parsed.take();
+                    if (chunk == END) {
+                        finished++;
+                        continue;
+                    }
+
+                    pending.put(chunk.seq, chunk);
+                    for (Chunk next = pending.remove(expected); next != null; next = pending.remove(expected)) {
+                        write(next);
+                        expected++;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Импорт задач прерван", e);
+            }
+        }
+
+        private void write(Chunk chunk) {
+            int valid = 0;
+            for (int i = 0; i < chunk.size; i++) {
+                if (chunk.tasks[i] != null) {
+                    valid++;
+                    continue;
+                }
+                rejected++;
+                if (errors.size() < MAX_REPORTED_ERRORS) {
+                    errors.add("запись " + (chunk.firstRecord + i) + ": " + chunk.errors[i]);
+                }
+            }
+            if (valid == 0) {
+                return;
+            }
+
+            int id = target.reserveIds(valid);
+            for (int i = 0; i < chunk.size; i++) {
+                Task task = chunk.tasks[i];
+                if (task != null) {
+                    task.setId(id++);
+                    target.importTask(task);
+                    imported++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Источник записей файла. <code>next()</code> вызывается только потоком чтения, <code>fields()</code> -
+     * параллельно потоками разбора.
+     */
+    private interface RecordSource {
+
+        /**
+         * @return следующая запись или <code>null</code> в конце файла
+         */
+        Object next() throws Exception;
+
+        /**
+         * @return значения полей записи в порядке <code>CAPTION..COMPLETION</code>; отсутствующие - <code>null</code>
+         */
+        String[] fields(Object record);
+
+        void close() throws Exception;
+    }
+
+    /**
+     * XML в схеме <code>StaxTaskStore</code>. Разбор XML последователен по своей природе, поэтому поток чтения
+     * только извлекает тексты полей, а числа и даты разбираются и проверяются потоками разбора.
+     */
+    private static final class XmlSource implements RecordSource {
+        private final InputStream in;
+        private final XMLStreamReader reader;
+
+        XmlSource(Path file) throws IOException, XMLStreamException {
+            this.in = Files.newInputStream(file);
+            this.reader = INPUT_FACTORY.createXMLStreamReader(in);
+        }
+
+        @Override
+        public Object next() throws XMLStreamException {
+            while (reader.hasNext()) {
+                if (reader.next() == XMLStreamConstants.START_ELEMENT && reader.getLocalName().equals("Task")) {
+                    return readTask();
+                }
+            }
+            return null;
+        }
+
+        private String[] readTask() throws XMLStreamException {
+            String[] fields = new String[FIELDS];
+            fields[CAPTION] = reader.getAttributeValue(null, "caption");
+            while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+                String name = reader.getLocalName();
+                String text = reader.getElementText();
+                switch (name) {
+                    case "Description" -> fields[DESCRIPTION] = text;
+                    case "Priority" -> fields[PRIORITY] = text;
+                    case "Deadline" -> fields[DEADLINE] = text;
+                    case "Status" -> fields[STATUS] = text;
+                    case "Complete" -> fields[COMPLETION] = text;
+                    default -> { }
+                }
+            }
+            return fields;
+        }
+
+        @Override
+        public String[] fields(Object record) {
+            return (String[]) record;
+        }
+
+        @Override
+        public void close() throws IOException, XMLStreamException {
+            reader.close();
+            in.close();
+        }
+    }
+
+    /**
+     * CSV со строкой заголовка; столбцы сопоставляются по именам, столбец <code>id</code> игнорируется.
+     */
+    private static final class CsvSource implements RecordSource {
+        private final BufferedReader in;
+        // индекс столбца файла для каждого поля записи или -1
+        private final int[] columns = new int[FIELDS];
+
+        CsvSource(Path file) throws IOException {
+            this.in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+            String header = nextRecord();
+            List<String> names = header == null ? List.of() : parseCsv(header);
+            for (int field = 0; field < FIELDS; field++) {
+                columns[field] = names.indexOf(CSV_HEADER[field + 1]);
+            }
+            if (columns[CAPTION] < 0 || columns[DESCRIPTION] < 0 || columns[PRIORITY] < 0 || columns[DEADLINE] < 0) {
+                in.close();
+                throw new IllegalArgumentException(
+                        "Ошибка: в заголовке CSV должны быть столбцы caption, description, priority и deadline");
+            }
+        }
+
+        @Override
+        public Object next() throws IOException {
+            return nextRecord();
+        }
+
+        // Запись может занимать несколько строк, если значение в кавычках содержит перевод строки
+        private String nextRecord() throws IOException {
+            String line = in.readLine();
+            while (line != null && line.isBlank()) {
+                line = in.readLine();
+            }
+            if (line == null) {
+                return null;
+            }
+
+            StringBuilder record = new StringBuilder(line);
+            long quotes = line.chars().filter(c -> c == '"').count();
+            while (quotes % 2 != 0) {
+                String more = in.readLine();
+                if (more == null) {
+                    throw new IOException("незакрытая кавычка в последней записи CSV");
+                }
+                record.append('\n').append(more);
+                quotes += more.chars().filter(c -> c == '"').count();
+            }
+            return record.toString();
+        }
+
+        @Override
+        public String[] fields(Object record) {
+            List<String> values = parseCsv((String) record);
+            String[] fields = new String[FIELDS];
+            for (int field = 0; field < FIELDS; field++) {
+                int column = columns[field];
+                fields[field] = column >= 0 && column < values.size() ? values.get(column) : null;
+            }
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * JSON Lines: по одному плоскому объекту на строку, пустые строки пропускаются.
+     */
+    private static final class JsonLinesSource implements RecordSource {
+        private final BufferedReader in;
+
+        JsonLinesSource(Path file) throws IOException {
+            this.in = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Object next() throws IOException {
+            String line = in.readLine();
+            while (line != null && line.isBlank()) {
+                line = in.readLine();
+            }
+            return line;
+        }
+
+        @Override
+        public String[] fields(Object record) {
+            Map<String, String> json = TaskJson.parseObject((String) record);
+            String[] fields = new String[FIELDS];
+            for (int field = 0; field < FIELDS; field++) {
+                fields[field] = json.get(CSV_HEADER[field + 1]);
+            }
+            return fields;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package main.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+
+/**
+ * Представление результатов <code>TaskService</code>: вывод задач и результатов команд, а также ввод новых значений
+ * для интерактивной команды <code>edit</code>.
+ */
+public interface TaskView {
+
+    /**
+     * Выводит задачу из результата команды <code>list</code>. Вызывается по одной задаче по мере выборки.
+     */
+    void showTask(Task task);
+
+    void showResult(CommandResult result);
+
+    /**
+     * Выводит событие изменения задачи для команды <code>watch</code>. Вызывается из потока подписки, параллельно
+     * с выводом результатов команд.
+     */
+    void showEvent(TaskEvent event);
+
+    /**
+     * Запрашивает новое значение поля задачи.
+     *
+     * @param field название поля
+     * @return введенная строка; пустая строка оставляет значение без изменений
+     */
+    String ask(String field);
+}
@@ -3,9 +3,6 @@ package main.java.toDoList.service;
 import main.java.toDoList.model.StatusOfTask;
 import main.java.toDoList.model.Task;
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -14,24 +11,204 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import java.io.File;
+import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.List;
-
-public class XMLTaskRepository {
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Репозиторий задач, хранящихся в XML файле.
+ * <p>Файл читается потоково через <code>StaxTaskStore</code> один раз при создании репозитория, после чего все
+ * задачи хранятся в памяти в колоночной <code>TaskTable</code>, и все операции чтения обслуживаются из нее.
+ * Объекты <code>Task</code> создаются только при выдаче задач наружу.
+ * <p>Чтобы не разбирать XML при каждом запуске, при закрытии рядом с ним сохраняется бинарный снимок задач
+ * <code>TaskSnapshotCache</code>. При создании репозитория снимок загружается вместо XML, если размер, время
+ * изменения и контрольная сумма XML совпадают с записанными в снимке, иначе XML разбирается как обычно.
+ * Изменения записываются в XML асинхронно: каждая мутация помечает хранилище как измененное и планирует запись
+ * через <code>FLUSH_DELAY_MS</code>, так что серия изменений объединяется в одну перезапись файла.
+ * Принудительная запись выполняется через <code>flush()</code>, <code>close()</code> и при завершении JVM.
+ * Файл всегда записывается из таблицы задач по возрастанию <code>id</code>, так что порядок задач в нем поддерживается
+ * при каждой записи: выполнение или правка задачи не перемещает ее элемент. Операции чтения файл не трогают; если
+ * файл был упорядочен вручную иначе, порядок восстановится при следующем изменении.
+ * <p>В журналируемом режиме (конструктор с <code>TaskJournal.FsyncPolicy</code>) каждое изменение сначала
+ * дописывается в <code>TaskJournal</code>, а XML файл становится контрольной точкой, которая переписывается раз в
+ * <code>CHECKPOINT_DELAY_MS</code> или когда журнал превышает <code>CHECKPOINT_JOURNAL_BYTES</code>.
+ * При старте журнал проигрывается поверх последней контрольной точки.
+ * <p>Последовательность идентификаторов хранится в атрибуте <code>nextId</code> корня. При загрузке берется
+ * наибольшее из сохраненного значения и <code>max(id) + 1</code>, так что ручная правка файла не приводит к
+ * повторной выдаче существующих <code>id</code>.
+ * <p>Каждое изменение публикуется подписчикам <code>events()</code> как <code>TaskEvent</code> после публикации
+ * снимка.
+ * <p>Для выборок по статусу, приоритету и сроку поддерживается <code>TaskIndex</code>. Он строится при первой
+ * выборке, а не при загрузке, так что команды без фильтров не платят за его построение.
+ * Длительность операций записывается в таймеры <code>TaskMetrics</code> с префиксом <code>repository.</code>.
+ * <p>Потокобезопасность: все изменения выполняются под одной блокировкой <code>writeLock</code> в рабочей таблице
+ * <code>tasks</code>, после каждого изменения ее копия <code>TaskTable.copy()</code> публикуется в volatile поле
+ * <code>snapshot</code>. Копия стоит O(1), а следующая запись копирует только путь к измененной строке, так что
+ * изменение обходится в копирование одного блока таблицы. Чтение задачи и списков идет из опубликованного снимка без
+ * блокировок: читатель не ждет писателя и видит состояние целиком до или целиком после любого изменения. Выборки по
+ * индексам берут снимок под монитором <code>index</code> вместе с выборкой <code>id</code>, поэтому индекс и строки
+ * таблицы всегда согласованы. Снимок для записи в файл - тот же опубликованный снимок.
+ * Между процессами файл защищен <code>TaskFileLock</code> на весь срок жизни репозитория.
+ */
+public final class XMLTaskRepository implements TaskRepository {
+
+    private static final long FLUSH_DELAY_MS = 200;
+    private static final long CHECKPOINT_DELAY_MS = 30_000;
+    private static final long CHECKPOINT_JOURNAL_BYTES = 4L * 1024 * 1024;
+    private static final long JOURNAL_SYNC_INTERVAL_MS = 50;
+    private static final long PROCESS_LOCK_TIMEOUT_MS = 5_000;
+
+    private static final TaskMetrics.Timer CREATE = TaskMetrics.timer("repository.create");
+    private static final TaskMetrics.Timer IMPORT = TaskMetrics.timer("repository.import");
+    private static final TaskMetrics.Timer EDIT = TaskMetrics.timer("repository.edit");
+    private static final TaskMetrics.Timer FIND = TaskMetrics.timer("repository.find");
+    private static final TaskMetrics.Timer LIST = TaskMetrics.timer("repository.list");
+    private static final TaskMetrics.Timer FILTER = TaskMetrics.timer("repository.filter");
+    private static final TaskMetrics.Timer PAGE = TaskMetrics.timer("repository.page");
+    private static final TaskMetrics.Timer NEXT = TaskMetrics.timer("repository.next");
+    private static final TaskMetrics.Timer SEARCH = TaskMetrics.timer("repository.search");
+    private static final TaskMetrics.Timer DELETE = TaskMetrics.timer("repository.delete");
+    private static final TaskMetrics.Timer COMPLETE = TaskMetrics.timer("repository.complete");
+    private static final TaskMetrics.Timer FLUSH = TaskMetrics.timer("repository.flush");
+    private static final TaskMetrics.Timer LOAD = TaskMetrics.timer("repository.load");
+    private static final TaskMetrics.Counter DOCUMENT_PARSES = TaskMetrics.counter("xml.parses");
+    private static final TaskMetrics.Counter BYTES_READ = TaskMetrics.counter("xml.bytesRead");
+    private static final TaskMetrics.Counter BYTES_WRITTEN = TaskMetrics.counter("xml.bytesWritten");
 
     File inputFile;
 
+    private final StaxTaskStore store;
+    private final TaskSnapshotCache cache;
+    private final TaskJournal journal;
+
+    // Рабочая таблица; защищена writeLock
+    private final TaskTable tasks;
+    // Неизменяемый снимок tasks после последнего изменения; публикуется под монитором index
+    private volatile TaskTable snapshot;
+    private final TaskIndex index = new TaskIndex();
+    private final TaskEventStream events;
+    // Поток событий создан этим репозиторием, а не передан владельцем нескольких репозиториев
+    private final boolean ownsEvents;
+    private final Path searchIndexFile;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final TaskFileLock processLock;
+    private final ScheduledExecutorService flushExecutor;
+    private final Thread shutdownHook;
+    private final Object flushLock = new Object();
+
+    // Защищено writeLock
+    private int nextId;
+
+    // Строится при первой выборке; защищено монитором index
+    private boolean indexBuilt;
+
+    // Загружается при первом поиске; защищено монитором index
+    private TaskSearchIndex searchIndex;
+
+    // Снимок совпадает с текущим XML файлом; защищено flushLock
+    private boolean cacheFresh;
+
+    // Поля ниже защищены монитором this
+    private boolean dirty;
+    private int batchDepth;
+    private boolean flushScheduled;
+    private ScheduledFuture<?> pendingFlush;
+    private long pendingFlushDelay;
+    private boolean closed;
+
     public XMLTaskRepository(File inputFile) {
+        this(inputFile, null);
+    }
+
+    /**
+     * @param inputFile XML файл с задачами
+     * @param fsyncPolicy политика сброса журнала; <code>null</code> отключает журнал
+     */
+    public XMLTaskRepository(File inputFile, TaskJournal.FsyncPolicy fsyncPolicy) {
+        this(inputFile, fsyncPolicy, null);
+    }
+
+    /**
+     * @param events общий поток событий нескольких репозиториев, например сегментов
+     *               <code>ShardedTaskRepository</code>; <code>null</code> - собственный поток. Общий поток не
+     *               закрывается вместе с репозиторием
+     */
+    XMLTaskRepository(File inputFile, TaskJournal.FsyncPolicy fsyncPolicy, TaskEventStream events) {
         this.inputFile = inputFile;
+        this.ownsEvents = events == null;
+        this.events = events == null ? new TaskEventStream() : events;
+        this.store = new StaxTaskStore(inputFile.toPath());
+        this.cache = new TaskSnapshotCache(inputFile.toPath());
+        this.searchIndexFile = Path.of(inputFile.getPath() + ".search");
+        this.processLock = TaskFileLock.acquire(inputFile.toPath(), PROCESS_LOCK_TIMEOUT_MS);
+        ScheduledThreadPoolExecutor executor = null;
+        TaskJournal openedJournal = null;
+        boolean replayed = false;
+        try {
+            this.tasks = loadTasks();
+
+            executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+                Thread thread = new Thread(runnable, "xml-task-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            // отложенные записи при закрытии не ждем: close() сам выполняет финальную запись
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            this.flushExecutor = executor;
+
+            if (fsyncPolicy != null) {
+                openedJournal = new TaskJournal(inputFile.toPath(), fsyncPolicy);
+                // восстановление после сбоя: изменения, не попавшие в контрольную точку
+                if (openedJournal.replay(tasks) > 0) {
+                    nextId = Math.max(nextId, openedJournal.getMaxReplayedId() + 1);
+                    replayed = true;
+                }
+                if (fsyncPolicy == TaskJournal.FsyncPolicy.BATCHED) {
+                    flushExecutor.scheduleWithFixedDelay(openedJournal::sync,
+                            JOURNAL_SYNC_INTERVAL_MS, JOURNAL_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                }
+            }
+            this.journal = openedJournal;
+            // снимок публикуется до первой запланированной записи: flush() пишет именно его
+            this.snapshot = tasks.copy();
+        } catch (RuntimeException e) {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            if (openedJournal != null) {
+                try {
+                    openedJournal.close();
+                } catch (RuntimeException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            processLock.close();
+            throw e;
+        }
+
+        this.shutdownHook = new Thread(this::flush, "xml-task-flush-on-exit");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+        if (replayed) {
+            // журнал больше порога контрольной точки - запись начнется сразу, поэтому последним шагом
+            markDirty();
+        }
     }
 
     // Метод для загрузки XML документа
     public Document loadDocument() {
+        DOCUMENT_PARSES.increment();
+        BYTES_READ.add(inputFile.length());
         try {
-            DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
+            DocumentBuilder dBuilder = Dom.BUILDER.get();
+            dBuilder.reset();
             Document document = dBuilder.parse(inputFile);
             document.getDocumentElement().normalize();
             return document;
@@ -42,62 +219,75 @@ public class XMLTaskRepository {
 
     public void saveDocument(Document document) {
         try {
-            TransformerFactory transformerFactory = TransformerFactory.newInstance();
-            Transformer transformer = transformerFactory.newTransformer();
+            Transformer transformer = Dom.TRANSFORMER.get();
+            transformer.reset();
             DOMSource source = new DOMSource(document);
             StreamResult result = new StreamResult(inputFile);
             transformer.transform(source, result);
+            BYTES_WRITTEN.add(inputFile.length());
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при загрузке XML документа: " + e.getMessage(), e);
         }
     }
 
+    @Override
     public Task createTask(Task task) {
-        Document document = loadDocument();
-
-        NodeList taskList = document.getElementsByTagName("Task");
-        int maxId = 0;
-
-        //получаем максимальное ID задачи для автоинкремента
-        for (int i = 0; i < taskList.getLength(); i++) {
-            Element taskElement = (Element) taskList.item(i);
-            String idStr = taskElement.getAttribute("id");
-            int id = Integer.parseInt(idStr);
-            if (id > maxId) {
-                maxId = id;
-            }
+        long started = CREATE.start();
+        writeLock.lock();
+        try {
+            task.setId(nextId++);
+            task.setStatusOfTask(StatusOfTask.NEW);
+            tasks.put(task);
+            publish(null, task);
+
+            log(task);
+            markDirty();
+            return task;
+        } finally {
+            writeLock.unlock();
+            CREATE.stop(started);
         }
+    }
 
-        ++maxId;
-        task.setId(maxId);
-
-        Element newTask = document.createElement("Task");
-        newTask.setAttribute("id", String.valueOf(task.getId()));
-        newTask.setAttribute("caption", task.getCaption());
-
-        Element taskDescription = document.createElement("Description");
-        taskDescription.appendChild(document.createTextNode(task.getDescription()));
-        newTask.appendChild(taskDescription);
-
-        Element taskPriority = document.createElement("Priority");
-        taskPriority.appendChild(document.createTextNode(String.valueOf(task.getPriority())));
-        newTask.appendChild(taskPriority);
-
-        Element taskDeadline = document.createElement("Deadline");
-        taskDeadline.appendChild(document.createTextNode(String.valueOf(task.getDeadline())));
-        newTask.appendChild(taskDeadline);
-
-        task.setStatusOfTask(StatusOfTask.NEW);
-        Element taskStatus = document.createElement("Status");
-        taskStatus.appendChild(document.createTextNode(String.valueOf(task.getStatusOfTask()).toLowerCase()));
-        newTask.appendChild(taskStatus);
+    @Override
+    public void importTask(Task task) {
+        long started = IMPORT.start();
+        writeLock.lock();
+        try {
+            Task previous = tasks.get(task.getId());
+            tasks.put(task);
+            publish(previous, task);
+            nextId = Math.max(nextId, task.getId() + 1);
+
+            log(task);
+            markDirty();
+        } finally {
+            writeLock.unlock();
+            IMPORT.stop(started);
+        }
+    }
 
-        document.getDocumentElement().appendChild(newTask);
+    @Override
+    public int reserveIds(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("Количество идентификаторов должно быть положительным");
+        }
 
-        saveDocument(document);
-        return task;
+        writeLock.lock();
+        try {
+            int first = nextId;
+            nextId += count;
+            if (journal != null) {
+                journal.advanceSequence(nextId);
+            }
+            markDirty();
+            return first;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
+    @Override
     public boolean editTask(
             int id,
             String newCaption,
@@ -105,197 +295,567 @@ public class XMLTaskRepository {
             int newPriority,
             LocalDate newDeadline,
             StatusOfTask newStatus) {
-        Document document = loadDocument();
-
-        Task task = findTaskById(id);
+        long started = EDIT.start();
+        writeLock.lock();
+        try {
+            Task before = tasks.get(id);
 
-        if (task == null){
-            return false;
-        }
+            if (before == null){
+                return false;
+            }
+            Task task = new Task(before);
 
-        NodeList taskList = document.getElementsByTagName("Task");
+            if (!newCaption.isEmpty()) {
+                task.setCaption(newCaption);
+            }
 
-        for (int i = 0; i < taskList.getLength(); i++) {
-            Element taskElement = (Element) taskList.item(i);
-            Integer taskId = Integer.parseInt(taskElement.getAttribute("id"));
+            if (!newDescription.isEmpty()) {
+                task.setDescription(newDescription);
+            }
 
-            if (taskId.equals(id)) {
+            if (newPriority != 0) {
+                task.setPriority(newPriority);
+            }
 
-                if (!newCaption.isEmpty()) {
-                    taskElement.setAttribute("caption", newCaption);
-                }
+            if (newDeadline != null) {
+                task.setDeadline(newDeadline);
+            }
 
+            if (newStatus != null) {
+                task.setStatusOfTask(newStatus);
+            }
 
-                if (!newDescription.isEmpty()) {
-                    taskElement.getElementsByTagName("Description").item(0).setTextContent(newDescription);
-                }
+            tasks.put(task);
+            publish(before, task);
+            log(task);
+            markDirty();
+            return true;
+        } finally {
+            writeLock.unlock();
+            EDIT.stop(started);
+        }
+    }
 
+    @Override
+    public Task findTaskById(int id) {
+        long started = FIND.start();
+        try {
+            return snapshot.get(id);
+        } finally {
+            FIND.stop(started);
+        }
+    }
 
-                if (newPriority != 0) {
-                    taskElement.getElementsByTagName("Priority").item(0).setTextContent(String.valueOf(newPriority));
-                }
+    /**
+     * Возвращает копии всех задач, упорядоченные по <code>id</code>. Файл при этом не читается и не перезаписывается.
+     *
+     * @return список задач
+     */
+    @Override
+    public List<Task> getTasks() {
+        long started = LIST.start();
+        try {
+            TaskTable current = snapshot;
+            List<Task> result = new ArrayList<>(current.size());
+            for (Task task : current) {
+                result.add(task);
+            }
+            return result;
+        } finally {
+            LIST.stop(started);
+        }
+    }
 
+    @Override
+    public List<Task> findTasks(TaskFilter filter) {
+        if (filter.isEmpty()) {
+            return getTasks();
+        }
 
-                if (newDeadline != null) {
-                    taskElement.getElementsByTagName("Deadline").item(0).setTextContent(String.valueOf(newDeadline));
-                }
+        long started = FILTER.start();
+        try {
+            BitSet ids;
+            TaskTable current;
+            synchronized (index) {
+                ensureIndex();
+                ids = index.select(filter);
+                current = snapshot;
+            }
 
+            List<Task> result = new ArrayList<>(ids.cardinality());
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                result.add(current.get(id));
+            }
+            return result;
+        } finally {
+            FILTER.stop(started);
+        }
+    }
 
-                if (!newStatus.toString().isEmpty()) {
-                    taskElement.getElementsByTagName("Status").item(0).setTextContent(String.valueOf(newStatus));
+    /**
+     * Без фильтра страница читается из таблицы задач начиная с <code>afterId + 1</code>, с фильтром - по
+     * битовой выборке индексов начиная с <code>afterId + 1</code>. Копируются только задачи страницы.
+     */
+    @Override
+    public List<Task> findTasks(TaskFilter filter, int afterId, int limit) {
+        long started = PAGE.start();
+        try {
+            if (filter.isEmpty()) {
+                TaskTable current = snapshot;
+                List<Task> result = new ArrayList<>(Math.min(limit, current.size()));
+                for (int id = current.higher(afterId); id >= 0 && result.size() < limit; id = current.higher(id)) {
+                    result.add(current.get(id));
                 }
+                return result;
+            }
 
+            BitSet ids;
+            TaskTable current;
+            synchronized (index) {
+                ensureIndex();
+                ids = index.select(filter);
+                current = snapshot;
             }
+            List<Task> result = new ArrayList<>(Math.min(limit, current.size()));
+            for (int id = ids.nextSetBit(afterId + 1); id >= 0 && result.size() < limit; id = ids.nextSetBit(id + 1)) {
+                result.add(current.get(id));
+            }
+            return result;
+        } finally {
+            PAGE.stop(started);
         }
+    }
 
-        saveDocument(document);
-        return true;
+    @Override
+    public List<Task> nextTasks(int count, TaskScore score) {
+        long started = NEXT.start();
+        try {
+            int[] ids;
+            TaskTable current;
+            synchronized (index) {
+                ensureIndex();
+                ids = index.next(count, score);
+                current = snapshot;
+            }
 
+            List<Task> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                result.add(current.get(id));
+            }
+            return result;
+        } finally {
+            NEXT.stop(started);
+        }
     }
 
-    public Task findTaskById(int id) {
-        sortXMLById();
-        Document document = loadDocument();
-
-        NodeList taskList = document.getElementsByTagName("Task");
-
-        for (int i = 0; i < taskList.getLength(); i++) {
-            Element taskElement = (Element) taskList.item(i);
-            Integer taskId = Integer.parseInt(taskElement.getAttribute("id"));
-
-            if (taskId.equals(id)) {
-                Task task = new Task(
-                        Integer.parseInt(taskElement.getAttribute("id")),
-                        taskElement.getAttribute("caption"),
-                        taskElement.getElementsByTagName("Description").item(0).getTextContent(),
-                        Integer.parseInt(taskElement.getElementsByTagName("Priority").item(0).getTextContent()),
-                        LocalDate.parse(taskElement.getElementsByTagName("Deadline").item(0).getTextContent()),
-                        StatusOfTask.valueOf(taskElement.getElementsByTagName("Status").item(0).getTextContent().
-                                toUpperCase())
-                );
-
-                try {
-                    task.setCompletionDate(LocalDate.parse(taskElement.getElementsByTagName("Complete").item(0).getTextContent()));
-                    return task;
-                } catch (NullPointerException e){
-                    return task;
-                }
+    @Override
+    public List<Task> searchTasks(String query, int limit) {
+        long started = SEARCH.start();
+        try {
+            loadSearchIndex();
+            int[] ids;
+            TaskTable current;
+            synchronized (index) {
+                ids = searchIndex.search(query, limit);
+                current = snapshot;
+            }
 
+            List<Task> result = new ArrayList<>(ids.length);
+            for (int id : ids) {
+                result.add(current.get(id));
             }
+            return result;
+        } finally {
+            SEARCH.stop(started);
         }
-
-        return null;
     }
 
-    public List<Task> viewTasksByStatus(List<Task> tasks, StatusOfTask statusFilter) {
-        return tasks.stream()
-                .filter(task -> task.getStatusOfTask() == statusFilter)
-                .toList();
+    @Override
+    public boolean deleteTask(int id) {
+        long started = DELETE.start();
+        writeLock.lock();
+        try {
+            Task removed = tasks.get(id);
+            if (removed == null) {
+                return false;
+            }
+            tasks.remove(id);
+            publish(removed, null);
+
+            if (journal != null) {
+                journal.delete(id);
+            }
+            markDirty();
+            return true;
+        } finally {
+            writeLock.unlock();
+            DELETE.stop(started);
+        }
     }
 
-    public List<Task> getTasks() {
-        sortXMLById();
-        Document document = loadDocument();
+    @Override
+    public boolean markAsCompleted(int id) {
+        long started = COMPLETE.start();
+        writeLock.lock();
+        try {
+            Task before = tasks.get(id);
 
-        List<Task> tasks = new ArrayList<>();
+            if (before == null || before.getCompletionDate() != null) {
+                return false;
+            }
 
-        NodeList nodeList = document.getElementsByTagName("Task");
+            Task task = new Task(before);
+            task.setStatusOfTask(StatusOfTask.DONE);
+            task.setCompletionDate(LocalDate.now());
+
+            tasks.put(task);
+            publish(before, task);
+            log(task);
+            markDirty();
+            return true;
+        } finally {
+            writeLock.unlock();
+            COMPLETE.stop(started);
+        }
+    }
 
-        for (int i = 1; i < nodeList.getLength() + 1; i++) {
-            if (findTaskById(i) != null) {
-                tasks.add(findTaskById(i));
+    @Override
+    public TaskEventStream events() {
+        return events;
+    }
+
+    /**
+     * @return количество задач
+     */
+    int size() {
+        return snapshot.size();
+    }
 
-            } else {
-                for (int j = i + 1; j < nodeList.getLength()+10; j++) {
-                    if (findTaskById(j) != null) {
-                        tasks.add(findTaskById(j));
+    /**
+     * @return следующий <code>id</code>, который выдаст <code>createTask()</code>
+     */
+    int getNextId() {
+        writeLock.lock();
+        try {
+            return nextId;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Синхронно записывает накопленные изменения в XML файл потоковой записью во временный файл с атомарной заменой.
+     * Если изменений с момента последней записи не было, файл не трогается.
+     */
+    @Override
+    public void flush() {
+        synchronized (flushLock) {
+            TaskTable written;
+            int snapshotNextId;
+            long firstLiveSegment = 0;
+            // блокировка исключает правки между снимком и ротацией журнала
+            writeLock.lock();
+            try {
+                synchronized (this) {
+                    if (!dirty) {
+                        return;
                     }
-                    i = j;
+                    dirty = false;
+                }
+                written = snapshot;
+                snapshotNextId = nextId;
+                if (journal != null) {
+                    firstLiveSegment = journal.rotate();
                 }
+            } finally {
+                writeLock.unlock();
             }
-        }
 
+            long started = FLUSH.start();
+            try {
+                cacheFresh = false;
+                store.writeAll(written, snapshotNextId);
+                if (journal != null) {
+                    journal.deleteSegmentsBefore(firstLiveSegment);
+                }
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    dirty = true;
+                }
+                throw e;
+            } finally {
+                FLUSH.stop(started);
+            }
+        }
+    }
 
+    /**
+     * На время пакета отложенная запись не планируется, а <code>fsync</code> журнала откладывается.
+     * По завершении внешнего пакета изменения записываются одним <code>flush()</code>.
+     */
+    @Override
+    public void runBatch(Runnable batch) {
+        synchronized (this) {
+            if (batchDepth++ == 0 && journal != null) {
+                journal.setSyncDeferred(true);
+            }
+        }
 
-        return tasks;
+        try {
+            batch.run();
+        } finally {
+            boolean outermost;
+            synchronized (this) {
+                outermost = --batchDepth == 0;
+                if (outermost && journal != null) {
+                    journal.setSyncDeferred(false);
+                }
+            }
+            if (outermost) {
+                flush();
+            }
+        }
     }
 
-    private void sortXMLById(){
-        Document document = loadDocument();
-
-        NodeList nodeList = document.getElementsByTagName("Task");
-        List<Element> taskList = new ArrayList<>();
+    /**
+     * Останавливает фоновую запись и сбрасывает оставшиеся изменения на диск.
+     * После закрытия репозиторий не принимает новых изменений.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
 
-        for (int i = 0; i < nodeList.getLength(); i++) {
-            taskList.add((Element) nodeList.item(i));
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
-        taskList.sort(Comparator.comparingInt(e -> Integer.parseInt(e.getAttribute("id"))));
+        flush();
+        saveCache();
+        synchronized (index) {
+            if (searchIndex != null && searchIndex.isModified()) {
+                searchIndex.save(searchIndexFile);
+            }
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        if (ownsEvents) {
+            events.close();
+        }
+        processLock.close();
 
-        Element newRoot = document.createElement(document.getDocumentElement().getNodeName());
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // JVM уже завершается, хук отработает сам
+        }
+    }
 
-        for (Element task : taskList) {
-            Node importedNode = document.importNode(task, true);
-            newRoot.appendChild(importedNode);
+    // Помечает данные как измененные и планирует отложенную запись, если она еще не запланирована
+    private synchronized void markDirty() {
+        if (closed) {
+            throw new IllegalStateException("Репозиторий задач закрыт");
         }
 
-        Node oldRoot = document.getDocumentElement();
-        document.replaceChild(newRoot, oldRoot);
+        dirty = true;
+        if (batchDepth > 0) {
+            return;
+        }
 
-        saveDocument(document);
+        long delay = flushDelay();
+        if (!flushScheduled || delay < pendingFlushDelay) {
+            if (pendingFlush != null) {
+                pendingFlush.cancel(false);
+            }
+            flushScheduled = true;
+            pendingFlushDelay = delay;
+            pendingFlush = flushExecutor.schedule(() -> {
+                synchronized (this) {
+                    flushScheduled = false;
+                }
+                flush();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
     }
 
-    public boolean deleteTask(int id) {
-        Document document = loadDocument();
+    // Без журнала запись откладывается ненадолго, с журналом XML - редкая контрольная точка
+    private long flushDelay() {
+        if (journal == null) {
+            return FLUSH_DELAY_MS;
+        }
+        return journal.size() > CHECKPOINT_JOURNAL_BYTES ? 0 : CHECKPOINT_DELAY_MS;
+    }
 
-        Element root = document.getDocumentElement();
-        NodeList taskList = document.getElementsByTagName("Task");
+    // Индексы строятся по опубликованному снимку при первой выборке; вызывается под монитором index
+    private void ensureIndex() {
+        if (!indexBuilt) {
+            snapshot.forEachWithoutText(index::add);
+            indexBuilt = true;
+        }
+    }
 
-        boolean isTaskFound = false;
+    // Обновляет индексы и публикует снимок одним шагом под монитором index, который держат и читатели выборок.
+    // Событие для подписчиков публикуется после снимка, чтобы подписчик, получивший событие, уже видел изменение
+    private void publish(Task before, Task after) {
+        synchronized (index) {
+            snapshot = tasks.copy();
+            if (indexBuilt && before != null) {
+                index.remove(before);
+            }
+            if (indexBuilt && after != null) {
+                index.add(after);
+            }
 
-        for (int i = 0; i < taskList.getLength(); i++) {
-            Element task = (Element) taskList.item(i);
-            int taskId = Integer.parseInt(task.getAttribute("id"));
-            if (taskId == id) {
-                root.removeChild(task);
-                isTaskFound = true;
-                break;
+            if (searchIndex != null) {
+                if (before == null) {
+                    searchIndex.add(after);
+                } else if (after == null) {
+                    searchIndex.remove(before);
+                } else {
+                    searchIndex.update(before, after);
+                }
             }
         }
-
-        saveDocument(document);
-        return isTaskFound;
+        events.publish(before, after);
     }
 
-    public boolean markAsCompleted(int id) {
-        Document document = loadDocument();
-
-        boolean taskFound = false;
+    /**
+     * Загружает поисковый индекс из файла и догоняет его до текущих задач. Выполняется под <code>writeLock</code>,
+     * чтобы между сверкой и подключением индекса к <code>publish()</code> не прошло ни одной правки.
+     */
+    private void loadSearchIndex() {
+        synchronized (index) {
+            if (searchIndex != null) {
+                return;
+            }
+        }
 
-        NodeList taskList = document.getElementsByTagName("Task");
+        writeLock.lock();
+        try {
+            synchronized (index) {
+                if (searchIndex != null) {
+                    return;
+                }
+            }
+            TaskSearchIndex loaded = TaskSearchIndex.load(searchIndexFile);
+            loaded.reconcile(tasks);
+            if (loaded.isModified()) {
+                loaded.save(searchIndexFile);
+            }
+            synchronized (index) {
+                searchIndex = loaded;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
 
-        for (int i = 0; i < taskList.getLength(); i++) {
-            Element taskElement = (Element) taskList.item(i);
-            if (taskElement.getAttribute("id").equals(Integer.toString(id))) {
-                NodeList completeList = taskElement.getElementsByTagName("Complete");
-                if (completeList.getLength() <= 0) {
+    private void log(Task task) {
+        if (journal != null) {
+            journal.put(task);
+        }
+    }
 
-                    taskElement.getElementsByTagName("Status").item(0).setTextContent(
-                            String.valueOf(StatusOfTask.DONE).toLowerCase());
+    /**
+     * Читает все задачи из XML файла за один потоковый проход <code>StaxTaskStore</code> без записи в файл.
+     * Сортировка по <code>id</code> выполняется только если порядок в файле нарушен.
+     *
+     * @return список задач, упорядоченный по <code>id</code>
+     */
+    public List<Task> readTasks() {
+        List<Task> result = store.readAll();
+
+        for (int i = 1; i < result.size(); i++) {
+            if (result.get(i - 1).getId() >= result.get(i).getId()) {
+                result.sort(Comparator.comparingInt(Task::getId));
+                break;
+            }
+        }
+        return result;
+    }
 
-                    Element taskComplete = document.createElement("Complete");
-                    taskComplete.appendChild(document.createTextNode(LocalDate.now().toString()));
-                    taskElement.appendChild(taskComplete);
+    // Однократная загрузка при старте репозитория: из свежего снимка или разбором файла
+    private TaskTable loadTasks() {
+        long started = LOAD.start();
+        try {
+            TaskSnapshotCache.Snapshot cached = cache.load();
+            if (cached != null) {
+                cacheFresh = true;
+                nextId = cached.nextId();
+                return cached.tasks();
+            }
 
-                    document.getDocumentElement().appendChild(taskElement);
+            TaskTable loaded = new TaskTable();
+            store.forEach(loaded::put);
+            nextId = Math.max(store.readNextId(), loaded.lastId() + 1);
+            return loaded;
+        } finally {
+            LOAD.stop(started);
+        }
+    }
 
-                    taskFound = true;
+    /**
+     * Сохраняет снимок для следующего запуска, если XML изменился с момента загрузки или снимка еще нет.
+     * Вызывается после финальной записи в <code>close()</code>, когда файл совпадает с опубликованным снимком.
+     * Ошибка записи снимка не мешает закрытию: при следующем запуске XML просто будет разобран заново.
+     */
+    private void saveCache() {
+        synchronized (flushLock) {
+            if (cacheFresh) {
+                return;
+            }
+            TaskTable written;
+            int writtenNextId;
+            writeLock.lock();
+            try {
+                synchronized (this) {
+                    if (dirty) {
+                        return;
+                    }
                 }
-                break;
+                written = snapshot;
+                writtenNextId = nextId;
+            } finally {
+                writeLock.unlock();
+            }
+
+            try {
+                cache.save(written, writtenNextId);
+                cacheFresh = true;
+            } catch (RuntimeException e) {
+                // закрытие продолжается: при следующем запуске XML будет разобран заново
+                System.err.println(e.getMessage() + ". Снимок будет построен заново при следующем запуске");
             }
         }
+    }
 
-        saveDocument(document);
-        return taskFound;
+    // Фабрики DOM создаются при первом обращении к loadDocument() или saveDocument(), а не при загрузке класса;
+    // DocumentBuilder и Transformer не потокобезопасны, поэтому переиспользуются по экземпляру на поток
+    private static final class Dom {
+        private static final DocumentBuilderFactory BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+        private static final TransformerFactory TRANSFORMER_FACTORY = TransformerFactory.newInstance();
+
+        private static final ThreadLocal<DocumentBuilder> BUILDER = ThreadLocal.withInitial(() -> {
+            try {
+                return BUILDER_FACTORY.newDocumentBuilder();
+            } catch (Exception e) {
+                throw new RuntimeException("Ошибка при загрузке XML документа: " + e.getMessage(), e);
+            }
+        });
+        private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(() -> {
+            try {
+                return TRANSFORMER_FACTORY.newTransformer();
+            } catch (Exception e) {
+                throw new RuntimeException("Ошибка при сохранении XML документа: " + e.getMessage(), e);
+            }
+        });
     }
 }
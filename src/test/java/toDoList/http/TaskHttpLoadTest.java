@@ -0,0 +1,154 @@
+package test.java.toDoList.http;
+
+import main.java.toDoList.http.TaskHttpServer;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.XMLTaskRepository;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Нагрузочный клиент для <code>TaskHttpServer</code>.
+ * Поднимает сервер на временном XML файле (или использует уже запущенный по <code>--url</code>), в течение
+ * <code>--duration</code> секунд отправляет запросы из <code>--concurrency</code> потоков с долей записи
+ * <code>--write-ratio</code> и выводит пропускную способность и задержки p50/p99.
+ * <p>Запуск: <code>java test.java.toDoList.http.TaskHttpLoadTest --concurrency 64 --duration 10 --write-ratio 0.2</code>
+ */
+public class TaskHttpLoadTest {
+
+    private static final int PRELOADED_TASKS = 1_000;
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.parseInt(option(args, "--concurrency", "32"));
+        int durationSeconds = Integer.parseInt(option(args, "--duration", "10"));
+        double writeRatio = Double.parseDouble(option(args, "--write-ratio", "0.1"));
+        String url = option(args, "--url", null);
+
+        Path directory = null;
+        XMLTaskRepository repository = null;
+        TaskHttpServer server = null;
+        if (url == null) {
+            directory = Files.createTempDirectory("toDoList-http-");
+            Path file = directory.resolve("toDoList.xml");
+            Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList/>");
+            repository = new XMLTaskRepository(file.toFile());
+            server = new TaskHttpServer(new TaskService(repository), 0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        try {
+            HttpClient client = HttpClient.newBuilder().build();
+            if (server != null) {
+                for (int i = 0; i < PRELOADED_TASKS; i++) {
+                    send(client, create(url, i));
+                }
+            }
+            run(client, url, concurrency, durationSeconds, writeRatio);
+        } finally {
+            if (server != null) {
+                server.close();
+                repository.close();
+                deleteDirectory(directory);
+            }
+        }
+    }
+
+    private static void run(HttpClient client, String url, int concurrency, int durationSeconds, double writeRatio)
+            throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        List<Future<long[]>> results = new ArrayList<>();
+
+        for (int worker = 0; worker < concurrency; worker++) {
+            results.add(workers.submit(() -> {
+                long[] latencies = new long[1024];
+                int count = 0;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    HttpRequest request = random.nextDouble() < writeRatio
+                            ? create(url, random.nextInt())
+                            : HttpRequest.newBuilder(URI.create(url + "/tasks/" + (1 + random.nextInt(PRELOADED_TASKS))))
+                                    .GET().build();
+                    long start = System.nanoTime();
+                    send(client, request);
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - start;
+                }
+                return Arrays.copyOf(latencies, count);
+            }));
+        }
+
+        long[] all = new long[0];
+        for (Future<long[]> result : results) {
+            long[] latencies = result.get();
+            int offset = all.length;
+            all = Arrays.copyOf(all, offset + latencies.length);
+            System.arraycopy(latencies, 0, all, offset, latencies.length);
+        }
+        workers.shutdown();
+        Arrays.sort(all);
+
+        System.out.printf("Запросов: %d, потоков: %d, доля записи: %.2f%n", all.length, concurrency, writeRatio);
+        System.out.printf("Пропускная способность: %.0f запросов/с%n", (double) all.length / durationSeconds);
+        System.out.printf("p50: %.2f мс, p99: %.2f мс%n", percentile(all, 0.50) / 1e6, percentile(all, 0.99) / 1e6);
+    }
+
+    private static HttpRequest create(String url, int seed) {
+        String body = "{\"caption\":\"Задача " + seed + "\",\"description\":\"Описание\",\"priority\":"
+                + Math.floorMod(seed, 11) + ",\"deadline\":\"2030-01-01\"}";
+        return HttpRequest.newBuilder(URI.create(url + "/tasks"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() >= 400) {
+            throw new IllegalStateException("Ответ " + response.statusCode() + " на " + request.uri());
+        }
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * quantile))];
+    }
+
+    // Каталог удаляется вместе с файлом задач и его спутниками: блокировкой, снимком, журналом
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private static String option(String[] args, String name, String defaultValue) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals(name)) {
+                return args[i + 1];
+            }
+        }
+        return defaultValue;
+    }
+}
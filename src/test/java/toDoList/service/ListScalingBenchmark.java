@@ -0,0 +1,95 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.console.TaskConsolePresenter;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.XMLTaskRepository;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.Scanner;
+import java.util.stream.Stream;
+
+/**
+ * Регрессионный бенчмарк команды <code>list</code>.
+ * Генерирует XML файлы на 1k, 10k и 100k задач, замеряет загрузку репозитория и вывод списка и проверяет, что
+ * время на одну задачу растет не более чем в <code>MAX_PER_TASK_GROWTH</code> раз, т.е. масштабирование линейное.
+ * <p>Запуск: <code>java test.java.toDoList.service.ListScalingBenchmark</code>
+ */
+public class ListScalingBenchmark {
+
+    private static final int[] SIZES = {1_000, 10_000, 100_000};
+    private static final int RUNS = 5;
+    private static final double MAX_PER_TASK_GROWTH = 3.0;
+
+    public static void main(String[] args) throws IOException {
+        double[] nanosPerTask = new double[SIZES.length];
+
+        for (int i = 0; i < SIZES.length; i++) {
+            Path directory = Files.createTempDirectory("toDoList-bench-");
+            try {
+                Path file = generateFile(directory.resolve("toDoList.xml"), SIZES[i]);
+                // Первый прогон прогревает JIT и не учитывается
+                measure(file);
+                long best = Long.MAX_VALUE;
+                for (int run = 0; run < RUNS; run++) {
+                    best = Math.min(best, measure(file));
+                }
+                nanosPerTask[i] = (double) best / SIZES[i];
+                System.out.printf("%8d задач: %8.2f мс, %8.1f нс на задачу%n", SIZES[i], best / 1e6, nanosPerTask[i]);
+            } finally {
+                deleteDirectory(directory);
+            }
+        }
+
+        double growth = nanosPerTask[nanosPerTask.length - 1] / nanosPerTask[0];
+        System.out.printf("Рост времени на задачу %dk -> %dk: %.2fx%n",
+                SIZES[0] / 1000, SIZES[SIZES.length - 1] / 1000, growth);
+        if (growth > MAX_PER_TASK_GROWTH) {
+            System.out.println("Ошибка: list масштабируется хуже линейного");
+            System.exit(1);
+        }
+    }
+
+    private static long measure(Path file) {
+        TaskConsolePresenter presenter = new TaskConsolePresenter(OutputStream.nullOutputStream(), new Scanner(""));
+        long start = System.nanoTime();
+        XMLTaskRepository repository = new XMLTaskRepository(file.toFile());
+        presenter.showResult(new TaskService(repository).listTask("list", presenter::showTask));
+        presenter.flush();
+        long elapsed = System.nanoTime() - start;
+        repository.close();
+        return elapsed;
+    }
+
+    private static Path generateFile(Path file, int size) throws IOException {
+        LocalDate deadline = LocalDate.parse("2024-10-20");
+
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList>");
+            for (int id = 1; id <= size; id++) {
+                writer.write("<Task caption=\"Задача" + id + "\" id=\"" + id + "\">"
+                        + "<Description>Описание задачи " + id + "</Description>"
+                        + "<Priority>" + id % 11 + "</Priority>"
+                        + "<Deadline>" + deadline.plusDays(id % 365) + "</Deadline>"
+                        + "<Status>new</Status></Task>");
+            }
+            writer.write("</toDoList>");
+        }
+        return file;
+    }
+
+    // Каталог удаляется вместе с файлом задач и его спутниками: блокировкой, снимком, журналом
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
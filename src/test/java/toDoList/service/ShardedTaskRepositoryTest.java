@@ -0,0 +1,115 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.ShardedTaskRepository;
+import main.java.toDoList.service.TaskEvent;
+import main.java.toDoList.service.TaskFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class ShardedTaskRepositoryTest {
+
+    private static final int SHARD_SIZE = 8;
+
+    @TempDir
+    Path directory;
+    private File shards;
+
+    @BeforeEach
+    public void setUp() {
+        shards = directory.resolve("shards").toFile();
+    }
+
+    @Test
+    public void testCreatedTasks_RollOverIntoNewShardsAndReadInIdOrder() {
+        ShardedTaskRepository repository = new ShardedTaskRepository(shards, SHARD_SIZE, null);
+        createTasks(repository, 20);
+
+        assertEquals(3, repository.getShardCount());
+        assertEquals(IntStream.rangeClosed(1, 20).boxed().toList(), ids(repository.getTasks()));
+
+        // страницы по курсору проходят через границы сегментов
+        List<Integer> paged = new ArrayList<>();
+        int cursor = 0;
+        for (List<Task> page = repository.findTasks(TaskFilter.all(), cursor, 7); !page.isEmpty();
+                page = repository.findTasks(TaskFilter.all(), cursor, 7)) {
+            paged.addAll(ids(page));
+            cursor = page.get(page.size() - 1).getId();
+        }
+        assertEquals(ids(repository.getTasks()), paged);
+
+        assertTrue(repository.editTask(12, "Правка", "", 0, null, StatusOfTask.IN_PROGRESS));
+        assertEquals("Правка", repository.findTaskById(12).getCaption());
+        assertTrue(repository.markAsCompleted(19));
+        assertEquals(StatusOfTask.DONE, repository.findTaskById(19).getStatusOfTask());
+        assertTrue(repository.deleteTask(3));
+        assertNull(repository.findTaskById(3));
+        assertFalse(repository.deleteTask(3));
+        repository.close();
+
+        ShardedTaskRepository reopened = new ShardedTaskRepository(shards, SHARD_SIZE, null);
+        assertEquals(3, reopened.getShardCount());
+        assertEquals(19, reopened.getTasks().size());
+        assertEquals("Правка", reopened.findTaskById(12).getCaption());
+        assertEquals(21, reopened.createTask(new Task("Новая", "", 5, DEADLINE)).getId());
+        reopened.close();
+    }
+
+    @Test
+    public void testImportsAndDeletes_SplitAndMergeShardsWithoutEvents() throws InterruptedException {
+        ShardedTaskRepository repository = new ShardedTaskRepository(shards, SHARD_SIZE, null);
+        BlockingQueue<TaskEvent> events = new LinkedBlockingQueue<>();
+        repository.events().subscribe("test", events::add);
+        createTasks(repository, 20);
+        assertEquals(3, repository.getShardCount());
+
+        // удаления почти опустошают средний сегмент, и он сливается с последним
+        for (int id = 10; id < 18; id++) {
+            assertTrue(repository.deleteTask(id));
+        }
+        assertEquals(2, repository.getShardCount());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 18, 19, 20), ids(repository.getTasks()));
+
+        // импорт в переполненный первый сегмент делит его пополам по id
+        assertTrue(repository.deleteTask(1));
+        repository.importTask(new Task(1, "Импорт", "", 5, DEADLINE, StatusOfTask.NEW));
+        assertEquals(3, repository.getShardCount());
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 18, 19, 20), ids(repository.getTasks()));
+        assertEquals("Импорт", repository.findTaskById(1).getCaption());
+        assertEquals(21, repository.createTask(new Task("Новая", "", 5, DEADLINE)).getId());
+        repository.close();
+
+        // переносы задач между сегментами событий не порождают
+        List<TaskEvent> published = new ArrayList<>(events);
+        assertEquals(22, published.stream().filter(event -> event instanceof TaskEvent.Created).count());
+        assertEquals(9, published.stream().filter(event -> event instanceof TaskEvent.Deleted).count());
+        assertEquals(31, published.size());
+
+        ShardedTaskRepository reopened = new ShardedTaskRepository(shards, SHARD_SIZE, null);
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 18, 19, 20, 21), ids(reopened.getTasks()));
+        reopened.close();
+    }
+
+    private static void createTasks(ShardedTaskRepository repository, int count) {
+        for (int i = 0; i < count; i++) {
+            repository.createTask(new Task("Задача " + i, "", 5, DEADLINE));
+        }
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.CommandResult;
+import main.java.toDoList.service.TaskArchive;
+import main.java.toDoList.service.TaskFilter;
+import main.java.toDoList.service.TaskScore;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class TaskArchiveTest {
+
+    @TempDir
+    Path directory;
+    private File file;
+    private File archiveFile;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = TaskFixtures.emptyTaskList(directory.resolve("toDoList.xml"));
+        archiveFile = directory.resolve("toDoList.archive").toFile();
+    }
+
+    @Test
+    public void testArchiveCommand_MovesOldDoneTasksAndListsThemWithArchive() {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        TaskArchive archive = new TaskArchive(archiveFile);
+        TaskService service = new TaskService(repository, TaskScore.DEFAULT, archive);
+
+        repository.importTask(done(1, LocalDate.now().minusDays(100)));
+        repository.createTask(new Task("Активная", "", 5, DEADLINE));
+        repository.importTask(done(3, LocalDate.now().minusDays(5)));
+        repository.importTask(done(4, LocalDate.now().minusDays(40)));
+
+        CommandResult.Archived archived = (CommandResult.Archived) service.archiveTasks("archive --older-than 30");
+        assertEquals(2, archived.moved());
+        assertEquals(2, archived.archive().tasks());
+        assertEquals(LocalDate.now().minusDays(100), archived.archive().firstCompleted());
+        assertEquals(List.of(2, 3), ids(repository.getTasks()));
+        assertEquals(4, archive.findTaskById(4).getId());
+        assertNull(archive.findTaskById(2));
+
+        List<Task> listed = new ArrayList<>();
+        service.listTask("list -s done --include-archive", listed::add);
+        assertEquals(List.of(1, 3, 4), ids(listed));
+        assertEquals(LocalDate.now().minusDays(100), listed.get(0).getCompletionDate());
+        listed.clear();
+        service.listTask("list -s done", listed::add);
+        assertEquals(List.of(3), ids(listed));
+        listed.clear();
+        CommandResult.Listed page =
+                (CommandResult.Listed) service.listTask("list --include-archive --limit 2", listed::add);
+        assertEquals(List.of(1, 2), ids(listed));
+        assertEquals(Integer.valueOf(2), page.nextAfterId());
+
+        // повторный перенос ничего не находит
+        assertEquals(0, ((CommandResult.Archived) service.archiveTasks("archive --older-than 30")).moved());
+        assertTrue(service.archiveTasks("archive --older-than -1") instanceof CommandResult.Invalid);
+        archive.close();
+        repository.close();
+    }
+
+    @Test
+    public void testArchive_MergesOverlappingBlocksAndRecoversTornAppend() throws IOException {
+        TaskArchive archive = new TaskArchive(archiveFile);
+        int count = TaskArchive.BLOCK_SIZE + 100;
+        archive.append(IntStream.rangeClosed(1, count).filter(id -> id % 2 == 0)
+                .mapToObj(id -> done(id, DEADLINE)).toList());
+        archive.append(IntStream.rangeClosed(1, count).filter(id -> id % 2 == 1)
+                .mapToObj(id -> done(id, DEADLINE.minusDays(id % 7))).toList());
+        // задача, попавшая в архив дважды после сбоя, выдается один раз
+        archive.append(List.of(done(10, DEADLINE)));
+
+        assertEquals(IntStream.rangeClosed(1, count).boxed().toList(), stream(archive, 0));
+        assertEquals(IntStream.rangeClosed(count - 5, count).boxed().toList(), stream(archive, count - 6));
+        assertEquals(count + 1, archive.summary().tasks());
+        archive.close();
+
+        // блок без записи индекса и неполная запись индекса отрезаются при открытии
+        Files.write(archiveFile.toPath(), new byte[100], StandardOpenOption.APPEND);
+        Files.write(Path.of(archiveFile.getPath() + ".index"), new byte[7], StandardOpenOption.APPEND);
+        TaskArchive reopened = new TaskArchive(archiveFile);
+        assertEquals(count + 1, reopened.summary().tasks());
+        assertEquals(DEADLINE.minusDays(6), reopened.summary().firstCompleted());
+        reopened.append(List.of(done(count + 1, DEADLINE)));
+        assertEquals(count + 1, stream(reopened, 0).size());
+        assertEquals("Задача " + (count + 1), reopened.findTaskById(count + 1).getCaption());
+        reopened.close();
+    }
+
+    @Test
+    public void testArchive_IsOpenedOnlyByArchiveCommands() {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        List<TaskArchive> opened = new ArrayList<>();
+        TaskService service = new TaskService(repository, TaskScore.DEFAULT, () -> {
+            opened.add(new TaskArchive(archiveFile));
+            return opened.get(opened.size() - 1);
+        });
+
+        repository.importTask(done(1, LocalDate.now().minusDays(100)));
+        service.listTask("list", task -> { });
+        assertTrue(opened.isEmpty());
+        assertFalse(archiveFile.exists());
+
+        assertEquals(1, ((CommandResult.Archived) service.archiveTasks("archive --older-than 30")).moved());
+        List<Task> listed = new ArrayList<>();
+        service.listTask("list --include-archive", listed::add);
+        assertEquals(List.of(1), ids(listed));
+        assertEquals(1, opened.size());
+        opened.get(0).close();
+        repository.close();
+    }
+
+    private static Task done(int id, LocalDate completionDate) {
+        Task task = new Task(id, "Задача " + id, "Описание", 5, DEADLINE, StatusOfTask.DONE);
+        task.setCompletionDate(completionDate);
+        return task;
+    }
+
+    private static List<Integer> stream(TaskArchive archive, int afterId) {
+        try (Stream<Task> tasks = archive.streamTasks(TaskFilter.all(), afterId)) {
+            return tasks.map(Task::getId).toList();
+        }
+    }
+
+    private static List<Integer> ids(List<Task> tasks) {
+        return tasks.stream().map(Task::getId).toList();
+    }
+}
@@ -0,0 +1,100 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskEvent;
+import main.java.toDoList.service.TaskEventStream;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class TaskEventStreamTest {
+
+    @TempDir
+    Path directory;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = TaskFixtures.emptyTaskList(directory.resolve("toDoList.xml"));
+    }
+
+    @Test
+    public void testMutations_PublishTypedEvents() throws InterruptedException {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        BlockingQueue<TaskEvent> events = new LinkedBlockingQueue<>();
+        repository.events().subscribe("test", events::add);
+
+        int id = repository.createTask(new Task("Купить хлеб", "", 5, DEADLINE)).getId();
+        repository.editTask(id, "Купить молоко", "", 7, null, null);
+        // правка без изменений событий не порождает
+        repository.editTask(id, "", "", 0, null, StatusOfTask.NEW);
+        repository.markAsCompleted(id);
+        repository.deleteTask(id);
+
+        TaskEvent.Created created = (TaskEvent.Created) events.poll(5, TimeUnit.SECONDS);
+        assertEquals("Купить хлеб", created.task().getCaption());
+        TaskEvent.Updated updated = (TaskEvent.Updated) events.poll(5, TimeUnit.SECONDS);
+        assertEquals(Set.of(TaskEvent.Field.CAPTION, TaskEvent.Field.PRIORITY), updated.changed());
+        assertEquals("Купить молоко", updated.task().getCaption());
+        TaskEvent.Completed completed = (TaskEvent.Completed) events.poll(5, TimeUnit.SECONDS);
+        assertEquals(LocalDate.now(), completed.completionDate());
+        assertEquals(new TaskEvent.Deleted(id), events.poll(5, TimeUnit.SECONDS));
+        repository.close();
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testSlowSubscriber_LosesOldestEventsWithoutBlockingWriter() throws InterruptedException {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicLong delivered = new AtomicLong();
+        AtomicLong lost = new AtomicLong();
+        AtomicLong lastId = new AtomicLong();
+        repository.events().subscribe("slow", new TaskEventStream.Listener() {
+            @Override
+            public void onEvent(TaskEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delivered.incrementAndGet();
+                lastId.set(event.id());
+            }
+
+            @Override
+            public void onLost(long count) {
+                lost.addAndGet(count);
+            }
+        });
+
+        // подписчик стоит на первом событии, а писатель продолжает без ожидания
+        int count = TaskEventStream.DEFAULT_CAPACITY * 2;
+        List<Task> tasks = Stream.generate(() -> new Task("Задача", "", 5, DEADLINE)).limit(count).toList();
+        repository.createTasks(tasks);
+        release.countDown();
+        repository.close();
+
+        assertTrue(lost.get() > 0);
+        assertEquals(count, delivered.get() + lost.get());
+        assertEquals(tasks.get(count - 1).getId(), lastId.get());
+    }
+}
@@ -0,0 +1,29 @@
+package test.java.toDoList.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+/**
+ * Общие данные тестов хранилищ: срок по умолчанию для создаваемых задач и пустой файл списка задач.
+ */
+final class TaskFixtures {
+
+    static final LocalDate DEADLINE = LocalDate.parse("2024-10-20");
+
+    private TaskFixtures() {
+    }
+
+    /**
+     * Записывает файл списка задач с пустым корнем <code>toDoList</code>.
+     *
+     * @param file путь к файлу во временном каталоге теста
+     * @return записанный файл
+     */
+    static File emptyTaskList(Path file) throws IOException {
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList></toDoList>");
+        return file.toFile();
+    }
+}
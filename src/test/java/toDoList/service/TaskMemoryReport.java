@@ -0,0 +1,76 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskTable;
+
+import java.time.LocalDate;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Отчет о памяти, занимаемой задачами в репозитории.
+ * Строит 1M задач в прежнем представлении (<code>ConcurrentSkipListMap</code> объектов <code>Task</code>) и в
+ * колоночной <code>TaskTable</code> и печатает занятую кучу в байтах на задачу после сборки мусора.
+ * <p>Запуск: <code>java -Xmx2g test.java.toDoList.service.TaskMemoryReport [количество]</code>
+ */
+public class TaskMemoryReport {
+
+    private static final int DEFAULT_COUNT = 1_000_000;
+    private static final String[] DESCRIPTIONS = {
+            "", "Позвонить заказчику", "Подготовить отчет", "Проверить почту", "Обновить документацию"
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+        LocalDate today = LocalDate.now();
+
+        long baseline = usedHeap();
+        NavigableMap<Integer, Task> map = new ConcurrentSkipListMap<>();
+        for (int id = 0; id < count; id++) {
+            Task task = generate(id, today);
+            map.put(id, task);
+        }
+        long mapBytes = usedHeap() - baseline;
+        int mapSize = map.size();
+        map = null;
+
+        baseline = usedHeap();
+        TaskTable table = new TaskTable();
+        for (int id = 0; id < count; id++) {
+            table.put(generate(id, today));
+        }
+        long tableBytes = usedHeap() - baseline;
+
+        System.out.printf("Задач: %d%n", count);
+        System.out.printf("ConcurrentSkipListMap<Integer, Task>: %,d байт, %.1f байт на задачу%n",
+                mapBytes, (double) mapBytes / mapSize);
+        System.out.printf("TaskTable:                            %,d байт, %.1f байт на задачу%n",
+                tableBytes, (double) tableBytes / table.size());
+    }
+
+    // Уникальный заголовок, описание из небольшого набора, как в реальных списках дел
+    private static Task generate(int id, LocalDate today) {
+        Task task = new Task(
+                id,
+                "Задача " + id,
+                DESCRIPTIONS[id % DESCRIPTIONS.length],
+                id % 10 + 1,
+                today.plusDays(id % 365),
+                StatusOfTask.values()[id % StatusOfTask.values().length]);
+        if (task.getStatusOfTask() == StatusOfTask.DONE) {
+            task.setCompletionDate(today);
+        }
+        return task;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,52 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.service.TaskMetrics;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskMetricsTest {
+
+    @Test
+    public void testPercentile_WithinBucketPrecision() {
+        TaskMetrics.Timer timer = TaskMetrics.timer("test.percentile");
+        for (long nanos = 1; nanos <= 100_000; nanos++) {
+            timer.record(nanos * 1_000);
+        }
+
+        assertEquals(100_000, timer.getCount());
+        // логарифмические корзины дают относительную погрешность не более 1/32
+        assertTrue(Math.abs(timer.percentile(0.50) - 50_000_000L) <= 50_000_000L / 32);
+        assertTrue(Math.abs(timer.percentile(0.99) - 99_000_000L) <= 99_000_000L / 32);
+        assertEquals(100_000_000L, timer.percentile(1.0));
+    }
+
+    @Test
+    public void testConcurrentRecording_LosesNoSamples() throws InterruptedException {
+        TaskMetrics.enable();
+        TaskMetrics.Timer timer = TaskMetrics.timer("test.concurrent");
+        TaskMetrics.Counter counter = TaskMetrics.counter("test.concurrent.bytes");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    timer.stop(timer.start());
+                    counter.add(3);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_000, timer.getCount());
+        assertEquals(240_000, counter.get());
+        assertTrue(TaskMetrics.format().contains("test.concurrent"));
+    }
+}
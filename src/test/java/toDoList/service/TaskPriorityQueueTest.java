@@ -0,0 +1,84 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskPriorityQueue;
+import main.java.toDoList.service.TaskScore;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskPriorityQueueTest {
+
+    private static final LocalDate TODAY = LocalDate.parse("2024-10-20");
+
+    @Test
+    public void testTop_OrdersByPriorityAndDeadline() {
+        TaskPriorityQueue queue = new TaskPriorityQueue();
+        queue.add(task(1, 5, 10, StatusOfTask.NEW));
+        queue.add(task(2, 9, 10, StatusOfTask.NEW));
+        queue.add(task(3, 5, -3, StatusOfTask.IN_PROGRESS));
+        queue.add(task(4, 10, 0, StatusOfTask.DONE));
+
+        // оценки: 1 -> 5-10=-5, 2 -> 9-10=-1, 3 -> 5+3=8; выполненная задача 4 не учитывается
+        assertArrayEquals(new int[]{3, 2, 1}, queue.top(10));
+        assertArrayEquals(new int[]{3}, queue.top(1));
+
+        queue.setScore(new TaskScore(10, 1));
+        assertArrayEquals(new int[]{2, 3, 1}, queue.top(10));
+    }
+
+    @Test
+    public void testTaskWithoutDeadline_RanksLastInQueueAndScore() {
+        TaskPriorityQueue queue = new TaskPriorityQueue();
+        Task undated = new Task(1, "Без срока", "", 10, null, StatusOfTask.NEW);
+        Task later = task(2, 0, 365, StatusOfTask.NEW);
+        queue.add(undated);
+        queue.add(later);
+
+        // куча и score() одинаково считают задачу без срока наименее срочной
+        assertArrayEquals(new int[]{2, 1}, queue.top(10));
+        assertTrue(TaskScore.DEFAULT.score(undated, TODAY) < TaskScore.DEFAULT.score(later, TODAY));
+    }
+
+    @Test
+    public void testRandomUpdates_MatchFullSort() {
+        TaskPriorityQueue queue = new TaskPriorityQueue();
+        Map<Integer, Task> tasks = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int operation = 0; operation < 20_000; operation++) {
+            int id = 1 + random.nextInt(3_000);
+            Task before = tasks.get(id);
+            if (before != null) {
+                queue.remove(before);
+                tasks.remove(id);
+            }
+            if (random.nextInt(4) != 0) {
+                StatusOfTask status = StatusOfTask.values()[random.nextInt(StatusOfTask.values().length)];
+                Task after = task(id, random.nextInt(11), random.nextInt(200) - 100, status);
+                queue.add(after);
+                tasks.put(id, after);
+            }
+        }
+
+        int[] expected = tasks.values().stream()
+                .filter(task -> task.getStatusOfTask() != StatusOfTask.DONE)
+                .sorted(Comparator.<Task>comparingDouble(task -> -TaskScore.DEFAULT.score(task, TODAY))
+                        .thenComparingInt(Task::getId))
+                .limit(50)
+                .mapToInt(Task::getId)
+                .toArray();
+        assertArrayEquals(expected, queue.top(50));
+    }
+
+    private static Task task(int id, int priority, int daysToDeadline, StatusOfTask status) {
+        return new Task(id, "Задача " + id, "Описание", priority, TODAY.plusDays(daysToDeadline), status);
+    }
+}
@@ -0,0 +1,156 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskReminders;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskRemindersTest {
+
+    @TempDir
+    Path directory;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = TaskFixtures.emptyTaskList(directory.resolve("toDoList.xml"));
+    }
+
+    @Test
+    public void testReminders_FollowEditsAndFireOnDayChange() throws InterruptedException {
+        MutableClock clock = new MutableClock(Instant.parse("2024-10-20T12:00:00Z"));
+        LocalDate today = LocalDate.now(clock);
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        repository.createTask(new Task("Просрочена", "", 5, today.minusDays(2)));
+        int soon = repository.createTask(new Task("Завтра", "", 5, today.plusDays(1))).getId();
+        int later = repository.createTask(new Task("Позже", "", 5, today.plusDays(10))).getId();
+        int done = repository.createTask(new Task("Выполнена", "", 5, today.minusDays(1))).getId();
+        repository.markAsCompleted(done);
+
+        RecordingListener listener = new RecordingListener();
+        TaskReminders reminders = new TaskReminders(repository, 1, clock, listener);
+        assertEquals(List.of(1, 1), listener.backlog);
+        assertEquals(2, reminders.getPending());
+
+        // перенос срока на сегодня напоминает сразу
+        repository.editTask(later, "", "", 0, today, null);
+        assertReminder(listener, TaskReminders.Kind.DUE_SOON, later);
+        int created = repository.createTask(new Task("Через три дня", "", 5, today.plusDays(3))).getId();
+        awaitPending(reminders::getPending, 3);
+        repository.markAsCompleted(soon);
+        awaitPending(reminders::getPending, 2);
+
+        clock.advance(Duration.ofDays(2));
+        reminders.fireDue();
+        // корзины разбираются по дням: сначала просрочка вчерашнего срока, затем "скоро срок"
+        assertReminder(listener, TaskReminders.Kind.OVERDUE, later);
+        assertReminder(listener, TaskReminders.Kind.DUE_SOON, created);
+        assertTrue(listener.reminders.isEmpty());
+        assertEquals(1, reminders.getPending());
+
+        reminders.close();
+        repository.close();
+    }
+
+    @Test
+    public void testLogAndFailingBacklog_UseClockAndReleaseSubscription() throws IOException {
+        MutableClock clock = new MutableClock(Instant.parse("2024-10-20T12:00:00Z"));
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        repository.createTask(new Task("Просрочена", "", 5, LocalDate.now(clock).minusDays(2)));
+
+        Path log = directory.resolve("reminders.log");
+        TaskReminders reminders = new TaskReminders(repository, 1, clock, TaskReminders.logTo(log, clock));
+        assertEquals(List.of("2024-10-20T12:00Z BACKLOG 1 0"), Files.readAllLines(log));
+        reminders.close();
+        assertFalse(repository.events().hasSubscribers());
+
+        // сбой сводки при запуске не оставляет подписку на события
+        TaskReminders.Listener failing = new RecordingListener() {
+            @Override
+            public void onBacklog(int overdue, int dueSoon) {
+                throw new IllegalStateException("сбой сводки");
+            }
+        };
+        assertThrows(IllegalStateException.class, () -> new TaskReminders(repository, 1, clock, failing));
+        assertFalse(repository.events().hasSubscribers());
+        repository.close();
+    }
+
+    private static void assertReminder(RecordingListener listener, TaskReminders.Kind kind, int id)
+            throws InterruptedException {
+        TaskReminders.Reminder reminder = listener.reminders.poll(5, TimeUnit.SECONDS);
+        assertNotNull(reminder);
+        assertEquals(kind, reminder.kind());
+        assertEquals(id, reminder.task().getId());
+    }
+
+    private static void awaitPending(IntSupplier pending, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (pending.getAsInt() != expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, pending.getAsInt());
+    }
+
+    private static class RecordingListener implements TaskReminders.Listener {
+        private final BlockingQueue<TaskReminders.Reminder> reminders = new LinkedBlockingQueue<>();
+        private List<Integer> backlog;
+
+        @Override
+        public void onReminder(TaskReminders.Reminder reminder) {
+            reminders.add(reminder);
+        }
+
+        @Override
+        public void onBacklog(int overdue, int dueSoon) {
+            backlog = List.of(overdue, dueSoon);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
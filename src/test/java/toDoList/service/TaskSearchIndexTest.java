@@ -0,0 +1,107 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskSearchIndex;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class TaskSearchIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSearch_PrefixAndCaseInsensitive() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.add(task(1, "Выкинуть мусор", "Мусорный пакет у двери"));
+        index.add(task(2, "Купить хлеб", "Зайти в магазин"));
+        index.add(task(3, "Pay BILLS", "Электричество и ёлка"));
+
+        assertArrayEquals(new int[]{1}, index.search("МУС", 10));
+        assertArrayEquals(new int[]{3}, index.search("bill", 10));
+        assertArrayEquals(new int[]{3}, index.search("елк", 10));
+        assertArrayEquals(new int[]{2}, index.search("купить магаз", 10));
+        assertEquals(0, index.search("купить мусор", 10).length);
+    }
+
+    @Test
+    public void testSearch_CaptionRanksAboveDescription() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.add(task(1, "Позвонить", "Отчет для бухгалтерии"));
+        index.add(task(2, "Отчет", "Подготовить к пятнице"));
+
+        assertArrayEquals(new int[]{2, 1}, index.search("отчет", 10));
+        assertArrayEquals(new int[]{2}, index.search("отчет", 1));
+    }
+
+    @Test
+    public void testUpdateAndRemove_KeepIndexInSync() {
+        TaskSearchIndex index = new TaskSearchIndex();
+        Task before = task(1, "Выкинуть мусор", "Из дома");
+        index.add(before);
+
+        Task after = task(1, "Полить цветы", "Из дома");
+        index.update(before, after);
+        assertEquals(0, index.search("мусор", 10).length);
+        assertArrayEquals(new int[]{1}, index.search("цвет", 10));
+
+        index.remove(after);
+        assertEquals(0, index.search("дом", 10).length);
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void testSaveLoadReconcile_ReindexesOnlyChangedTasks() {
+        Path file = directory.resolve("index.search");
+        TaskSearchIndex index = new TaskSearchIndex();
+        index.add(task(1, "Выкинуть мусор", "Из дома"));
+        index.add(task(2, "Купить хлеб", "В магазине"));
+        index.save(file);
+
+        TaskSearchIndex loaded = TaskSearchIndex.load(file);
+        assertFalse(loaded.isModified());
+        assertArrayEquals(new int[]{1}, loaded.search("мусор", 10));
+
+        // задача 2 изменилась, задача 1 удалена, задача 3 добавлена, пока индекс не был загружен
+        int reindexed = loaded.reconcile(List.of(task(2, "Купить молоко", "В магазине"), task(3, "Мусор", "")));
+        assertEquals(3, reindexed);
+        assertArrayEquals(new int[]{3}, loaded.search("мусор", 10));
+        assertArrayEquals(new int[]{2}, loaded.search("молоко", 10));
+        assertEquals(0, loaded.search("хлеб", 10).length);
+        assertEquals(2, loaded.size());
+    }
+
+    @Test
+    public void testRepositorySearch_PersistsSidecarAndFollowsEdits() throws IOException {
+        File file = TaskFixtures.emptyTaskList(directory.resolve("toDoList.xml"));
+
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        repository.createTask(new Task("Выкинуть мусор", "Из дома", 5, DEADLINE));
+        assertEquals(1, repository.searchTasks("мусор", 10).size());
+        repository.createTask(new Task("Мусорный бак", "Помыть", 5, DEADLINE));
+        repository.editTask(1, "Полить цветы", "", 0, null, null);
+        assertEquals(2, repository.searchTasks("мус", 10).get(0).getId());
+        assertEquals(1, repository.searchTasks("мус", 10).size());
+        repository.close();
+
+        assertTrue(Files.exists(Path.of(file.getPath() + ".search")));
+        repository = new XMLTaskRepository(file);
+        assertEquals(1, repository.searchTasks("цвет", 10).size());
+        repository.close();
+    }
+
+    private static Task task(int id, String caption, String description) {
+        return new Task(id, caption, description, 5, DEADLINE, StatusOfTask.NEW);
+    }
+}
@@ -30,6 +30,8 @@ public class TaskServiceTest {
 
     @AfterEach
     public void tearDown() {
+        repository.close();
+
         Document document = repository.loadDocument();
         Element root = document.getDocumentElement();
         NodeList taskList = document.getElementsByTagName("Task");
@@ -38,6 +40,8 @@ public class TaskServiceTest {
             Element task = (Element) taskList.item(i);
             root.removeChild(task);
         }
+        // сбрасываем последовательность id, чтобы каждый тест начинал с id 1
+        root.removeAttribute("nextId");
 
         repository.saveDocument(document);
     }
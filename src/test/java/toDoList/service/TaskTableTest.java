@@ -0,0 +1,89 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TaskTableTest {
+
+    @Test
+    public void testPutGet_RoundTripsAllFields() {
+        TaskTable table = new TaskTable();
+        Task done = new Task(7, "Отчет", "За квартал", 9, LocalDate.parse("2024-10-20"), StatusOfTask.DONE);
+        done.setCompletionDate(LocalDate.parse("2024-10-18"));
+        table.put(done);
+        table.put(new Task(5000, "Без срока", "", 1, null, null));
+
+        Task stored = table.get(7);
+        assertNotSame(done, stored);
+        assertEquals(done.toString(), stored.toString());
+        assertEquals(LocalDate.parse("2024-10-18"), stored.getCompletionDate());
+
+        Task empty = table.get(5000);
+        assertNull(empty.getDeadline());
+        assertNull(empty.getStatusOfTask());
+        assertNull(table.get(8));
+        assertEquals(2, table.size());
+        assertEquals(5000, table.lastId());
+    }
+
+    @Test
+    public void testRemoveAndIterate_SkipsMissingIdsAcrossChunks() {
+        TaskTable table = new TaskTable();
+        for (int id : new int[]{9000, 3, 1, 4096}) {
+            table.put(new Task(id, "Задача " + id, "", 1, null, StatusOfTask.NEW));
+        }
+        assertTrue(table.remove(4096));
+        assertFalse(table.remove(4096));
+
+        List<Integer> ids = new ArrayList<>();
+        for (Task task : table) {
+            ids.add(task.getId());
+        }
+        assertEquals(List.of(1, 3, 9000), ids);
+        assertEquals(3, table.higher(1));
+        assertEquals(9000, table.higher(3));
+        assertEquals(-1, table.higher(9000));
+    }
+
+    @Test
+    public void testCopy_IsIndependentOfLaterChanges() {
+        TaskTable table = new TaskTable();
+        table.put(new Task(1, "До", "", 1, null, StatusOfTask.NEW));
+        TaskTable snapshot = table.copy();
+
+        table.put(new Task(1, "После", "", 1, null, StatusOfTask.NEW));
+        table.put(new Task(2, "Новая", "", 1, null, StatusOfTask.NEW));
+
+        assertEquals("До", snapshot.get(1).getCaption());
+        assertEquals(1, snapshot.size());
+        assertFalse(snapshot.contains(2));
+    }
+
+    @Test
+    public void testCopy_SurvivesRemovalOfWholeSegment() {
+        TaskTable table = new TaskTable();
+        for (int id : new int[]{1, 20_000, 40_000}) {
+            table.put(new Task(id, "Задача " + id, "", 1, null, StatusOfTask.NEW));
+        }
+        TaskTable snapshot = table.copy();
+
+        assertTrue(table.remove(20_000));
+        table.put(new Task(40_000, "Изменена", "", 2, null, StatusOfTask.DONE));
+
+        assertEquals(40_000, table.higher(1));
+        assertEquals(20_000, snapshot.higher(1));
+        assertEquals("Задача 40000", snapshot.get(40_000).getCaption());
+        assertEquals("Изменена", table.get(40_000).getCaption());
+        assertEquals(3, snapshot.size());
+        assertEquals(2, table.size());
+        assertEquals(40_000, snapshot.lastId());
+    }
+}
@@ -0,0 +1,111 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.CommandResult;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.TaskTransfer;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class TaskTransferTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testExportImport_RoundTripsEveryFormat() throws IOException {
+        XMLTaskRepository source = repository("source.xml");
+        source.createTask(new Task("Купить хлеб", "Белый, \"нарезной\"", 3, DEADLINE));
+        source.createTask(new Task("Отчет", "Строка 1\nСтрока 2", 10, DEADLINE.plusDays(1)));
+        source.markAsCompleted(2);
+
+        for (String name : List.of("tasks.csv", "tasks.jsonl", "tasks.xml")) {
+            Path file = directory.resolve(name);
+            assertEquals(2, TaskTransfer.exportFile(source, file).transferred());
+
+            XMLTaskRepository target = repository("target-" + name + ".xml");
+            TaskTransfer.Report report = TaskTransfer.importFile(file, target);
+            assertEquals(2, report.transferred(), name);
+            assertEquals(0, report.rejected(), name);
+
+            List<Task> imported = target.getTasks();
+            assertEquals("Белый, \"нарезной\"", imported.get(0).getDescription(), name);
+            assertEquals(StatusOfTask.NEW, imported.get(0).getStatusOfTask(), name);
+            assertEquals("Строка 1\nСтрока 2", imported.get(1).getDescription(), name);
+            assertEquals(StatusOfTask.DONE, imported.get(1).getStatusOfTask(), name);
+            assertEquals(LocalDate.now(), imported.get(1).getCompletionDate(), name);
+            target.close();
+        }
+        source.close();
+    }
+
+    @Test
+    public void testImport_RejectsInvalidRecordsAndKeepsOrder() throws IOException {
+        StringBuilder csv = new StringBuilder("caption,description,priority,deadline\n");
+        for (int i = 0; i < 3000; i++) {
+            csv.append("Задача ").append(i).append(",,5,2024-10-20\n");
+        }
+        csv.append("Слишком длинный заголовок задачи, превышающий пятьдесят символов,,5,2024-10-20\n");
+        csv.append("Приоритет,,11,2024-10-20\n");
+        csv.append("Дата,,5,20.10.2024\n");
+        Path file = directory.resolve("tasks.csv");
+        Files.writeString(file, csv);
+
+        XMLTaskRepository target = repository("target.xml");
+        target.createTask(new Task("Существующая", "", 1, DEADLINE));
+        TaskTransfer.Report report = TaskTransfer.importFile(file, target);
+
+        assertNull(report.failure());
+        assertEquals(3000, report.transferred());
+        assertEquals(3, report.rejected());
+        assertEquals("запись 3002: Ошибка: приоритет должен быть целым числом в диапазоне от 0 до 10",
+                report.errors().get(1));
+
+        List<Task> tasks = target.getTasks();
+        assertEquals(3001, tasks.size());
+        assertEquals("Существующая", tasks.get(0).getCaption());
+        for (int i = 0; i < 3000; i++) {
+            assertEquals("Задача " + i, tasks.get(i + 1).getCaption());
+        }
+        target.close();
+    }
+
+    @Test
+    public void testImport_ReportsTasksWrittenBeforeUnreadableTail() throws IOException {
+        StringBuilder csv = new StringBuilder("caption,description,priority,deadline\n");
+        for (int i = 0; i < 2000; i++) {
+            csv.append("Задача ").append(i).append(",,5,2024-10-20\n");
+        }
+        csv.append("\"Без закрывающей кавычки,,5,2024-10-20\n");
+        Path file = directory.resolve("tasks.csv");
+        Files.writeString(file, csv);
+
+        XMLTaskRepository target = repository("target.xml");
+        CommandResult.Transferred result =
+                (CommandResult.Transferred) new TaskService(target).importTasks("import " + file);
+        TaskTransfer.Report report = result.report();
+
+        // все записи до незакрытой кавычки записаны, и отчет говорит об этом
+        assertEquals(2000, report.transferred());
+        assertEquals(2000, target.getTasks().size());
+        assertEquals("Задача 1999", target.getTasks().get(1999).getCaption());
+        assertNotNull(report.failure());
+        assertTrue(report.failure().contains("незакрытая кавычка"), report.failure());
+        target.close();
+    }
+
+    private XMLTaskRepository repository(String name) throws IOException {
+        return new XMLTaskRepository(TaskFixtures.emptyTaskList(directory.resolve(name)));
+    }
+}
@@ -0,0 +1,178 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.TaskFilter;
+import main.java.toDoList.service.TaskJournal;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class XMLTaskRepositoryConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int OPERATIONS = 2_000;
+
+    @TempDir
+    Path directory;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        file = TaskFixtures.emptyTaskList(directory.resolve("toDoList.xml"));
+    }
+
+    @Test
+    public void testConcurrentMixedOperations_NoLostUpdates() throws Exception {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        assertNoLostUpdates(repository, () -> new XMLTaskRepository(file));
+    }
+
+    @Test
+    public void testConcurrentMixedOperations_Journaled_NoLostUpdates() throws Exception {
+        XMLTaskRepository repository = new XMLTaskRepository(file, TaskJournal.FsyncPolicy.BATCHED);
+        assertNoLostUpdates(repository, () -> new XMLTaskRepository(file, TaskJournal.FsyncPolicy.BATCHED));
+    }
+
+    @Test
+    public void testFilteredReadsDuringEdits_SeeConsistentSnapshots() throws Exception {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        for (int i = 0; i < 1_000; i++) {
+            repository.createTask(new Task("Задача " + i, "", 5, LocalDate.now()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?> writer = executor.submit(() -> {
+            start.await();
+            Random random = new Random(1);
+            for (int i = 0; i < OPERATIONS * 5; i++) {
+                int id = 1 + random.nextInt(1_000);
+                StatusOfTask status = random.nextBoolean() ? StatusOfTask.DONE : StatusOfTask.IN_PROGRESS;
+                repository.editTask(id, "", "", 0, null, status);
+            }
+            return null;
+        });
+        List<Future<?>> readers = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+            readers.add(executor.submit(() -> {
+                start.await();
+                TaskFilter done = TaskFilter.all().withStatus(StatusOfTask.DONE);
+                while (!writer.isDone()) {
+                    // индекс и строки берутся из одного снимка: задача в выборке всегда в нужном статусе
+                    for (Task task : repository.findTasks(done)) {
+                        assertEquals(StatusOfTask.DONE, task.getStatusOfTask());
+                    }
+                    assertEquals(1_000, repository.getTasks().size());
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+
+        writer.get();
+        for (Future<?> reader : readers) {
+            reader.get();
+        }
+        executor.shutdown();
+        repository.close();
+    }
+
+    @Test
+    public void testSecondRepositoryOnSameFile_IsRejected() {
+        XMLTaskRepository repository = new XMLTaskRepository(file);
+        try {
+            assertThrows(IllegalStateException.class, () -> new XMLTaskRepository(file));
+        } finally {
+            repository.close();
+        }
+    }
+
+    /**
+     * Каждый поток создает, редактирует, выполняет и удаляет свои задачи и параллельно читает общий список.
+     * Итоговое состояние в памяти и после повторного открытия файла должно совпасть с объединением ожидаемых
+     * состояний всех потоков, а выданные <code>id</code> не должны повторяться.
+     */
+    private void assertNoLostUpdates(XMLTaskRepository repository, RepositoryFactory reopen) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<Integer, String>>> results = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            results.add(executor.submit(() -> {
+                Random random = new Random(thread);
+                Map<Integer, String> expected = new HashMap<>();
+                List<Integer> own = new ArrayList<>();
+                start.await();
+
+                for (int i = 0; i < OPERATIONS; i++) {
+                    int operation = random.nextInt(10);
+                    if (operation < 4 || own.isEmpty()) {
+                        String caption = thread + "-" + i;
+                        Task task = repository.createTask(new Task(caption, "описание", 5, LocalDate.now()));
+                        expected.put(task.getId(), caption);
+                        own.add(task.getId());
+                    } else if (operation < 6) {
+                        int id = own.get(random.nextInt(own.size()));
+                        String caption = thread + "-" + i + "-edit";
+                        assertTrue(repository.editTask(id, caption, "", 0, null, null));
+                        expected.put(id, caption);
+                    } else if (operation < 7) {
+                        Integer id = own.remove(random.nextInt(own.size()));
+                        assertTrue(repository.deleteTask(id));
+                        expected.remove(id);
+                    } else if (operation < 8) {
+                        repository.markAsCompleted(own.get(random.nextInt(own.size())));
+                    } else {
+                        assertNotNull(repository.getTasks());
+                        repository.findTaskById(1 + random.nextInt(OPERATIONS));
+                    }
+                }
+                return expected;
+            }));
+        }
+        start.countDown();
+
+        Map<Integer, String> expected = new HashMap<>();
+        for (Future<Map<Integer, String>> result : results) {
+            for (Map.Entry<Integer, String> entry : result.get().entrySet()) {
+                assertNull(expected.put(entry.getKey(), entry.getValue()), "id выдан дважды: " + entry.getKey());
+            }
+        }
+        executor.shutdown();
+
+        assertEquals(expected, captions(repository.getTasks()));
+        repository.close();
+
+        XMLTaskRepository reopened = reopen.create();
+        assertEquals(expected, captions(reopened.getTasks()));
+        reopened.close();
+    }
+
+    private static Map<Integer, String> captions(List<Task> tasks) {
+        return tasks.stream().collect(Collectors.toMap(Task::getId, Task::getCaption));
+    }
+
+    private interface RepositoryFactory {
+        XMLTaskRepository create();
+    }
+}
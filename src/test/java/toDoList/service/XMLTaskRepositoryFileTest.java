@@ -0,0 +1,152 @@
+package test.java.toDoList.service;
+
+import main.java.toDoList.model.StatusOfTask;
+import main.java.toDoList.model.Task;
+import main.java.toDoList.service.StaxTaskStore;
+import main.java.toDoList.service.TaskJournal;
+import main.java.toDoList.service.TaskMetrics;
+import main.java.toDoList.service.TaskService;
+import main.java.toDoList.service.XMLTaskRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static test.java.toDoList.service.TaskFixtures.DEADLINE;
+
+public class XMLTaskRepositoryFileTest {
+
+    @TempDir
+    Path directory;
+    private Path file;
+
+    @BeforeEach
+    public void setUp() {
+        file = directory.resolve("toDoList.xml");
+    }
+
+    @Test
+    public void testReadOnlyCommands_LeaveFileUntouched() throws IOException {
+        // Файл отредактирован вручную: задачи не по порядку, одна выполнена
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList nextId=\"4\">"
+                + task(3, "Полить цветы", "new", null)
+                + task(1, "Выкинуть мусор", "done", "2024-10-01")
+                + task(2, "Купить хлеб", "in_progress", null)
+                + "</toDoList>");
+        FileTime modified = FileTime.fromMillis(1_000_000_000_000L);
+        Files.setLastModifiedTime(file, modified);
+        byte[] bytes = Files.readAllBytes(file);
+
+        XMLTaskRepository repository = new XMLTaskRepository(file.toFile());
+        TaskService service = new TaskService(repository);
+        int[] listed = {0};
+        for (String command : List.of("list", "list -s done", "list -p 5", "list --overdue", "list --limit 1",
+                "list --after-id 1", "list --due-before 2025-01-01 --offset 1")) {
+            service.listTask(command, task -> listed[0]++);
+        }
+        service.searchTask("search хлеб", task -> listed[0]++);
+        service.nextTask("next 2", task -> listed[0]++);
+        assertEquals(List.of(1, 2, 3), repository.getTasks().stream().map(Task::getId).toList());
+        assertNotNull(repository.findTaskById(3));
+        assertNull(repository.findTaskById(4));
+        repository.flush();
+        repository.close();
+
+        assertTrue(listed[0] > 0);
+        assertEquals(modified, Files.getLastModifiedTime(file));
+        assertArrayEquals(bytes, Files.readAllBytes(file));
+    }
+
+    @Test
+    public void testCompleteAndEdit_KeepFileInIdOrder() {
+        StaxTaskStore store = new StaxTaskStore(file);
+        store.writeAll(List.of());
+
+        XMLTaskRepository repository = new XMLTaskRepository(file.toFile());
+        for (int i = 0; i < 5; i++) {
+            repository.createTask(new Task("Задача " + i, "", 5, DEADLINE));
+        }
+        repository.markAsCompleted(1);
+        repository.editTask(2, "Новый заголовок", "", 0, null, null);
+        repository.deleteTask(3);
+        repository.createTask(new Task("Задача 5", "", 5, DEADLINE));
+        repository.close();
+
+        // порядок проверяется по файлу как есть, без сортировки при чтении
+        assertEquals(List.of(1, 2, 4, 5, 6), store.readAll().stream().map(Task::getId).toList());
+    }
+
+    @Test
+    public void testSnapshotCache_ReplacesParsingUntilXmlChanges() throws IOException {
+        TaskMetrics.enable();
+        TaskMetrics.Counter hits = TaskMetrics.counter("cache.hits");
+        TaskMetrics.Counter parses = TaskMetrics.counter("xml.parses");
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList nextId=\"9\">"
+                + task(2, "Купить хлеб", "in_progress", null)
+                + task(1, "Выкинуть мусор", "done", "2024-10-01")
+                + "</toDoList>");
+        new XMLTaskRepository(file.toFile()).close();
+        assertTrue(Files.exists(directory.resolve("toDoList.xml.cache")));
+
+        long hitsBefore = hits.get();
+        long parsesBefore = parses.get();
+        XMLTaskRepository repository = new XMLTaskRepository(file.toFile());
+        assertEquals(hitsBefore + 1, hits.get());
+        assertEquals(parsesBefore, parses.get());
+        assertEquals("Купить хлеб", repository.findTaskById(2).getCaption());
+        assertEquals(LocalDate.parse("2024-10-01"), repository.findTaskById(1).getCompletionDate());
+        // задачи из снимка редактируются и создаются как обычно, nextId сохраняется
+        repository.editTask(2, "Купить молоко", "", 0, null, null);
+        assertEquals(9, repository.createTask(new Task("Полить цветы", "", 5, DEADLINE)).getId());
+        assertEquals(List.of("Выкинуть мусор", "Купить молоко", "Полить цветы"),
+                repository.getTasks().stream().map(Task::getCaption).toList());
+        repository.close();
+
+        // после правки XML вручную снимок устаревает и задачи снова читаются из файла
+        Files.writeString(file, "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?><toDoList nextId=\"4\">"
+                + task(3, "Новая задача", "new", null)
+                + "</toDoList>");
+        hitsBefore = hits.get();
+        repository = new XMLTaskRepository(file.toFile());
+        assertEquals(hitsBefore, hits.get());
+        assertEquals(List.of(3), repository.getTasks().stream().map(Task::getId).toList());
+        repository.close();
+    }
+
+    @Test
+    public void testLargeJournal_IsCheckpointedRightAfterReplay() throws InterruptedException {
+        StaxTaskStore store = new StaxTaskStore(file);
+        store.writeAll(List.of());
+        // журнал больше порога контрольной точки, оставшийся после сбоя
+        String description = "Описание ".repeat(60);
+        try (TaskJournal journal = new TaskJournal(file, TaskJournal.FsyncPolicy.NONE)) {
+            for (int id = 1; id <= 8_000; id++) {
+                journal.put(new Task(id, "Задача " + id, description, 5, DEADLINE, StatusOfTask.NEW));
+            }
+        }
+
+        XMLTaskRepository repository = new XMLTaskRepository(file.toFile(), TaskJournal.FsyncPolicy.NONE);
+        // запись запускается сразу после проигрывания, а не при закрытии
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (store.readNextId() != 8_001 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(8_001, store.readNextId());
+        assertEquals(8_000, store.readAll().size());
+        repository.close();
+    }
+
+    private static String task(int id, String caption, String status, String completionDate) {
+        return "<Task caption=\"" + caption + "\" id=\"" + id + "\"><Description>Описание</Description>"
+                + "<Priority>5</Priority><Deadline>" + DEADLINE + "</Deadline><Status>" + status + "</Status>"
+                + (completionDate == null ? "" : "<Complete>" + completionDate + "</Complete>") + "</Task>";
+    }
+}